@@ -0,0 +1,413 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import student.TestableRandom;
+
+/**
+ * This class implements a SkipList whose nodes are not objects but slots in a
+ * few large parallel arrays: the keys, the inserted KVPairs, the level of every
+ * slot and where its tower of forward links starts in one shared int array.
+ * Forward links are slot numbers instead of references, so a list with
+ * millions of entries costs a handful of arrays and the KVPairs it was given
+ * instead of several objects per entry, and a traversal reads mostly
+ * contiguous memory. The keys are kept in an array of their own so that a
+ * traversal never dereferences a KVPair; search, remove and the iterator hand
+ * out the stored KVPairs themselves.
+ *
+ * Removed slots and their towers are kept on free lists and reused by later
+ * inserts. Slot 0 is the head (sentinel) and NIL marks the end of a level.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <K>
+ *            Key
+ * @param <V>
+ *            Value
+ */
+public class ArraySkipList<K extends Comparable<? super K>, V>
+    implements SkipListADT<K, V> {
+    // the highest level a slot (and the head) can have
+    private static final int MAX_LEVEL = 31;
+    // the link value marking the end of a level
+    private static final int NIL = -1;
+    // the slot of the head (sentinel)
+    private static final int HEAD = 0;
+    // the number of slots to start with
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] keys; // the key of every slot
+    private Object[] pairs; // the KVPair inserted into every slot
+    private int[] levels; // the level of every slot
+    private int[] towers; // where the tower of every slot starts in links
+    private int[] links; // all forward links, one tower after the other
+    private int linksUsed; // the number of cells of links handed out so far
+    private int slotsUsed; // the number of slots handed out so far
+    private int[] freeSlots; // removed slots waiting to be reused
+    private int freeSlotCount; // the number of entries in freeSlots
+    private int[] freeTowers; // first free tower for every level, or NIL
+    private int headLevel; // the highest level currently in use
+    private int size; // number of entries in the list
+    private int[] update; // reusable predecessor array
+    private Random rng;
+
+    /**
+     * Initializes the arrays with room for a few entries and the head.
+     */
+    public ArraySkipList() {
+        keys = new Object[INITIAL_CAPACITY];
+        pairs = new Object[INITIAL_CAPACITY];
+        levels = new int[INITIAL_CAPACITY];
+        towers = new int[INITIAL_CAPACITY];
+        links = new int[INITIAL_CAPACITY * 4];
+        freeSlots = new int[INITIAL_CAPACITY];
+        freeTowers = new int[MAX_LEVEL + 1];
+        Arrays.fill(freeTowers, NIL);
+        update = new int[MAX_LEVEL + 1];
+        // the head tower spans every level
+        slotsUsed = 1;
+        levels[HEAD] = MAX_LEVEL;
+        towers[HEAD] = allocateTower(MAX_LEVEL);
+        headLevel = 0;
+        size = 0;
+        rng = new TestableRandom();
+    }
+
+
+    /**
+     * returns a random level (using geometric distribution), minimum of 1 and
+     * at most MAX_LEVEL
+     *
+     * @return int the randomly generated level
+     */
+    public int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && rng.nextBoolean()) {
+            level++;
+        }
+        return level;
+    }
+
+
+    /**
+     * Returns the forward link of a slot on a level.
+     *
+     * @param slot
+     *            the slot
+     * @param level
+     *            the level
+     * @return the next slot on that level, or NIL
+     */
+    private int next(int slot, int level) {
+        return links[towers[slot] + level];
+    }
+
+
+    /**
+     * Returns the key stored in a slot.
+     *
+     * @param slot
+     *            the slot
+     * @return the key
+     */
+    @SuppressWarnings("unchecked")
+    private K keyAt(int slot) {
+        return (K)keys[slot];
+    }
+
+
+    /**
+     * Returns the KVPair stored in a slot.
+     *
+     * @param slot
+     *            the slot
+     * @return the KVPair that was inserted into the slot
+     */
+    @SuppressWarnings("unchecked")
+    private KVPair<K, V> pairAt(int slot) {
+        return (KVPair<K, V>)pairs[slot];
+    }
+
+
+    /**
+     * Descends the levels and fills update with the last slot whose key is
+     * smaller than the given key on every level.
+     *
+     * @param key
+     *            the key to look for
+     * @return the last slot on level 0 whose key is smaller than the key
+     */
+    private int findUpdate(K key) {
+        int curr = HEAD;
+        for (int level = headLevel; level >= 0; level--) {
+            int nxt = next(curr, level);
+            while (nxt != NIL && keyAt(nxt).compareTo(key) < 0) {
+                curr = nxt;
+                nxt = next(curr, level);
+            }
+            update[level] = curr;
+        }
+        return curr;
+    }
+
+
+    /**
+     * Searches for the KVPair using the key which is a Comparable object.
+     *
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key
+     */
+    @Override
+    public ArrayList<KVPair<K, V>> search(K key) {
+        ArrayList<KVPair<K, V>> output = new ArrayList<>();
+        int curr = next(findUpdate(key), 0);
+        while (curr != NIL && keyAt(curr).compareTo(key) == 0) {
+            output.add(pairAt(curr));
+            curr = next(curr, 0);
+        }
+        return output;
+    }
+
+
+    /**
+     * @return the size of the list
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Inserts the KVPair in the list at its appropriate spot as designated by
+     * its lexicographical order.
+     *
+     * @param it
+     *            the KVPair to be inserted
+     */
+    @Override
+    public void insert(KVPair<K, V> it) {
+        K key = it.getKey();
+        int randLevel = randomLevel();
+        if (randLevel > headLevel) {
+            headLevel = randLevel;
+        }
+        findUpdate(key);
+        int slot = allocateSlot(randLevel);
+        keys[slot] = key;
+        pairs[slot] = it;
+        int tower = towers[slot];
+        for (int level = 0; level <= randLevel; level++) {
+            int pred = towers[update[level]] + level;
+            links[tower + level] = links[pred];
+            links[pred] = slot;
+        }
+        size++;
+    }
+
+
+    /**
+     * Removes the first KVPair with the given key.
+     *
+     * @param key
+     *            of the the KVPair to be removed
+     * @return the removed pair if the key was present and null if not
+     */
+    @Override
+    public KVPair<K, V> remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        int slot = next(findUpdate(key), 0);
+        if (slot == NIL || keyAt(slot).compareTo(key) != 0) {
+            return null;
+        }
+        return unlink(slot);
+    }
+
+
+    /**
+     * Removes the first KVPair in the list holding the specified value.
+     *
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair if the value was present and null if not
+     */
+    @Override
+    public KVPair<K, V> removeByValue(V val) {
+        if (val == null) {
+            return null;
+        }
+        int slot = next(HEAD, 0);
+        while (slot != NIL && !val.equals(pairAt(slot).getValue())) {
+            slot = next(slot, 0);
+        }
+        if (slot == NIL) {
+            return null;
+        }
+        // duplicates of the key may come before the slot
+        int curr = findUpdate(keyAt(slot));
+        while (next(curr, 0) != slot) {
+            curr = next(curr, 0);
+            for (int level = 0; level <= levels[curr]; level++) {
+                update[level] = curr;
+            }
+        }
+        return unlink(slot);
+    }
+
+
+    /**
+     * Unlinks a slot from every level using the predecessors in update and
+     * puts the slot and its tower on the free lists.
+     *
+     * @param slot
+     *            the slot to be removed
+     * @return the pair that was stored in the slot
+     */
+    private KVPair<K, V> unlink(int slot) {
+        KVPair<K, V> removed = pairAt(slot);
+        int tower = towers[slot];
+        for (int level = 0; level <= levels[slot]; level++) {
+            int pred = towers[update[level]] + level;
+            if (links[pred] == slot) {
+                links[pred] = links[tower + level];
+            }
+        }
+        while (headLevel > 0 && next(HEAD, headLevel) == NIL) {
+            headLevel--;
+        }
+        freeSlot(slot);
+        size--;
+        return removed;
+    }
+
+
+    /**
+     * Hands out a slot with a tower for the given level, reusing a removed
+     * slot if there is one.
+     *
+     * @param level
+     *            the level of the new slot
+     * @return the slot
+     */
+    private int allocateSlot(int level) {
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        }
+        else {
+            if (slotsUsed == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                pairs = Arrays.copyOf(pairs, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+                towers = Arrays.copyOf(towers, capacity);
+            }
+            slot = slotsUsed++;
+        }
+        levels[slot] = level;
+        towers[slot] = allocateTower(level);
+        return slot;
+    }
+
+
+    /**
+     * Hands out level + 1 consecutive link cells, reusing a freed tower of the
+     * same level if there is one. The first cell of a free tower holds the
+     * next free tower of that level.
+     *
+     * @param level
+     *            the level of the tower
+     * @return the index of the first cell of the tower
+     */
+    private int allocateTower(int level) {
+        int tower = freeTowers[level];
+        if (tower != NIL) {
+            freeTowers[level] = links[tower];
+        }
+        else {
+            if (linksUsed + level + 1 > links.length) {
+                links = Arrays.copyOf(links, Math.max(links.length * 2,
+                    linksUsed + level + 1));
+            }
+            tower = linksUsed;
+            linksUsed += level + 1;
+        }
+        Arrays.fill(links, tower, tower + level + 1, NIL);
+        return tower;
+    }
+
+
+    /**
+     * Puts a removed slot and its tower on the free lists and drops its key
+     * and KVPair so they can be garbage collected.
+     *
+     * @param slot
+     *            the slot to be freed
+     */
+    private void freeSlot(int slot) {
+        int level = levels[slot];
+        int tower = towers[slot];
+        links[tower] = freeTowers[level];
+        freeTowers[level] = tower;
+        keys[slot] = null;
+        pairs[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+
+    /**
+     * Prints out the list in a human readable format to the console.
+     */
+    @Override
+    public void dump() {
+        System.out.println("SkipList dump:");
+        System.out.println("Node with depth " + Math.max(1, headLevel)
+            + ", value null");
+        int curr = next(HEAD, 0);
+        while (curr != NIL) {
+            System.out.println("node with depth " + levels[curr] + " value "
+                + keyAt(curr) + " " + pairAt(curr).getValue());
+            curr = next(curr, 0);
+        }
+        System.out.println("SkipList size is: " + size);
+    }
+
+
+    private class ArraySkipListIterator implements Iterator<KVPair<K, V>> {
+        private int current;
+
+        public ArraySkipListIterator() {
+            current = HEAD;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return ArraySkipList.this.next(current, 0) != NIL;
+        }
+
+
+        @Override
+        public KVPair<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = ArraySkipList.this.next(current, 0);
+            return pairAt(current);
+        }
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new ArraySkipListIterator();
+    }
+
+}
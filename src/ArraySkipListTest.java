@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * This class tests the methods of ArraySkipList class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class ArraySkipListTest extends SkipListADTTestCase {
+    /**
+     * The skip list instance used for testing.
+     */
+    private ArraySkipList<String, Rectangle> sl;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        sl = new ArraySkipList<String, Rectangle>();
+    }
+
+
+    @Override
+    protected SkipListADT<String, Rectangle> createList() {
+        return new ArraySkipList<String, Rectangle>();
+    }
+
+
+    /**
+     * Spreads the keys wide so that removed slots and towers of every level
+     * are freed and reused.
+     *
+     * @param random
+     *            the source of the random operations
+     * @return the key
+     */
+    @Override
+    protected String randomKey(Random random) {
+        return "k" + random.nextInt(200);
+    }
+
+
+    /**
+     * Tests insert and search, including duplicates which are returned newest
+     * first, and that the inserted pairs themselves are handed out
+     */
+    public void testInsertAndSearch() {
+        KVPair<String, Rectangle> b1 = new KVPair<>("B", new Rectangle(0, 0,
+            5, 5));
+        KVPair<String, Rectangle> a = new KVPair<>("A", new Rectangle(10, 10,
+            5, 5));
+        KVPair<String, Rectangle> b2 = new KVPair<>("B", new Rectangle(20, 20,
+            5, 5));
+        sl.insert(b1);
+        sl.insert(a);
+        sl.insert(b2);
+        assertEquals(3, sl.size());
+
+        ArrayList<KVPair<String, Rectangle>> results = sl.search("B");
+        assertEquals(2, results.size());
+        assertSame(b2, results.get(0));
+        assertSame(b1, results.get(1));
+        assertTrue(sl.search("C").isEmpty());
+        Iterator<KVPair<String, Rectangle>> iter = sl.iterator();
+        assertSame(a, iter.next());
+        assertSame(b2, iter.next());
+        assertSame(b1, iter.next());
+        assertFalse(iter.hasNext());
+    }
+
+
+    /**
+     * Tests removing by key and by value
+     */
+    public void testRemove() {
+        Rectangle r1 = new Rectangle(0, 0, 5, 5);
+        Rectangle r2 = new Rectangle(10, 10, 5, 5);
+        KVPair<String, Rectangle> a = new KVPair<>("A", r1);
+        KVPair<String, Rectangle> b = new KVPair<>("B", r2);
+        sl.insert(a);
+        sl.insert(b);
+
+        assertNull(sl.remove(null));
+        assertNull(sl.remove("C"));
+        assertSame(a, sl.remove("A"));
+        assertNull(sl.removeByValue(null));
+        assertNull(sl.removeByValue(r1));
+        assertSame(b, sl.removeByValue(new Rectangle(10, 10, 5, 5)));
+        assertEquals(0, sl.size());
+        assertFalse(sl.iterator().hasNext());
+    }
+
+}
@@ -0,0 +1,390 @@
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import student.TestableRandom;
+
+/**
+ * This class implements a SkipList in which every distinct key owns a single
+ * node, and all the KVPairs with that key are kept in a compact array (the
+ * bucket) inside the node. Duplicates therefore do not each need a tower:
+ * heavily repeated keys add no levels and no traversal steps, and a search
+ * finds the whole bucket with one descent.
+ *
+ * The bucket keeps its pairs oldest first and is read from the end, so
+ * search, iteration and remove see the newest duplicate first, exactly like
+ * SkipList.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <K>
+ *            Key
+ * @param <V>
+ *            Value
+ */
+public class BucketSkipList<K extends Comparable<? super K>, V>
+    implements SkipListADT<K, V> {
+    // the highest level a node (and the head) can have
+    private static final int MAX_LEVEL = 31;
+
+    private BucketNode head; // First element (Sentinel Node)
+    private int headLevel; // the highest level currently in use
+    private int size; // number of pairs in all buckets
+    private int keyCount; // number of nodes (distinct keys)
+    private BucketNode[] update; // reusable predecessor array
+    private Random rng;
+
+    /**
+     * Initializes an empty list whose head spans every level.
+     */
+    @SuppressWarnings("unchecked")
+    public BucketSkipList() {
+        head = new BucketNode(null, MAX_LEVEL);
+        update = (BucketNode[])Array.newInstance(
+            BucketNode.class, MAX_LEVEL + 1);
+        rng = new TestableRandom();
+    }
+
+
+    /**
+     * returns a random level (using geometric distribution), minimum of 1 and
+     * at most MAX_LEVEL
+     *
+     * @return int the randomly generated level
+     */
+    public int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && rng.nextBoolean()) {
+            level++;
+        }
+        return level;
+    }
+
+
+    /**
+     * Descends the levels and fills update with the last node whose key is
+     * smaller than the given key on every level.
+     *
+     * @param key
+     *            the key to look for
+     * @return the node with the key, or null if there is none
+     */
+    private BucketNode find(K key) {
+        BucketNode curr = head;
+        for (int level = headLevel; level >= 0; level--) {
+            while (curr.forward[level] != null && curr.forward[level].key
+                .compareTo(key) < 0) {
+                curr = curr.forward[level];
+            }
+            update[level] = curr;
+        }
+        curr = curr.forward[0];
+        if (curr != null && curr.key.compareTo(key) == 0) {
+            return curr;
+        }
+        return null;
+    }
+
+
+    /**
+     * Searches for the KVPairs with the given key.
+     *
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key, newest first
+     */
+    @Override
+    public ArrayList<KVPair<K, V>> search(K key) {
+        ArrayList<KVPair<K, V>> output = new ArrayList<>();
+        BucketNode node = find(key);
+        if (node != null) {
+            for (int i = node.count - 1; i >= 0; i--) {
+                output.add(node.bucket[i]);
+            }
+        }
+        return output;
+    }
+
+
+    /**
+     * @return the number of KVPairs in the list
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @return the number of distinct keys, which is the number of nodes
+     */
+    public int keyCount() {
+        return keyCount;
+    }
+
+
+    /**
+     * Adds the KVPair to the bucket of its key, creating a node with a random
+     * level only if the key is new.
+     *
+     * @param it
+     *            the KVPair to be inserted
+     */
+    @Override
+    public void insert(KVPair<K, V> it) {
+        BucketNode node = find(it.getKey());
+        if (node == null) {
+            int randLevel = randomLevel();
+            for (int level = headLevel + 1; level <= randLevel; level++) {
+                update[level] = head;
+            }
+            headLevel = Math.max(headLevel, randLevel);
+            node = new BucketNode(it.getKey(), randLevel);
+            for (int level = 0; level <= randLevel; level++) {
+                node.forward[level] = update[level].forward[level];
+                update[level].forward[level] = node;
+            }
+            keyCount++;
+        }
+        node.add(it);
+        size++;
+    }
+
+
+    /**
+     * Removes the newest KVPair with the given key.
+     *
+     * @param key
+     *            of the KVPair to be removed
+     * @return the removed pair if the key was present and null if not
+     */
+    @Override
+    public KVPair<K, V> remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        BucketNode node = find(key);
+        if (node == null) {
+            return null;
+        }
+        return removeAt(node, node.count - 1);
+    }
+
+
+    /**
+     * Removes the newest KVPair with the given key and value, in
+     * O(log n + bucket size).
+     *
+     * @param key
+     *            the key of the KVPair to be removed
+     * @param value
+     *            the value of the KVPair to be removed
+     * @return the removed pair if it was present and null if not
+     */
+    public KVPair<K, V> remove(K key, V value) {
+        if (key == null || value == null) {
+            return null;
+        }
+        BucketNode node = find(key);
+        if (node == null) {
+            return null;
+        }
+        int index = node.lastIndexOf(value);
+        return (index < 0) ? null : removeAt(node, index);
+    }
+
+
+    /**
+     * Removes the first KVPair in list order holding the specified value.
+     *
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair if the value was present and null if not
+     */
+    @Override
+    public KVPair<K, V> removeByValue(V val) {
+        if (val == null) {
+            return null;
+        }
+        BucketNode node = head.forward[0];
+        while (node != null) {
+            int index = node.lastIndexOf(val);
+            if (index >= 0) {
+                find(node.key);
+                return removeAt(node, index);
+            }
+            node = node.forward[0];
+        }
+        return null;
+    }
+
+
+    /**
+     * Removes one pair from a bucket and unlinks the node if its bucket is
+     * now empty. The predecessors of the node must be in update.
+     *
+     * @param node
+     *            the node holding the pair
+     * @param index
+     *            the position of the pair in the bucket
+     * @return the removed pair
+     */
+    private KVPair<K, V> removeAt(BucketNode node, int index) {
+        KVPair<K, V> removed = node.removeAt(index);
+        size--;
+        if (node.count == 0) {
+            for (int level = 0; level <= node.level; level++) {
+                update[level].forward[level] = node.forward[level];
+            }
+            while (headLevel > 0 && head.forward[headLevel] == null) {
+                headLevel--;
+            }
+            keyCount--;
+        }
+        return removed;
+    }
+
+
+    /**
+     * Prints out the list in a human readable format to the console, one line
+     * per KVPair.
+     */
+    @Override
+    public void dump() {
+        System.out.println("SkipList dump:");
+        System.out.println("Node with depth " + Math.max(1, headLevel)
+            + ", value null");
+        BucketNode node = head.forward[0];
+        while (node != null) {
+            for (int i = node.count - 1; i >= 0; i--) {
+                System.out.println("node with depth " + node.level + " value "
+                    + node.key + " " + node.bucket[i].getValue());
+            }
+            node = node.forward[0];
+        }
+        System.out.println("SkipList size is: " + size);
+    }
+
+    /**
+     * This class implements a node of the BucketSkipList holding every pair
+     * with one key.
+     */
+    private class BucketNode {
+
+        // the key shared by every pair in the bucket
+        private final K key;
+        // the pairs with this key, oldest first
+        private KVPair<K, V>[] bucket;
+        // the number of pairs in the bucket
+        private int count;
+        // An array of pointers to subsequent nodes
+        private final BucketNode[] forward;
+        // the level of the node
+        private final int level;
+
+        /**
+         * Initializes an empty node.
+         *
+         * @param key
+         *            the key of the node
+         * @param level
+         *            the level of the node
+         */
+        @SuppressWarnings("unchecked")
+        public BucketNode(K key, int level) {
+            this.key = key;
+            this.level = level;
+            forward = (BucketNode[])Array.newInstance(
+                BucketNode.class, level + 1);
+            bucket = (KVPair<K, V>[])Array.newInstance(KVPair.class, 1);
+        }
+
+
+        /**
+         * Appends a pair to the bucket, growing it if needed.
+         *
+         * @param pair
+         *            the pair to add
+         */
+        public void add(KVPair<K, V> pair) {
+            if (count == bucket.length) {
+                bucket = Arrays.copyOf(bucket, count * 2);
+            }
+            bucket[count++] = pair;
+        }
+
+
+        /**
+         * Finds the newest pair in the bucket holding a value.
+         *
+         * @param value
+         *            the value to look for
+         * @return its position in the bucket, or -1
+         */
+        public int lastIndexOf(V value) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (value.equals(bucket[i].getValue())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+
+        /**
+         * Removes the pair at a position, keeping the others in order.
+         *
+         * @param index
+         *            the position of the pair
+         * @return the removed pair
+         */
+        public KVPair<K, V> removeAt(int index) {
+            KVPair<K, V> removed = bucket[index];
+            System.arraycopy(bucket, index + 1, bucket, index, count - index
+                - 1);
+            bucket[--count] = null;
+            return removed;
+        }
+    }
+
+
+    private class BucketSkipListIterator implements Iterator<KVPair<K, V>> {
+        private BucketNode node;
+        private int index;
+
+        public BucketSkipListIterator() {
+            node = head.forward[0];
+            index = (node == null) ? -1 : node.count - 1;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return node != null;
+        }
+
+
+        @Override
+        public KVPair<K, V> next() {
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            KVPair<K, V> elem = node.bucket[index];
+            index--;
+            if (index < 0) {
+                node = node.forward[0];
+                index = (node == null) ? -1 : node.count - 1;
+            }
+            return elem;
+        }
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new BucketSkipListIterator();
+    }
+
+}
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class tests the methods of BucketSkipList class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class BucketSkipListTest extends SkipListADTTestCase {
+    /**
+     * The skip list instance used for testing.
+     */
+    private BucketSkipList<String, Rectangle> sl;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        sl = new BucketSkipList<String, Rectangle>();
+    }
+
+
+    @Override
+    protected SkipListADT<String, Rectangle> createList() {
+        return new BucketSkipList<String, Rectangle>();
+    }
+
+
+    /**
+     * Keeps to a few keys so that the buckets hold long runs of duplicates.
+     *
+     * @param random
+     *            the source of the random operations
+     * @return the key
+     */
+    @Override
+    protected String randomKey(Random random) {
+        return "k" + random.nextInt(10);
+    }
+
+
+    /**
+     * Tests that duplicates share one node and are returned newest first
+     */
+    public void testDuplicatesShareNode() {
+        Rectangle r1 = new Rectangle(0, 0, 5, 5);
+        Rectangle r2 = new Rectangle(10, 10, 5, 5);
+        Rectangle r3 = new Rectangle(20, 20, 5, 5);
+        sl.insert(new KVPair<>("r2", r1));
+        sl.insert(new KVPair<>("a", r2));
+        sl.insert(new KVPair<>("r2", r3));
+        assertEquals(3, sl.size());
+        assertEquals(2, sl.keyCount());
+
+        ArrayList<KVPair<String, Rectangle>> results = sl.search("r2");
+        assertEquals(2, results.size());
+        assertEquals(r3, results.get(0).getValue());
+        assertEquals(r1, results.get(1).getValue());
+        assertTrue(sl.search("b").isEmpty());
+    }
+
+
+    /**
+     * Tests removing a specific value of a key
+     */
+    public void testRemoveKeyAndValue() {
+        Rectangle r1 = new Rectangle(0, 0, 5, 5);
+        Rectangle r2 = new Rectangle(10, 10, 5, 5);
+        Rectangle r3 = new Rectangle(20, 20, 5, 5);
+        sl.insert(new KVPair<>("r", r1));
+        sl.insert(new KVPair<>("r", r2));
+        sl.insert(new KVPair<>("r", r3));
+
+        assertNull(sl.remove("r", new Rectangle(1, 1, 1, 1)));
+        assertNull(sl.remove("s", r1));
+        assertNull(sl.remove(null, r1));
+        assertEquals(r2, sl.remove("r", r2).getValue());
+        assertEquals(r3, sl.search("r").get(0).getValue());
+        assertEquals(r1, sl.search("r").get(1).getValue());
+        assertEquals(r3, sl.remove("r").getValue());
+        assertEquals(r1, sl.remove("r", r1).getValue());
+        assertEquals(0, sl.size());
+        assertEquals(0, sl.keyCount());
+        assertNull(sl.remove("r"));
+        assertNull(sl.remove(null));
+    }
+
+}
@@ -1,3 +1,6 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
 /**
  * The purpose of this class is to parse a text file into its appropriate, line
  * by line commands for the format specified in the project spec.
@@ -12,6 +15,10 @@ public class CommandProcessor {
     // commands that the command processor
     // feeds to it
     private Database data;
+    // true if runs of consecutive inserts are collected into one batch
+    private boolean batchInserts;
+    // the inserts collected so far that have not been given to the database
+    private ArrayList<KVPair<String, Rectangle>> pending;
 
     /**
      * The constructor for the command processor requires a database instance to
@@ -19,7 +26,50 @@ public class CommandProcessor {
      * commands to.
      */
     public CommandProcessor() {
-        data = new Database();
+        this(false);
+    }
+
+
+    /**
+     * Creates a command processor that can group runs of consecutive insert
+     * commands into one batch. A batch is handed to the database as soon as
+     * any other command arrives or flush is called, and the output for each
+     * insert line is the same as without batching.
+     * 
+     * @param batchInserts
+     *            true to group consecutive inserts into batches
+     */
+    public CommandProcessor(boolean batchInserts) {
+        this(new Database(), batchInserts);
+    }
+
+
+    /**
+     * Creates a command processor that feeds the commands to the given
+     * database, for example one recovered from its write-ahead log. With
+     * batching, a run of inserts is also logged as one commit.
+     * 
+     * @param data
+     *            the database to feed the commands to
+     * @param batchInserts
+     *            true to group consecutive inserts into batches
+     */
+    public CommandProcessor(Database data, boolean batchInserts) {
+        this.data = data;
+        this.batchInserts = batchInserts;
+        pending = new ArrayList<>();
+    }
+
+
+    /**
+     * Hands the inserts collected so far to the database. This must be called
+     * after the last command when batching is turned on.
+     */
+    public void flush() {
+        if (!pending.isEmpty()) {
+            data.insertAll(pending);
+            pending.clear();
+        }
     }
 
 
@@ -44,15 +94,22 @@ public class CommandProcessor {
         String[] arr = line.split("\\s{1,}");
         String command = arr[0]; // the command will be the first of these
                                  // elements
+        // every command other than a well-formed insert must see the batched
+        // inserts first, so the output stays in line order
+        if (!command.equals("insert")) {
+            flush();
+        }
         // calls the insert function and passes the correct
         // parameters by converting the string integers into
         // their Integer equivalent, trimming the whitespace
         if (command.equals("insert")) {
             if (arr.length < 6) {
+                flush();
                 System.out.println("Rectangle rejected: ");
                 return;
             }
             if (!arr[1].matches("^[a-zA-Z][a-zA-Z0-9_]*$")) {
+                flush();
                 throw new IllegalArgumentException("Invalid name format");
             }
 
@@ -63,9 +120,15 @@ public class CommandProcessor {
 
                 KVPair<String, Rectangle> pair = new KVPair<>(arr[1],
                     rectangle);
-                data.insert(pair);
+                if (batchInserts) {
+                    pending.add(pair);
+                }
+                else {
+                    data.insert(pair);
+                }
             }
             catch (NumberFormatException e) {
+                flush();
                 System.out.println("Rectangle rejected: ");
             }
         }
@@ -96,6 +159,15 @@ public class CommandProcessor {
                         arr[4]));
             }
 
+        }
+        else if (command.equals("removeregion")) {
+            // removes every rectangle intersecting a region at once
+            if (arr.length == 5) {
+                data.removeregion(Integer.parseInt(arr[1]), Integer.parseInt(
+                    arr[2]), Integer.parseInt(arr[3]), Integer.parseInt(
+                        arr[4]));
+            }
+
         }
         else if (command.equals("intersections")) {
             // calls the intersections method, no parameters to be passed
@@ -104,13 +176,19 @@ public class CommandProcessor {
             data.intersections();
         }
         else if (command.equals("search")) {
-            // calls the search method for a name of object
-            if (arr.length != 2) {
+            // calls the search method for a name of object, or for each of
+            // several names at once
+            if (arr.length < 2) {
                 System.out.println("unrecognized command search" + line
                     .substring(arr[0].length()));
                 return;
             }
-            data.search(arr[1]);
+            if (arr.length == 2) {
+                data.search(arr[1]);
+            }
+            else {
+                data.searchAll(Arrays.asList(arr).subList(1, arr.length));
+            }
         }
         else if (command.equals("dump")) {
             // calls the dump method for the database, takes no parameters
@@ -118,6 +196,10 @@ public class CommandProcessor {
             // information)
             data.dump();
         }
+        else if (command.equals("stats")) {
+            // calls the stats method for the database, takes no parameters
+            data.stats();
+        }
         else {
             // the first white space delimited string in the line is not
             // one of the commands which can manipulate the database,
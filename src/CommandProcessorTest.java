@@ -325,4 +325,103 @@ public class CommandProcessorTest extends TestCase {
         processCmd("regionsearch 5 5 0 0");
         verifyResult("Rectangle rejected: (5, 5, 0, 0)");
     }
+
+
+    /**
+     * Tests that grouping inserts into batches gives the same output as
+     * running the commands one at a time.
+     */
+    public void testBatchedInserts() {
+        String[] commands = { "insert b 1 1 2 2", "insert a 0 0 5 5",
+            "insert bad 0 0 0 0", "insert b 2 2 2 2", "insert c x 1 1 1",
+            "insert d 3 3 3 3", "search b", "insert e 4 4 4 4",
+            "remove a", "regionsearch 0 0 10 10" };
+
+        for (String command : commands) {
+            cmdProc.processor(command);
+        }
+        String expected = systemOut().getHistory();
+        systemOut().clearHistory();
+
+        CommandProcessor batched = new CommandProcessor(true);
+        for (String command : commands) {
+            batched.processor(command);
+        }
+        batched.flush();
+        assertEquals(expected, systemOut().getHistory());
+    }
+
+
+    /**
+     * Tests that searching for several names prints the same as searching for
+     * each of them in turn.
+     */
+    public void testSearchSeveralNames() {
+        cmdProc.processor("insert b 1 1 2 2");
+        cmdProc.processor("insert a 0 0 5 5");
+        cmdProc.processor("insert b 2 2 2 2");
+        systemOut().clearHistory();
+
+        cmdProc.processor("search b x a");
+        String output = systemOut().getHistory();
+        systemOut().clearHistory();
+
+        cmdProc.processor("search b");
+        cmdProc.processor("search x");
+        cmdProc.processor("search a");
+        assertEquals(systemOut().getHistory(), output);
+
+        systemOut().clearHistory();
+        cmdProc.processor("search");
+        assertEquals("unrecognized command search", systemOut().getHistory()
+            .trim());
+    }
+
+
+    /**
+     * Tests that the stats command reports the statistics without dumping
+     * the rectangles.
+     */
+    public void testStats() {
+        TestableRandom.setNextBooleans(true, false, false);
+        cmdProc.processor("insert a 0 0 5 5");
+        cmdProc.processor("insert b 1 1 2 2");
+        systemOut().clearHistory();
+
+        cmdProc.processor("stats");
+        String output = systemOut().getHistory();
+        assertTrue(output.contains("SkipList stats:"));
+        assertTrue(output.contains("size: 2"));
+        assertTrue(output.contains("head level: 2"));
+        assertTrue(output.contains("nodes per level: 1=2 2=1"));
+        assertTrue(output.contains("max tower height: 2"));
+        assertFalse(output.contains("0, 0, 5, 5"));
+    }
+
+
+    /**
+     * Tests that removeregion removes exactly the rectangles intersecting the
+     * region, in list order, and rejects regions without area
+     */
+    public void testRemoveRegion() {
+        processCmd("insert c 0 0 5 5");
+        processCmd("insert a 20 20 5 5");
+        processCmd("insert b 4 4 2 2");
+        processCmd("insert a 3 3 1 1");
+        resetOutput();
+
+        processCmd("removeregion 0 0 0 5");
+        verifyResult("Rectangle rejected: (0, 0, 0, 5)");
+        processCmd("removeregion 2 2 3 3");
+        verifyResult("Rectangle removed: (a, 3, 3, 1, 1)\n"
+            + "Rectangle removed: (b, 4, 4, 2, 2)\n"
+            + "Rectangle removed: (c, 0, 0, 5, 5)");
+        processCmd("removeregion 100 100 5 5");
+        verifyResult("");
+        processCmd("search a");
+        assertTrue(systemOut().getHistory().contains("20, 20, 5, 5"));
+        processCmd("search c");
+        assertTrue(systemOut().getHistory().contains("Rectangle not found"));
+    }
+
 }
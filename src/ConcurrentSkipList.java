@@ -0,0 +1,490 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ * This class implements a lock-free SkipList that many threads can search,
+ * insert into and remove from at the same time. Every forward pointer is an
+ * AtomicMarkableReference; a node is deleted by first marking its forward
+ * pointers (logical removal) and then unlinking it with compare-and-set
+ * (physical removal), which any traversing thread may help with.
+ *
+ * Duplicate keys are allowed just like in SkipList. To keep a strict total
+ * order every node also gets a unique sequence number, and nodes with equal
+ * keys are ordered newest first, which is the order SkipList uses too.
+ *
+ * Iterators are weakly consistent: they never throw because of concurrent
+ * changes and return every pair that was present for the whole iteration,
+ * but they may or may not see pairs inserted or removed meanwhile.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <K>
+ *            Key
+ * @param <V>
+ *            Value
+ */
+public class ConcurrentSkipList<K extends Comparable<? super K>, V>
+    implements SkipListADT<K, V> {
+    // the highest level a node (and the head) can have
+    private static final int MAX_LEVEL = 31;
+
+    private final Node head; // First element (Sentinel Node)
+    private final AtomicInteger size; // number of entries in the list
+    private final AtomicInteger level; // highest level currently in use
+    private final AtomicLong sequence; // source of node sequence numbers
+
+    /**
+     * Initializes an empty list whose head spans every level.
+     */
+    public ConcurrentSkipList() {
+        head = new Node(null, 0, MAX_LEVEL);
+        size = new AtomicInteger(0);
+        level = new AtomicInteger(0);
+        sequence = new AtomicLong(0);
+    }
+
+
+    /**
+     * returns a random level (using geometric distribution), minimum of 1 and
+     * at most MAX_LEVEL
+     *
+     * @return int the randomly generated level
+     */
+    public int randomLevel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lvl = 1;
+        while (lvl < MAX_LEVEL && random.nextBoolean()) {
+            lvl++;
+        }
+        return lvl;
+    }
+
+
+    /**
+     * Compares a node with a probe made of a key and a sequence number.
+     * Nodes with equal keys are ordered by descending sequence number, so a
+     * probe with Long.MAX_VALUE sorts before every node with that key.
+     *
+     * @param node
+     *            the node to compare
+     * @param key
+     *            the key of the probe
+     * @param seq
+     *            the sequence number of the probe
+     * @return negative, zero or positive if the node sorts before, at or
+     *         after the probe
+     */
+    private int compare(Node node, K key, long seq) {
+        int cmp = node.element().getKey().compareTo(key);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Long.compare(seq, node.seq);
+    }
+
+
+    /**
+     * Finds the predecessors and successors of the probe on the levels in
+     * use, unlinking any marked nodes it walks over on the way. The descent
+     * starts at the current level of the list, or at the top level of preds
+     * if that is higher. No node is linked in above the current level, since
+     * an insert raises the level before it links the upper levels of its
+     * node.
+     *
+     * @param key
+     *            the key of the probe
+     * @param seq
+     *            the sequence number of the probe
+     * @param preds
+     *            filled with the last node before the probe on the levels 0
+     *            up to its length minus one, or null to only unlink
+     * @param succs
+     *            filled with the first node at or after the probe on the
+     *            same levels, or null to only unlink
+     * @return true if a node equal to the probe is present
+     */
+    private boolean find(K key, long seq, Node[] preds, Node[] succs) {
+        boolean[] marked = { false };
+        retry: while (true) {
+            int top = level.get();
+            if (preds != null) {
+                top = Math.max(top, preds.length - 1);
+            }
+            Node pred = head;
+            Node curr = null;
+            for (int lvl = top; lvl >= 0; lvl--) {
+                curr = pred.next[lvl].getReference();
+                while (curr != null) {
+                    Node succ = curr.next[lvl].get(marked);
+                    if (marked[0]) {
+                        // help finish the removal of curr
+                        if (!pred.next[lvl].compareAndSet(curr, succ, false,
+                            false)) {
+                            continue retry;
+                        }
+                        curr = succ;
+                    }
+                    else if (compare(curr, key, seq) < 0) {
+                        pred = curr;
+                        curr = succ;
+                    }
+                    else {
+                        break;
+                    }
+                }
+                if (preds != null && lvl < preds.length) {
+                    preds[lvl] = pred;
+                    succs[lvl] = curr;
+                }
+            }
+            return curr != null && compare(curr, key, seq) == 0;
+        }
+    }
+
+
+    /**
+     * Searches for the KVPair using the key which is a Comparable object. The
+     * search never writes to the list, so it is wait-free.
+     *
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key
+     */
+    @Override
+    public ArrayList<KVPair<K, V>> search(K key) {
+        ArrayList<KVPair<K, V>> output = new ArrayList<>();
+        Node curr = firstAtLeast(key);
+        while (curr != null && curr.element().getKey().compareTo(key) == 0) {
+            if (!curr.isMarked()) {
+                output.add(curr.element());
+            }
+            curr = curr.next[0].getReference();
+        }
+        return output;
+    }
+
+
+    /**
+     * Descends the levels without modifying the list to find the first node
+     * whose key is greater than or equal to the given key.
+     *
+     * @param key
+     *            the key to look for
+     * @return the first such node, or null if there is none
+     */
+    private Node firstAtLeast(K key) {
+        boolean[] marked = { false };
+        Node pred = head;
+        Node curr = null;
+        for (int lvl = level.get(); lvl >= 0; lvl--) {
+            curr = pred.next[lvl].getReference();
+            while (curr != null) {
+                Node succ = curr.next[lvl].get(marked);
+                if (marked[0]) {
+                    curr = succ;
+                }
+                else if (curr.element().getKey().compareTo(key) < 0) {
+                    pred = curr;
+                    curr = succ;
+                }
+                else {
+                    break;
+                }
+            }
+        }
+        return curr;
+    }
+
+
+    /**
+     * @return the size of the list
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+
+    /**
+     * Inserts the KVPair in the list at its appropriate spot as designated by
+     * its lexicographical order. The node is first linked in at level 0, which
+     * is the moment it becomes part of the list, and then in the levels above.
+     *
+     * @param it
+     *            the KVPair to be inserted
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void insert(KVPair<K, V> it) {
+        K key = it.getKey();
+        int topLevel = randomLevel();
+        long seq = sequence.incrementAndGet();
+        // only the levels of the new node are linked
+        Node[] preds = (Node[])new ConcurrentSkipList<?, ?>.Node[topLevel + 1];
+        Node[] succs = (Node[])new ConcurrentSkipList<?, ?>.Node[topLevel + 1];
+        Node newNode = new Node(it, seq, topLevel);
+        while (true) {
+            find(key, seq, preds, succs);
+            for (int lvl = 0; lvl <= topLevel; lvl++) {
+                newNode.next[lvl].set(succs[lvl], false);
+            }
+            if (preds[0].next[0].compareAndSet(succs[0], newNode, false,
+                false)) {
+                break;
+            }
+        }
+        size.incrementAndGet();
+        raiseLevel(topLevel);
+
+        for (int lvl = 1; lvl <= topLevel; lvl++) {
+            while (true) {
+                Node succ = succs[lvl];
+                Node current = newNode.next[lvl].getReference();
+                if (current != succ && !newNode.next[lvl].compareAndSet(
+                    current, succ, false, false)) {
+                    // the new node is already being removed
+                    return;
+                }
+                if (preds[lvl].next[lvl].compareAndSet(succ, newNode, false,
+                    false)) {
+                    break;
+                }
+                find(key, seq, preds, succs);
+            }
+        }
+    }
+
+
+    /**
+     * Records that a node with the given level exists so searches start high
+     * enough to use it.
+     *
+     * @param newLevel
+     *            the level of the inserted node
+     */
+    private void raiseLevel(int newLevel) {
+        int current = level.get();
+        while (current < newLevel && !level.compareAndSet(current, newLevel)) {
+            current = level.get();
+        }
+    }
+
+
+    /**
+     * Removes the first KVPair with the given key. If another thread removes
+     * that pair first, the next pair with the same key is tried.
+     *
+     * @param key
+     *            of the the KVPair to be removed
+     * @return the removed pair if the key was present and null if not
+     */
+    @Override
+    public KVPair<K, V> remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        while (true) {
+            Node curr = firstAtLeast(key);
+            while (curr != null && curr.isMarked()) {
+                curr = curr.next[0].getReference();
+            }
+            if (curr == null || curr.element().getKey().compareTo(key) != 0) {
+                return null;
+            }
+            if (removeNode(curr)) {
+                return curr.element();
+            }
+        }
+    }
+
+
+    /**
+     * Removes a KVPair with the specified value by scanning level 0 for it.
+     *
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair if the value was present and null if not
+     */
+    @Override
+    public KVPair<K, V> removeByValue(V val) {
+        if (val == null) {
+            return null;
+        }
+        Node curr = head.next[0].getReference();
+        while (curr != null) {
+            if (!curr.isMarked() && val.equals(curr.element().getValue())
+                && removeNode(curr)) {
+                return curr.element();
+            }
+            curr = curr.next[0].getReference();
+        }
+        return null;
+    }
+
+
+    /**
+     * Logically removes the node by marking its forward pointers from the top
+     * down, then physically unlinks it.
+     *
+     * @param node
+     *            the node to be removed
+     * @return true if this thread removed the node, false if another thread
+     *         did
+     */
+    private boolean removeNode(Node node) {
+        boolean[] marked = { false };
+        for (int lvl = node.level; lvl >= 1; lvl--) {
+            Node succ = node.next[lvl].get(marked);
+            while (!marked[0]) {
+                node.next[lvl].compareAndSet(succ, succ, false, true);
+                succ = node.next[lvl].get(marked);
+            }
+        }
+        Node succ = node.next[0].get(marked);
+        while (true) {
+            boolean markedByMe = node.next[0].compareAndSet(succ, succ, false,
+                true);
+            succ = node.next[0].get(marked);
+            if (markedByMe) {
+                size.decrementAndGet();
+                find(node.element().getKey(), node.seq, null, null);
+                return true;
+            }
+            else if (marked[0]) {
+                return false;
+            }
+        }
+    }
+
+
+    /**
+     * Prints out the list in a human readable format to the console. While
+     * other threads are writing the output is only a best-effort picture.
+     */
+    @Override
+    public void dump() {
+        System.out.println("SkipList dump:");
+        System.out.println("Node with depth " + Math.max(1, level.get())
+            + ", value null");
+        Node curr = head.next[0].getReference();
+        int count = 0;
+        while (curr != null) {
+            if (!curr.isMarked()) {
+                System.out.println("node with depth " + curr.level + " value "
+                    + curr.element().getKey() + " " + curr.element()
+                        .getValue());
+                count++;
+            }
+            curr = curr.next[0].getReference();
+        }
+        System.out.println("SkipList size is: " + count);
+    }
+
+    /**
+     * This class implements a node of the ConcurrentSkipList. Its forward
+     * pointers carry the deletion mark of the node itself.
+     */
+    private class Node {
+
+        // the KVPair to hold
+        private final KVPair<K, V> pair;
+        // tie breaker between equal keys, larger means newer
+        private final long seq;
+        // the level of the node
+        private final int level;
+        // An array of markable pointers to subsequent nodes
+        private final AtomicMarkableReference<Node>[] next;
+
+        /**
+         * Initializes the node with its KVPair and empty forward pointers for
+         * the levels 0 up to level.
+         *
+         * @param tempPair
+         *            the KVPair to be inserted
+         * @param seq
+         *            the sequence number of the node
+         * @param level
+         *            the level of the node
+         */
+        @SuppressWarnings("unchecked")
+        public Node(KVPair<K, V> tempPair, long seq, int level) {
+            this.pair = tempPair;
+            this.seq = seq;
+            this.level = level;
+            next = (AtomicMarkableReference<Node>[])
+                new AtomicMarkableReference<?>[level + 1];
+            for (int i = 0; i <= level; i++) {
+                next[i] = new AtomicMarkableReference<Node>(null, false);
+            }
+        }
+
+
+        /**
+         * Returns the KVPair stored in the node.
+         *
+         * @return the KVPair
+         */
+        public KVPair<K, V> element() {
+            return pair;
+        }
+
+
+        /**
+         * @return true if the node has been logically removed
+         */
+        public boolean isMarked() {
+            return next[0].isMarked();
+        }
+    }
+
+
+    private class ConcurrentSkipListIterator
+        implements Iterator<KVPair<K, V>> {
+        private Node upcoming;
+
+        public ConcurrentSkipListIterator() {
+            upcoming = advance(head);
+        }
+
+
+        /**
+         * Returns the first unmarked node after the given one.
+         */
+        private Node advance(Node from) {
+            Node curr = from.next[0].getReference();
+            while (curr != null && curr.isMarked()) {
+                curr = curr.next[0].getReference();
+            }
+            return curr;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return upcoming != null;
+        }
+
+
+        @Override
+        public KVPair<K, V> next() {
+            if (upcoming == null) {
+                throw new NoSuchElementException();
+            }
+            KVPair<K, V> elem = upcoming.element();
+            upcoming = advance(upcoming);
+            return elem;
+        }
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new ConcurrentSkipListIterator();
+    }
+
+}
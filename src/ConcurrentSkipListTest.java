@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import student.TestCase;
+
+/**
+ * This class tests the methods of ConcurrentSkipList class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class ConcurrentSkipListTest extends TestCase {
+    /**
+     * The skip list instance used for testing.
+     */
+    private ConcurrentSkipList<String, Rectangle> sl;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        sl = new ConcurrentSkipList<String, Rectangle>();
+    }
+
+
+    /**
+     * Tests that random levels stay within their bounds
+     */
+    public void testRandomLevel() {
+        for (int i = 0; i < 1000; i++) {
+            int level = sl.randomLevel();
+            assertTrue(level >= 1);
+            assertTrue(level <= 31);
+        }
+    }
+
+
+    /**
+     * Tests insert and search, including duplicates which are returned newest
+     * first like in SkipList
+     */
+    public void testInsertAndSearch() {
+        Rectangle r1 = new Rectangle(0, 0, 5, 5);
+        Rectangle r2 = new Rectangle(10, 10, 5, 5);
+        Rectangle r3 = new Rectangle(20, 20, 5, 5);
+        sl.insert(new KVPair<>("B", r1));
+        sl.insert(new KVPair<>("A", r2));
+        sl.insert(new KVPair<>("B", r3));
+        assertEquals(3, sl.size());
+
+        ArrayList<KVPair<String, Rectangle>> results = sl.search("B");
+        assertEquals(2, results.size());
+        assertEquals(r3, results.get(0).getValue());
+        assertEquals(r1, results.get(1).getValue());
+        assertEquals(1, sl.search("A").size());
+        assertTrue(sl.search("C").isEmpty());
+    }
+
+
+    /**
+     * Tests removing by key and by value
+     */
+    public void testRemove() {
+        Rectangle r1 = new Rectangle(0, 0, 5, 5);
+        Rectangle r2 = new Rectangle(10, 10, 5, 5);
+        sl.insert(new KVPair<>("A", r1));
+        sl.insert(new KVPair<>("B", r2));
+
+        assertNull(sl.remove(null));
+        assertNull(sl.remove("C"));
+        assertEquals(r1, sl.remove("A").getValue());
+        assertNull(sl.remove("A"));
+        assertEquals(1, sl.size());
+
+        assertNull(sl.removeByValue(null));
+        assertNull(sl.removeByValue(r1));
+        assertEquals("B", sl.removeByValue(r2).getKey());
+        assertEquals(0, sl.size());
+        assertFalse(sl.iterator().hasNext());
+    }
+
+
+    /**
+     * Tests that the iterator returns the pairs in key order
+     */
+    public void testIterator() {
+        String[] keys = { "d", "a", "c", "b", "e" };
+        for (String key : keys) {
+            sl.insert(new KVPair<>(key, new Rectangle(1, 1, 1, 1)));
+        }
+        Iterator<KVPair<String, Rectangle>> iter = sl.iterator();
+        String previous = "";
+        int count = 0;
+        while (iter.hasNext()) {
+            String key = iter.next().getKey();
+            assertTrue(previous.compareTo(key) < 0);
+            previous = key;
+            count++;
+        }
+        assertEquals(5, count);
+        Exception thrown = null;
+        try {
+            iter.next();
+        }
+        catch (Exception e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * Tests the dump output of the list
+     */
+    public void testDump() {
+        sl.insert(new KVPair<>("A", new Rectangle(1, 2, 3, 4)));
+        sl.dump();
+        String output = systemOut().getHistory();
+        assertTrue(output.contains("SkipList dump:"));
+        assertTrue(output.contains("value A 1, 2, 3, 4"));
+        assertTrue(output.contains("SkipList size is: 1"));
+    }
+
+
+    /**
+     * Tests that several threads inserting and removing at the same time leave
+     * the list consistent
+     *
+     * @throws InterruptedException
+     *             if the test thread is interrupted
+     */
+    public void testConcurrentInsertRemove() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 2000;
+        Thread[] workers = new Thread[threads];
+        // an assertion failing in a worker would only end that thread, so
+        // the workers count their removes for the test thread to check
+        AtomicInteger removed = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    String key = "k" + (i * threads + id);
+                    sl.insert(new KVPair<>(key, new Rectangle(id, i, 1, 1)));
+                    if (i % 2 == 1) {
+                        if (sl.remove(key) != null) {
+                            removed.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * perThread / 2, removed.get());
+        assertEquals(threads * perThread / 2, sl.size());
+        int count = 0;
+        String previous = "";
+        for (KVPair<String, Rectangle> pair : sl) {
+            assertTrue(previous.compareTo(pair.getKey()) < 0);
+            previous = pair.getKey();
+            count++;
+        }
+        assertEquals(sl.size(), count);
+    }
+
+}
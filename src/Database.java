@@ -1,6 +1,12 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.lang.reflect.Array;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class is responsible for interfacing between the command processor and
@@ -21,19 +27,177 @@ public class Database {
     // a string for the name of the rectangle and then
     // a rectangle object, these are stored in a KVPair,
     // see the KVPair class for more information
-    private SkipList<String, Rectangle> list;
+    private SkipListADT<String, Rectangle> list;
 
     // This is an Iterator object over the SkipList to loop through it from
     // outside the class.
     // You will need to define an extra Iterator for the intersections method.
     private Iterator<KVPair<String, Rectangle>> itr1;
 
+    // the log every change is written to before it is reported, or null
+    private WriteAheadLog log;
+
     /**
      * The constructor for this class initializes a SkipList object with String
-     * and Rectangle a its parameters.
+     * and Rectangle a its parameters. The list keeps a key index, so searching
+     * and removing by name find the name in O(1) expected time.
      */
     public Database() {
-        list = new SkipList<String, Rectangle>();
+        this(indexed(new SkipList<>()));
+    }
+
+
+    /**
+     * Turns on the key and value indexes of a SkipList.
+     * 
+     * @param list
+     *            the SkipList
+     * @return the same SkipList
+     */
+    private static SkipList<String, Rectangle> indexed(
+        SkipList<String, Rectangle> list) {
+        list.setKeyIndexEnabled(true);
+        list.setValueIndexEnabled(true);
+        return list;
+    }
+
+
+    /**
+     * Creates a database on top of the given skip list, for example a
+     * ConcurrentSkipList when several threads share one index.
+     * 
+     * @param list
+     *            the (empty) skip list to store the rectangles in
+     */
+    public Database(SkipListADT<String, Rectangle> list) {
+        this.list = list;
+    }
+
+
+    /**
+     * Creates a database that writes every change to a write-ahead log and
+     * commits it before the SkipList is changed, so the list never holds a
+     * change the log does not, and a change that was printed survives a crash
+     * as far as the durability of the log allows. If the log cannot be
+     * written the change is not made, and the log refuses every later change.
+     * Removes are logged before it is known whether they find anything;
+     * replaying one that found nothing changes nothing.
+     * 
+     * @param list
+     *            the (empty) skip list to store the rectangles in
+     * @param log
+     *            the log to write the changes to
+     */
+    public Database(
+        SkipListADT<String, Rectangle> list,
+        WriteAheadLog log) {
+        this.list = list;
+        this.log = log;
+    }
+
+
+    /**
+     * Rebuilds a database from its write-ahead log and keeps logging to it.
+     * The records are replayed into an empty SkipList without printing
+     * anything. Consecutive inserts are replayed as one run: a run that
+     * meets an empty list, such as the leading run of the log, is sorted
+     * and bulk loaded in O(n) after the sort, and any other run is merged
+     * in with one insertAll.
+     * 
+     * @param path
+     *            the log file; a missing file gives an empty database
+     * @param durability
+     *            when the log forces new records to disk
+     * @param intervalMillis
+     *            the milliseconds between forces for Durability.INTERVAL
+     * @return the recovered database
+     * @throws IOException
+     *             if the log cannot be read or opened
+     */
+    public static Database recover(
+        Path path,
+        WriteAheadLog.Durability durability,
+        long intervalMillis)
+        throws IOException {
+        Database db = new Database();
+        Replayer replayer = db.new Replayer();
+        WriteAheadLog.replay(path, replayer);
+        replayer.flush();
+        db.log = new WriteAheadLog(path, durability, intervalMillis);
+        return db;
+    }
+
+
+    /**
+     * Applies the records of a log to the list. Consecutive inserts are
+     * collected and inserted together before the next remove.
+     */
+    private class Replayer implements WriteAheadLog.Handler {
+        // the inserts since the last remove
+        private ArrayList<KVPair<String, Rectangle>> batch = new ArrayList<>();
+
+        @Override
+        public void insert(KVPair<String, Rectangle> pair) {
+            batch.add(pair);
+        }
+
+
+        @Override
+        public void remove(String name) {
+            flush();
+            list.remove(name);
+        }
+
+
+        @Override
+        public void remove(Rectangle rect) {
+            flush();
+            list.removeByValue(rect);
+        }
+
+
+        @Override
+        public void removeRegion(Rectangle region) {
+            flush();
+            list.removeValuesIf(rect -> rect.intersect(region));
+        }
+
+
+        /**
+         * Inserts the collected inserts. Into an empty list they are bulk
+         * loaded, which needs them in list order: sorted by key, with the
+         * newest of equal keys first. Reversing the run before the stable
+         * sort gives that order.
+         */
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (list.size() == 0) {
+                Collections.reverse(batch);
+                batch.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+                list = indexed(SkipList.bulkLoad(batch.iterator()));
+            }
+            else {
+                list.insertAll(batch);
+            }
+            batch = new ArrayList<>();
+        }
+    }
+
+
+    /**
+     * Forces the write-ahead log, if there is one, and closes it. Changes
+     * made afterwards are no longer logged.
+     * 
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
     }
 
 
@@ -53,6 +217,10 @@ public class Database {
                 + pair.getValue() + ")");
         }
         else {
+            if (log != null) {
+                log.logInsert(pair);
+                log.commit();
+            }
             list.insert(pair);
             System.out.println("Rectangle inserted: (" + pair.getKey() + ", "
                 + pair.getValue() + ")");
@@ -61,6 +229,43 @@ public class Database {
     }
 
 
+    /**
+     * Inserts a run of KVPairs as one batch. Every pair is checked and
+     * reported exactly as insert would report it, in the given order, and
+     * the valid ones are then handed to the SkipList in one call so they can
+     * be merged in a single sweep. The batch is logged as one commit, so
+     * it costs the write-ahead log a single force.
+     * 
+     * @param pairs
+     *            the KVPairs to be inserted, in command order
+     */
+    public void insertAll(List<KVPair<String, Rectangle>> pairs) {
+        ArrayList<KVPair<String, Rectangle>> valid = new ArrayList<>();
+        for (KVPair<String, Rectangle> pair : pairs) {
+            if (!pair.getValue().isInvalid()) {
+                valid.add(pair);
+            }
+        }
+        if (log != null && !valid.isEmpty()) {
+            for (KVPair<String, Rectangle> pair : valid) {
+                log.logInsert(pair);
+            }
+            log.commit();
+        }
+        list.insertAll(valid);
+        for (KVPair<String, Rectangle> pair : pairs) {
+            if (pair.getValue().isInvalid()) {
+                System.out.println("Rectangle rejected: (" + pair.getKey()
+                    + ", " + pair.getValue() + ")");
+            }
+            else {
+                System.out.println("Rectangle inserted: (" + pair.getKey()
+                    + ", " + pair.getValue() + ")");
+            }
+        }
+    }
+
+
     /**
      * Removes a rectangle with the name "name" if available. If not an error
      * message is printed to the console.
@@ -69,19 +274,12 @@ public class Database {
      *            the name of the rectangle to be removed
      */
     public void remove(String name) {
-        KVPair<String, Rectangle> pair = null;
-        Iterator<KVPair<String, Rectangle>> iter = list.iterator();
-
-        while (iter.hasNext()) {
-            KVPair<String, Rectangle> current = iter.next();
-            if (current.getKey().equals(name)) {
-                pair = current;
-                break;
-            }
+        if (log != null) {
+            log.logRemove(name);
+            log.commit();
         }
-
+        KVPair<String, Rectangle> pair = list.remove(name);
         if (pair != null) {
-            list.remove(name);
             System.out.println("Rectangle removed: (" + name + ", " + pair
                 .getValue().toString() + ")");
         }
@@ -106,6 +304,10 @@ public class Database {
      */
     public void remove(int x, int y, int w, int h) {
         Rectangle rect = new Rectangle(x, y, w, h);
+        if (log != null) {
+            log.logRemove(rect);
+            log.commit();
+        }
         KVPair<String, Rectangle> pair = list.removeByValue(rect);
         if (pair == null) {
             System.out.println("Rectangle rejected: " + rect.toString());
@@ -118,6 +320,41 @@ public class Database {
     }
 
 
+    /**
+     * Removes every rectangle intersecting the specified region in one pass
+     * over the list, in place of one remove per rectangle, and prints the
+     * same line for each that remove by name would. A region without area
+     * is rejected like in regionsearch.
+     * 
+     * @param x
+     *            x-Coordinate of the region
+     * @param y
+     *            y-Coordinate of the region
+     * @param w
+     *            width of the region
+     * @param h
+     *            height of the region
+     */
+    public void removeregion(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0) {
+            System.out.println("Rectangle rejected: (" + x + ", " + y + ", " + w
+                + ", " + h + ")");
+            return;
+        }
+        Rectangle region = new Rectangle(x, y, w, h);
+        if (log != null) {
+            log.logRemoveRegion(region);
+            log.commit();
+        }
+        List<KVPair<String, Rectangle>> removed = list.removeValuesIf(
+            rect -> rect.intersect(region));
+        for (KVPair<String, Rectangle> pair : removed) {
+            System.out.println("Rectangle removed: (" + pair.getKey() + ", "
+                + pair.getValue() + ")");
+        }
+    }
+
+
     /**
      * Displays all the rectangles inside the specified region. The rectangle
      * must have some area inside the area that is created by the region,
@@ -143,33 +380,17 @@ public class Database {
         System.out.println("Rectangles intersecting region (" + x + ", " + y
             + ", " + w + ", " + h + "):");
 
-        int count = 0;
-        Iterator<KVPair<String, Rectangle>> countIter = list.iterator();
-        while (countIter.hasNext()) {
-            countIter.next();
-            count++;
-        }
-
-        @SuppressWarnings("unchecked")
-        KVPair<String, Rectangle>[] rect = (KVPair<String, Rectangle>[])Array
-            .newInstance(KVPair.class, count);
-
-        Iterator<KVPair<String, Rectangle>> iter = list.iterator();
-        int index = 0;
-        while (iter.hasNext()) {
-            rect[index] = iter.next();
-            index++;
-        }
-
         Rectangle region = new Rectangle(x, y, w, h);
 
-        for (int i = 0; i < count; i++) {
-            Rectangle rect1 = rect[i].getValue();
-            String name1 = rect[i].getKey();
+        // the list is filtered in parallel, and the ordered stream keeps the
+        // matches in list order for printing
+        List<KVPair<String, Rectangle>> found = StreamSupport.stream(list
+            .spliterator(), true).filter(pair -> pair.getValue().intersect(
+                region)).collect(Collectors.toList());
 
-            if (rect1.intersect(region)) {
-                System.out.println(name1 + " " + rect1.toString());
-            }
+        for (KVPair<String, Rectangle> pair : found) {
+            System.out.println(pair.getKey() + " " + pair.getValue()
+                .toString());
         }
 
     }
@@ -185,54 +406,60 @@ public class Database {
     public void intersections() {
         System.out.println("Intersection pairs:");
 
-        int count = 0;
-        Iterator<KVPair<String, Rectangle>> countIter = list.iterator();
-        while (countIter.hasNext()) {
-            countIter.next();
-            count++;
-        }
-
-        @SuppressWarnings("unchecked")
-        KVPair<String, Rectangle>[] rect = (KVPair<String, Rectangle>[])Array
-            .newInstance(KVPair.class, count);
+        List<KVPair<String, Rectangle>> rect = StreamSupport.stream(list
+            .spliterator(), true).collect(Collectors.toList());
 
-        Iterator<KVPair<String, Rectangle>> iter = list.iterator();
-        int index = 0;
-        while (iter.hasNext()) {
-            rect[index] = iter.next();
-            index++;
+        // every rectangle is compared with the ones after it in parallel, and
+        // the lines are printed afterwards in the order of the serial loops
+        List<String> lines = IntStream.range(0, rect.size()).parallel()
+            .mapToObj(i -> intersectionsOf(rect, i)).flatMap(List::stream)
+            .collect(Collectors.toList());
+        for (String line : lines) {
+            System.out.println(line);
         }
+    }
+
 
-        for (int i = 0; i < rect.length; i++) {
-            Rectangle rect1 = rect[i].getValue();
-            String name1 = rect[i].getKey();
-
-            for (int j = i + 1; j < rect.length; j++) {
-                Rectangle rect2 = rect[j].getValue();
-                String name2 = rect[j].getKey();
-
-                if (rect1.intersect(rect2)) {
-                    if (name1.compareTo(name2) <= 0) {
-                        System.out.println(String.format(
-                            "(%s, %d, %d, %d, %d) | (%s, %d, %d, %d, %d)",
-                            name1, rect1.getxCoordinate(), rect1
-                                .getyCoordinate(), rect1.getWidth(), rect1
-                                    .getHeight(), name2, rect2.getxCoordinate(),
-                            rect2.getyCoordinate(), rect2.getWidth(), rect2
-                                .getHeight()));
-                    }
-                    else {
-                        System.out.println(String.format(
-                            "(%s, %d, %d, %d, %d) | (%s, %d, %d, %d, %d)",
-                            name2, rect2.getxCoordinate(), rect2
-                                .getyCoordinate(), rect2.getWidth(), rect2
-                                    .getHeight(), name1, rect1.getxCoordinate(),
-                            rect1.getyCoordinate(), rect1.getWidth(), rect1
-                                .getHeight()));
-                    }
+    /**
+     * Finds the intersections of one rectangle with the rectangles after it.
+     * 
+     * @param rect
+     *            all the rectangles in list order
+     * @param i
+     *            the position of the rectangle
+     * @return one line per intersecting pair, in list order
+     */
+    private List<String> intersectionsOf(
+        List<KVPair<String, Rectangle>> rect,
+        int i) {
+        List<String> lines = new ArrayList<>();
+        Rectangle rect1 = rect.get(i).getValue();
+        String name1 = rect.get(i).getKey();
+
+        for (int j = i + 1; j < rect.size(); j++) {
+            Rectangle rect2 = rect.get(j).getValue();
+            String name2 = rect.get(j).getKey();
+
+            if (rect1.intersect(rect2)) {
+                if (name1.compareTo(name2) <= 0) {
+                    lines.add(String.format(
+                        "(%s, %d, %d, %d, %d) | (%s, %d, %d, %d, %d)", name1,
+                        rect1.getxCoordinate(), rect1.getyCoordinate(), rect1
+                            .getWidth(), rect1.getHeight(), name2, rect2
+                                .getxCoordinate(), rect2.getyCoordinate(),
+                        rect2.getWidth(), rect2.getHeight()));
+                }
+                else {
+                    lines.add(String.format(
+                        "(%s, %d, %d, %d, %d) | (%s, %d, %d, %d, %d)", name2,
+                        rect2.getxCoordinate(), rect2.getyCoordinate(), rect2
+                            .getWidth(), rect2.getHeight(), name1, rect1
+                                .getxCoordinate(), rect1.getyCoordinate(),
+                        rect1.getWidth(), rect1.getHeight()));
                 }
             }
         }
+        return lines;
     }
 
 
@@ -244,7 +471,44 @@ public class Database {
      *            name of the Rectangle to be searched for
      */
     public void search(String name) {
-        ArrayList<KVPair<String, Rectangle>> results = list.search(name);
+        printResults(name, list.search(name));
+        /*
+         * printing in format
+         * Rectangles found:
+         * (r2, 15, 15, 5, 5)
+         * (r2, 15, 15, 5, 5)
+         */
+    }
+
+
+    /**
+     * Prints out all the rectangles for each of the given names, exactly as
+     * search would for every name in turn. All the names are looked up in
+     * one pass over the SkipList.
+     * 
+     * @param names
+     *            names of the Rectangles to be searched for
+     */
+    public void searchAll(List<String> names) {
+        ArrayList<ArrayList<KVPair<String, Rectangle>>> results = list
+            .searchAll(names);
+        for (int i = 0; i < names.size(); i++) {
+            printResults(names.get(i), results.get(i));
+        }
+    }
+
+
+    /**
+     * Prints the result of searching for one name.
+     * 
+     * @param name
+     *            the name that was searched for
+     * @param results
+     *            the rectangles found with that name
+     */
+    private void printResults(
+        String name,
+        ArrayList<KVPair<String, Rectangle>> results) {
         if (results.isEmpty()) {
             System.out.println("Rectangle not found: (" + name + ")");
         }
@@ -255,12 +519,21 @@ public class Database {
                     .toString());
             }
         }
-        /*
-         * printing in format
-         * Rectangles found:
-         * (r2, 15, 15, 5, 5)
-         * (r2, 15, 15, 5, 5)
-         */
+    }
+
+
+    /**
+     * Prints out structural statistics of the SkipList (level histogram,
+     * tower heights, search path length and a memory estimate) without
+     * printing its contents. Only SkipList keeps these statistics.
+     */
+    public void stats() {
+        if (list instanceof SkipList) {
+            System.out.println(((SkipList<String, Rectangle>)list).stats());
+        }
+        else {
+            System.out.println("SkipList stats not available");
+        }
     }
 
 
@@ -0,0 +1,183 @@
+import java.util.Random;
+import student.TestableRandom;
+
+/**
+ * This class decides the level of every new SkipList node. A node reaches
+ * level l + 1 with probability p once it has reached level l, so p trades
+ * memory (about 1 / (1 - p) links per node) against search depth (about
+ * log(n) / log(1 / p) levels), and levels are capped at a maximum.
+ *
+ * The default policy flips one coin per level with p = 1/2 and no cap, which
+ * is what SkipList always did and what the tests script through
+ * TestableRandom. All other policies draw a single random word per level:
+ * when p is a power of 1/2 the level comes from the number of trailing zero
+ * bits, and otherwise from the inverse of the geometric distribution.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class LevelPolicy {
+    // the probability of going up one more level
+    private final double p;
+    // the highest level that is handed out
+    private final int maxLevel;
+    // the source of random numbers
+    private final Random rng;
+    // true to flip one coin per level, like the original SkipList
+    private final boolean coinFlips;
+    // log2(1 / p) if p is a power of 1/2, or 0 if it is not
+    private final int bitsPerLevel;
+
+    /**
+     * Creates the default policy: p = 1/2, no cap and one TestableRandom coin
+     * flip per level.
+     */
+    public LevelPolicy() {
+        this(0.5, Integer.MAX_VALUE, new TestableRandom(), true);
+    }
+
+
+    /**
+     * Creates a policy with the given probability and maximum level.
+     *
+     * @param p
+     *            the probability of going up one more level
+     * @param maxLevel
+     *            the highest level that is handed out
+     * @param rng
+     *            the source of random numbers
+     * @param coinFlips
+     *            true to flip one coin per level instead of drawing one word
+     * @throws IllegalArgumentException
+     *             if p is not between 0 and 1 or maxLevel is below 1
+     */
+    private LevelPolicy(double p, int maxLevel, Random rng, boolean coinFlips) {
+        if (!(p > 0 && p < 1)) {
+            throw new IllegalArgumentException("p must be between 0 and 1: "
+                + p);
+        }
+        if (maxLevel < 1) {
+            throw new IllegalArgumentException("maxLevel must be at least 1: "
+                + maxLevel);
+        }
+        this.p = p;
+        this.maxLevel = maxLevel;
+        this.rng = rng;
+        this.coinFlips = coinFlips;
+        int bits = 0;
+        while (bits < 62 && Math.scalb(1.0, -bits) > p) {
+            bits++;
+        }
+        bitsPerLevel = (Math.scalb(1.0, -bits) == p) ? bits : 0;
+    }
+
+
+    /**
+     * Creates a policy drawing one random word per level.
+     *
+     * @param p
+     *            the probability of going up one more level, for example
+     *            0.25 or 1 / Math.E
+     * @param maxLevel
+     *            the highest level that is handed out
+     * @return the policy
+     */
+    public static LevelPolicy of(double p, int maxLevel) {
+        return new LevelPolicy(p, maxLevel, new Random(), false);
+    }
+
+
+    /**
+     * Creates a policy whose maximum level is derived from the number of
+     * entries expected, log(expectedSize) / log(1 / p) rounded up, beyond
+     * which extra levels no longer shorten searches.
+     *
+     * @param p
+     *            the probability of going up one more level
+     * @param expectedSize
+     *            the number of entries the list is expected to hold
+     * @return the policy
+     */
+    public static LevelPolicy forExpectedSize(double p, long expectedSize) {
+        return of(p, maxLevelFor(p, expectedSize));
+    }
+
+
+    /**
+     * Creates a policy that hands out the same sequence of levels every time
+     * it is created with the same arguments, for reproducible benchmarks.
+     *
+     * @param p
+     *            the probability of going up one more level
+     * @param maxLevel
+     *            the highest level that is handed out
+     * @param seed
+     *            the seed of the random numbers
+     * @return the policy
+     */
+    public static LevelPolicy seeded(double p, int maxLevel, long seed) {
+        return new LevelPolicy(p, maxLevel, new Random(seed), false);
+    }
+
+
+    /**
+     * Computes the level cap for a list of the expected size.
+     *
+     * @param p
+     *            the probability of going up one more level
+     * @param expectedSize
+     *            the number of entries the list is expected to hold
+     * @return the level cap, at least 1
+     */
+    public static int maxLevelFor(double p, long expectedSize) {
+        if (expectedSize <= 1) {
+            return 1;
+        }
+        return Math.max(1, (int)Math.ceil(Math.log(expectedSize) / Math.log(1
+            / p)));
+    }
+
+
+    /**
+     * returns a random level (using geometric distribution), minimum of 1 and
+     * at most the maximum level
+     *
+     * @return int the randomly generated level
+     */
+    public int randomLevel() {
+        int level;
+        if (coinFlips) {
+            level = 1;
+            while (level < maxLevel && rng.nextBoolean()) {
+                level++;
+            }
+            return level;
+        }
+        if (bitsPerLevel > 0) {
+            level = 1 + Long.numberOfTrailingZeros(rng.nextLong())
+                / bitsPerLevel;
+        }
+        else {
+            // 1 - nextDouble() is in (0, 1], so the logarithm is finite
+            level = 1 + (int)(Math.log(1 - rng.nextDouble()) / Math.log(p));
+        }
+        return Math.min(level, maxLevel);
+    }
+
+
+    /**
+     * @return the probability of going up one more level
+     */
+    public double getP() {
+        return p;
+    }
+
+
+    /**
+     * @return the highest level that is handed out
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+}
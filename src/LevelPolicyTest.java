@@ -0,0 +1,106 @@
+import student.TestCase;
+import student.TestableRandom;
+
+/**
+ * This class tests the methods of LevelPolicy class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class LevelPolicyTest extends TestCase {
+
+    /**
+     * Tests that the default policy flips one coin per level
+     */
+    public void testDefaultFlipsCoins() {
+        TestableRandom.setNextBooleans(true, true, true, false);
+        LevelPolicy policy = new LevelPolicy();
+        assertEquals(4, policy.randomLevel());
+        assertEquals(0.5, policy.getP(), 0.0);
+        assertEquals(Integer.MAX_VALUE, policy.getMaxLevel());
+    }
+
+
+    /**
+     * Tests that seeded policies repeat their levels and respect the cap
+     */
+    public void testSeededAndCapped() {
+        LevelPolicy first = LevelPolicy.seeded(0.5, 4, 99);
+        LevelPolicy second = LevelPolicy.seeded(0.5, 4, 99);
+        for (int i = 0; i < 1000; i++) {
+            int level = first.randomLevel();
+            assertEquals(level, second.randomLevel());
+            assertTrue(level >= 1 && level <= 4);
+        }
+    }
+
+
+    /**
+     * Tests that the levels follow the geometric distribution, both for a
+     * power of 1/2 (trailing zeros) and for 1/e (inverse distribution)
+     */
+    public void testDistribution() {
+        double[] probabilities = { 0.5, 0.25, 1 / Math.E };
+        for (double p : probabilities) {
+            LevelPolicy policy = LevelPolicy.seeded(p, 64, 7);
+            int samples = 100000;
+            int[] atLeast = new int[4];
+            for (int i = 0; i < samples; i++) {
+                int level = policy.randomLevel();
+                for (int l = 1; l < atLeast.length && l < level; l++) {
+                    atLeast[l]++;
+                }
+            }
+            for (int l = 1; l < atLeast.length; l++) {
+                double expected = Math.pow(p, l);
+                double actual = (double)atLeast[l] / samples;
+                assertEquals(expected, actual, 0.1 * expected);
+            }
+        }
+    }
+
+
+    /**
+     * Tests the maximum level derived from the expected size
+     */
+    public void testForExpectedSize() {
+        assertEquals(1, LevelPolicy.maxLevelFor(0.5, 0));
+        assertEquals(1, LevelPolicy.maxLevelFor(0.5, 2));
+        assertEquals(10, LevelPolicy.maxLevelFor(0.5, 1000));
+        assertEquals(10, LevelPolicy.maxLevelFor(0.25, 1 << 20));
+        LevelPolicy policy = LevelPolicy.forExpectedSize(0.25, 1000);
+        assertEquals(5, policy.getMaxLevel());
+        assertEquals(0.25, policy.getP(), 0.0);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(policy.randomLevel() <= 5);
+        }
+    }
+
+
+    /**
+     * Tests that invalid probabilities and caps are rejected
+     */
+    public void testInvalidArguments() {
+        double[] badP = { 0, 1, -0.5, Double.NaN };
+        for (double p : badP) {
+            Exception thrown = null;
+            try {
+                LevelPolicy.of(p, 10);
+            }
+            catch (IllegalArgumentException e) {
+                thrown = e;
+            }
+            assertNotNull(thrown);
+        }
+        Exception thrown = null;
+        try {
+            LevelPolicy.seeded(0.5, 0, 1);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+}
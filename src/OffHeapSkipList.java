@@ -0,0 +1,548 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import student.TestableRandom;
+
+/**
+ * This class implements a SkipList of named Rectangles whose nodes live
+ * outside the Java heap. Every node is one record in a direct (off-heap)
+ * buffer holding its level, the rectangle coordinates, its forward links and
+ * the characters of its name, so the heap only holds this thin object and the
+ * list of buffers no matter how many rectangles are stored. KVPairs and
+ * Rectangles are only created when results are handed out.
+ *
+ * The memory is handed out from chunks of a fixed size. A node is addressed by
+ * a long holding its chunk number in the high half and its offset in the low
+ * half, so the list is not limited to 2 GB. Records are rounded up to a power
+ * of two and freed records are reused through one free list per size.
+ *
+ * The direct buffers are given up when the list is closed; after that every
+ * operation throws an IllegalStateException.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class OffHeapSkipList
+    implements SkipListADT<String, Rectangle>, AutoCloseable {
+    // the highest level a node (and the head) can have
+    private static final int MAX_LEVEL = 31;
+    // the address marking the end of a level
+    private static final long NIL = -1L;
+    // the default number of bytes in a chunk
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    // byte offsets of the fields of a record
+    private static final int LEVEL = 0;
+    private static final int NAME_LENGTH = 4;
+    private static final int X = 8;
+    private static final int Y = 12;
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 20;
+    private static final int LINKS = 24;
+    // the smallest chunk size that holds the record of the head
+    public static final int MIN_CHUNK_SIZE = 1 << sizeClass(MAX_LEVEL, 0);
+
+    private ArrayList<ByteBuffer> chunks; // the off-heap memory
+    private final int chunkSize; // the number of bytes in a chunk
+    private int chunkUsed; // bytes handed out from the last chunk
+    private long[] freeRecords; // first free record for every size class
+    private final long head; // First element (Sentinel Node)
+    private int headLevel; // the highest level currently in use
+    private int size; // number of entries in the list
+    private long[] update; // reusable predecessor array
+    private Random rng;
+
+    /**
+     * Creates an empty list using chunks of the default size.
+     */
+    public OffHeapSkipList() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+
+    /**
+     * Creates an empty list using chunks of the given size.
+     *
+     * @param chunkSize
+     *            the number of bytes to reserve off-heap at a time
+     * @throws IllegalArgumentException
+     *             if chunkSize is below MIN_CHUNK_SIZE
+     */
+    public OffHeapSkipList(int chunkSize) {
+        if (chunkSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be at least "
+                + MIN_CHUNK_SIZE + " bytes: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        chunks = new ArrayList<>();
+        chunkUsed = chunkSize;
+        freeRecords = new long[32];
+        Arrays.fill(freeRecords, NIL);
+        update = new long[MAX_LEVEL + 1];
+        head = allocate(MAX_LEVEL, 0);
+        headLevel = 0;
+        size = 0;
+        rng = new TestableRandom();
+    }
+
+
+    /**
+     * returns a random level (using geometric distribution), minimum of 1 and
+     * at most MAX_LEVEL
+     *
+     * @return int the randomly generated level
+     */
+    public int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && rng.nextBoolean()) {
+            level++;
+        }
+        return level;
+    }
+
+
+    /**
+     * Returns the chunk holding an address.
+     *
+     * @param address
+     *            the address of a record
+     * @return the chunk
+     */
+    private ByteBuffer chunk(long address) {
+        return chunks.get((int)(address >>> 32));
+    }
+
+
+    /**
+     * Reads an int field of a record.
+     *
+     * @param address
+     *            the address of the record
+     * @param field
+     *            the byte offset of the field
+     * @return the value of the field
+     */
+    private int getInt(long address, int field) {
+        return chunk(address).getInt((int)address + field);
+    }
+
+
+    /**
+     * Returns the forward link of a record on a level.
+     *
+     * @param address
+     *            the address of the record
+     * @param level
+     *            the level
+     * @return the address of the next record on that level, or NIL
+     */
+    private long next(long address, int level) {
+        return chunk(address).getLong((int)address + LINKS + 8 * level);
+    }
+
+
+    /**
+     * Sets the forward link of a record on a level.
+     *
+     * @param address
+     *            the address of the record
+     * @param level
+     *            the level
+     * @param target
+     *            the address of the next record on that level, or NIL
+     */
+    private void setNext(long address, int level, long target) {
+        chunk(address).putLong((int)address + LINKS + 8 * level, target);
+    }
+
+
+    /**
+     * Returns the number of bytes a record needs, rounded up to its size
+     * class.
+     *
+     * @param level
+     *            the level of the record
+     * @param nameLength
+     *            the number of characters in the name
+     * @return the size class, a power of two
+     */
+    private static int sizeClass(int level, int nameLength) {
+        int bytes = LINKS + 8 * (level + 1) + 2 * nameLength;
+        return 32 - Integer.numberOfLeadingZeros(bytes - 1);
+    }
+
+
+    /**
+     * Hands out a record for a node, reusing a freed record of the same size
+     * class if there is one. The links of the new record are all NIL.
+     *
+     * @param level
+     *            the level of the node
+     * @param nameLength
+     *            the number of characters in the name
+     * @return the address of the record
+     */
+    private long allocate(int level, int nameLength) {
+        int sizeClass = sizeClass(level, nameLength);
+        long address = freeRecords[sizeClass];
+        if (address != NIL) {
+            freeRecords[sizeClass] = chunk(address).getLong((int)address);
+        }
+        else {
+            int bytes = 1 << sizeClass;
+            if (bytes > chunkSize) {
+                throw new IllegalArgumentException("Name too long for a "
+                    + "chunk of " + chunkSize + " bytes");
+            }
+            if (chunkUsed + bytes > chunkSize) {
+                chunks.add(ByteBuffer.allocateDirect(chunkSize));
+                chunkUsed = 0;
+            }
+            address = ((long)(chunks.size() - 1) << 32) | chunkUsed;
+            chunkUsed += bytes;
+        }
+        ByteBuffer buffer = chunk(address);
+        int offset = (int)address;
+        buffer.putInt(offset + LEVEL, level);
+        buffer.putInt(offset + NAME_LENGTH, nameLength);
+        for (int i = 0; i <= level; i++) {
+            buffer.putLong(offset + LINKS + 8 * i, NIL);
+        }
+        return address;
+    }
+
+
+    /**
+     * Puts a record on the free list of its size class. The first bytes of a
+     * free record hold the next free record.
+     *
+     * @param address
+     *            the address of the record
+     */
+    private void free(long address) {
+        int sizeClass = sizeClass(getInt(address, LEVEL), getInt(address,
+            NAME_LENGTH));
+        chunk(address).putLong((int)address, freeRecords[sizeClass]);
+        freeRecords[sizeClass] = address;
+    }
+
+
+    /**
+     * Compares the name stored in a record with a key, character by character
+     * like String.compareTo.
+     *
+     * @param address
+     *            the address of the record
+     * @param key
+     *            the key to compare with
+     * @return negative, zero or positive if the name is smaller than, equal
+     *         to or greater than the key
+     */
+    private int compareName(long address, String key) {
+        ByteBuffer buffer = chunk(address);
+        int offset = (int)address;
+        int length = buffer.getInt(offset + NAME_LENGTH);
+        int chars = offset + LINKS + 8 * (buffer.getInt(offset + LEVEL) + 1);
+        int common = Math.min(length, key.length());
+        for (int i = 0; i < common; i++) {
+            int diff = buffer.getChar(chars + 2 * i) - key.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length();
+    }
+
+
+    /**
+     * Builds the KVPair for a record on the heap.
+     *
+     * @param address
+     *            the address of the record
+     * @return the name and rectangle stored in the record
+     */
+    private KVPair<String, Rectangle> pairAt(long address) {
+        ByteBuffer buffer = chunk(address);
+        int offset = (int)address;
+        int length = buffer.getInt(offset + NAME_LENGTH);
+        int chars = offset + LINKS + 8 * (buffer.getInt(offset + LEVEL) + 1);
+        char[] name = new char[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = buffer.getChar(chars + 2 * i);
+        }
+        return new KVPair<String, Rectangle>(new String(name), new Rectangle(
+            buffer.getInt(offset + X), buffer.getInt(offset + Y), buffer
+                .getInt(offset + WIDTH), buffer.getInt(offset + HEIGHT)));
+    }
+
+
+    /**
+     * Checks if a record holds a rectangle with the given coordinates,
+     * without creating a Rectangle.
+     *
+     * @param address
+     *            the address of the record
+     * @param rect
+     *            the rectangle to compare with
+     * @return true if the coordinates and dimensions are the same
+     */
+    private boolean holds(long address, Rectangle rect) {
+        ByteBuffer buffer = chunk(address);
+        int offset = (int)address;
+        return buffer.getInt(offset + X) == rect.getxCoordinate() && buffer
+            .getInt(offset + Y) == rect.getyCoordinate() && buffer.getInt(
+                offset + WIDTH) == rect.getWidth() && buffer.getInt(offset
+                    + HEIGHT) == rect.getHeight();
+    }
+
+
+    /**
+     * Throws an IllegalStateException if the list has been closed.
+     */
+    private void ensureOpen() {
+        if (chunks == null) {
+            throw new IllegalStateException("The list has been closed");
+        }
+    }
+
+
+    /**
+     * Descends the levels and fills update with the last record whose name is
+     * smaller than the given key on every level.
+     *
+     * @param key
+     *            the key to look for
+     * @return the last record on level 0 whose name is smaller than the key
+     */
+    private long findUpdate(String key) {
+        long curr = head;
+        for (int level = headLevel; level >= 0; level--) {
+            long nxt = next(curr, level);
+            while (nxt != NIL && compareName(nxt, key) < 0) {
+                curr = nxt;
+                nxt = next(curr, level);
+            }
+            update[level] = curr;
+        }
+        return curr;
+    }
+
+
+    /**
+     * Searches for all rectangles with the given name.
+     *
+     * @param key
+     *            name to be searched for
+     * @return ArrayList of KVPairs that match the search key
+     */
+    @Override
+    public ArrayList<KVPair<String, Rectangle>> search(String key) {
+        ensureOpen();
+        ArrayList<KVPair<String, Rectangle>> output = new ArrayList<>();
+        long curr = next(findUpdate(key), 0);
+        while (curr != NIL && compareName(curr, key) == 0) {
+            output.add(pairAt(curr));
+            curr = next(curr, 0);
+        }
+        return output;
+    }
+
+
+    /**
+     * @return the size of the list
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Copies the name and rectangle into a new off-heap record and links it
+     * in at its appropriate spot.
+     *
+     * @param it
+     *            the KVPair to be inserted
+     */
+    @Override
+    public void insert(KVPair<String, Rectangle> it) {
+        ensureOpen();
+        String key = it.getKey();
+        Rectangle rect = it.getValue();
+        int randLevel = randomLevel();
+        if (randLevel > headLevel) {
+            headLevel = randLevel;
+        }
+        findUpdate(key);
+        long address = allocate(randLevel, key.length());
+        ByteBuffer buffer = chunk(address);
+        int offset = (int)address;
+        buffer.putInt(offset + X, rect.getxCoordinate());
+        buffer.putInt(offset + Y, rect.getyCoordinate());
+        buffer.putInt(offset + WIDTH, rect.getWidth());
+        buffer.putInt(offset + HEIGHT, rect.getHeight());
+        int chars = offset + LINKS + 8 * (randLevel + 1);
+        for (int i = 0; i < key.length(); i++) {
+            buffer.putChar(chars + 2 * i, key.charAt(i));
+        }
+        for (int level = 0; level <= randLevel; level++) {
+            setNext(address, level, next(update[level], level));
+            setNext(update[level], level, address);
+        }
+        size++;
+    }
+
+
+    /**
+     * Removes the first rectangle with the given name.
+     *
+     * @param key
+     *            name of the rectangle to be removed
+     * @return the removed pair if the name was present and null if not
+     */
+    @Override
+    public KVPair<String, Rectangle> remove(String key) {
+        ensureOpen();
+        if (key == null) {
+            return null;
+        }
+        long address = next(findUpdate(key), 0);
+        if (address == NIL || compareName(address, key) != 0) {
+            return null;
+        }
+        return unlink(address);
+    }
+
+
+    /**
+     * Removes the first rectangle in the list with the specified coordinates.
+     *
+     * @param val
+     *            the rectangle to be removed
+     * @return the removed pair if the rectangle was present and null if not
+     */
+    @Override
+    public KVPair<String, Rectangle> removeByValue(Rectangle val) {
+        ensureOpen();
+        if (val == null) {
+            return null;
+        }
+        long address = next(head, 0);
+        while (address != NIL && !holds(address, val)) {
+            address = next(address, 0);
+        }
+        if (address == NIL) {
+            return null;
+        }
+        // duplicates of the name may come before the record
+        long curr = findUpdate(pairAt(address).getKey());
+        while (next(curr, 0) != address) {
+            curr = next(curr, 0);
+            for (int level = 0; level <= getInt(curr, LEVEL); level++) {
+                update[level] = curr;
+            }
+        }
+        return unlink(address);
+    }
+
+
+    /**
+     * Unlinks a record from every level using the predecessors in update and
+     * frees it.
+     *
+     * @param address
+     *            the record to be removed
+     * @return the pair that was stored in the record
+     */
+    private KVPair<String, Rectangle> unlink(long address) {
+        KVPair<String, Rectangle> removed = pairAt(address);
+        for (int level = 0; level <= getInt(address, LEVEL); level++) {
+            if (next(update[level], level) == address) {
+                setNext(update[level], level, next(address, level));
+            }
+        }
+        while (headLevel > 0 && next(head, headLevel) == NIL) {
+            headLevel--;
+        }
+        free(address);
+        size--;
+        return removed;
+    }
+
+
+    /**
+     * Prints out the list in a human readable format to the console.
+     */
+    @Override
+    public void dump() {
+        ensureOpen();
+        System.out.println("SkipList dump:");
+        System.out.println("Node with depth " + Math.max(1, headLevel)
+            + ", value null");
+        long curr = next(head, 0);
+        while (curr != NIL) {
+            KVPair<String, Rectangle> pair = pairAt(curr);
+            System.out.println("node with depth " + getInt(curr, LEVEL)
+                + " value " + pair.getKey() + " " + pair.getValue());
+            curr = next(curr, 0);
+        }
+        System.out.println("SkipList size is: " + size);
+    }
+
+
+    /**
+     * @return the number of bytes reserved off-heap
+     */
+    public long reservedBytes() {
+        return chunks == null ? 0 : (long)chunks.size() * chunkSize;
+    }
+
+
+    /**
+     * Gives up all off-heap memory of the list. The direct buffers are
+     * returned to the operating system once they are no longer reachable.
+     */
+    @Override
+    public void close() {
+        chunks = null;
+        size = 0;
+    }
+
+
+    private class OffHeapSkipListIterator
+        implements Iterator<KVPair<String, Rectangle>> {
+        private long current;
+
+        public OffHeapSkipListIterator() {
+            ensureOpen();
+            current = head;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            ensureOpen();
+            return OffHeapSkipList.this.next(current, 0) != NIL;
+        }
+
+
+        @Override
+        public KVPair<String, Rectangle> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = OffHeapSkipList.this.next(current, 0);
+            return pairAt(current);
+        }
+    }
+
+    @Override
+    public Iterator<KVPair<String, Rectangle>> iterator() {
+        return new OffHeapSkipListIterator();
+    }
+
+}
@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class tests the methods of OffHeapSkipList class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class OffHeapSkipListTest extends SkipListADTTestCase {
+    /**
+     * The skip list instance used for testing.
+     */
+    private OffHeapSkipList sl;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        sl = new OffHeapSkipList(4096);
+    }
+
+
+    @Override
+    protected SkipListADT<String, Rectangle> createList() {
+        return new OffHeapSkipList(4096);
+    }
+
+
+    /**
+     * Spreads the names wide so that the records fill many chunks.
+     *
+     * @param random
+     *            the source of the random operations
+     * @return the name
+     */
+    @Override
+    protected String randomKey(Random random) {
+        return "name" + random.nextInt(300);
+    }
+
+
+    /**
+     * @return false, since pairs are rebuilt from the records
+     */
+    @Override
+    protected boolean keepsPairs() {
+        return false;
+    }
+
+
+    /**
+     * Tests that a long random mix of operations spread over many chunks
+     * gives the same results and contents as SkipList
+     */
+    @Override
+    public void testMatchesSkipList() {
+        assertMatchesSkipList(sl, new Random(5), 3000);
+        assertTrue(sl.reservedBytes() > 4096);
+    }
+
+
+    /**
+     * Tests insert and search, including duplicates which are returned newest
+     * first
+     */
+    public void testInsertAndSearch() {
+        sl.insert(new KVPair<>("rect", new Rectangle(0, 0, 5, 5)));
+        sl.insert(new KVPair<>("a", new Rectangle(10, 10, 5, 5)));
+        sl.insert(new KVPair<>("rect", new Rectangle(20, 20, 5, 5)));
+        assertEquals(3, sl.size());
+
+        ArrayList<KVPair<String, Rectangle>> results = sl.search("rect");
+        assertEquals(2, results.size());
+        assertEquals("rect", results.get(0).getKey());
+        assertEquals(new Rectangle(20, 20, 5, 5), results.get(0).getValue());
+        assertEquals(new Rectangle(0, 0, 5, 5), results.get(1).getValue());
+        assertTrue(sl.search("rec").isEmpty());
+        assertTrue(sl.search("rects").isEmpty());
+    }
+
+
+    /**
+     * Tests removing by name and by coordinates
+     */
+    public void testRemove() {
+        sl.insert(new KVPair<>("A", new Rectangle(0, 0, 5, 5)));
+        sl.insert(new KVPair<>("B", new Rectangle(10, 10, 5, 5)));
+
+        assertNull(sl.remove(null));
+        assertNull(sl.remove("C"));
+        assertEquals("A", sl.remove("A").getKey());
+        assertNull(sl.removeByValue(null));
+        assertNull(sl.removeByValue(new Rectangle(0, 0, 5, 5)));
+        assertEquals("B", sl.removeByValue(new Rectangle(10, 10, 5, 5))
+            .getKey());
+        assertEquals(0, sl.size());
+        assertFalse(sl.iterator().hasNext());
+    }
+
+
+    /**
+     * Tests that a chunk size too small for the head record is rejected by
+     * name, and that the smallest allowed size works
+     */
+    public void testChunkSizeTooSmall() {
+        Exception thrown = null;
+        try {
+            new OffHeapSkipList(OffHeapSkipList.MIN_CHUNK_SIZE - 1);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertTrue(thrown.getMessage().contains("chunkSize"));
+
+        OffHeapSkipList small = new OffHeapSkipList(
+            OffHeapSkipList.MIN_CHUNK_SIZE);
+        small.insert(new KVPair<>("a", new Rectangle(1, 1, 1, 1)));
+        assertEquals(1, small.search("a").size());
+        small.close();
+    }
+
+
+    /**
+     * Tests that a closed list can no longer be used
+     */
+    public void testClose() {
+        sl.insert(new KVPair<>("A", new Rectangle(1, 2, 3, 4)));
+        sl.close();
+        assertEquals(0, sl.size());
+        assertEquals(0, sl.reservedBytes());
+        Exception thrown = null;
+        try {
+            sl.search("A");
+        }
+        catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+}
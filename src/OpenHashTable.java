@@ -0,0 +1,187 @@
+/**
+ * This class implements a hash table with open addressing and linear probing.
+ * Keys and values live in two flat arrays whose length is a power of two, so
+ * a lookup hashes the key once and then compares keys in consecutive slots,
+ * without the entry objects and chains of java.util.HashMap. The table is
+ * kept at most half full, which keeps the probe sequences short, and a remove
+ * shifts the following entries of the run back instead of leaving tombstones,
+ * so lookups never slow down as keys come and go.
+ *
+ * Null keys and null values are not allowed; get returns null for a missing
+ * key.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <K>
+ *            Key
+ * @param <V>
+ *            Value
+ */
+public class OpenHashTable<K, V> {
+    // the number of slots of a new table
+    private static final int INITIAL_CAPACITY = 16;
+
+    // the keys, or null for an empty slot
+    private Object[] keys;
+    // the value of the key in the same slot
+    private Object[] values;
+    // the number of keys in the table
+    private int size;
+
+    /**
+     * Creates an empty table.
+     */
+    public OpenHashTable() {
+        keys = new Object[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+    }
+
+
+    /**
+     * Finds the slot a key hashes to. The hash code is multiplied by the
+     * golden ratio so that keys with similar hash codes spread over the
+     * table.
+     *
+     * @param key
+     *            the key
+     * @param mask
+     *            the number of slots minus one
+     * @return the home slot of the key
+     */
+    private static int home(Object key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+
+    /**
+     * Finds the slot holding a key, or the empty slot that ends its probe
+     * sequence.
+     *
+     * @param key
+     *            the key to look for
+     * @return the slot of the key, or the empty slot where it would go
+     */
+    private int slotOf(Object key) {
+        int mask = keys.length - 1;
+        int slot = home(key, mask);
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+
+    /**
+     * Looks up the value of a key.
+     *
+     * @param key
+     *            the key to look for
+     * @return its value, or null if the key is not in the table
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        return (V)values[slotOf(key)];
+    }
+
+
+    /**
+     * Maps a key to a value, replacing any value it had.
+     *
+     * @param key
+     *            the key, not null
+     * @param value
+     *            the value, not null
+     * @return the previous value of the key, or null if it was not in the
+     *         table
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int slot = slotOf(key);
+        V previous = (V)values[slot];
+        if (keys[slot] == null) {
+            if (2 * (size + 1) > keys.length) {
+                resize(keys.length * 2);
+                slot = slotOf(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        return previous;
+    }
+
+
+    /**
+     * Removes a key. The entries after it in the same run are moved back
+     * into the gap when their home slot allows it, so that every key stays
+     * reachable from its home slot without passing an empty slot.
+     *
+     * @param key
+     *            the key to remove
+     * @return its value, or null if the key was not in the table
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int slot = slotOf(key);
+        if (keys[slot] == null) {
+            return null;
+        }
+        V previous = (V)values[slot];
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != null) {
+            int want = home(keys[next], mask);
+            // move the entry unless its home lies in (gap, next], cyclically
+            if (((next - want) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = null;
+        values[gap] = null;
+        size--;
+        return previous;
+    }
+
+
+    /**
+     * Moves every entry into new arrays of the given length.
+     *
+     * @param capacity
+     *            the new number of slots, a power of two
+     */
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of keys in the table
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @return the number of slots, at least twice the size
+     */
+    public int capacity() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class tests the methods of OpenHashTable class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class OpenHashTableTest extends TestCase {
+    /**
+     * The table instance used for testing.
+     */
+    private OpenHashTable<String, Integer> table;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        table = new OpenHashTable<String, Integer>();
+    }
+
+
+    /**
+     * Tests put, get and remove of a few keys
+     */
+    public void testPutGetRemove() {
+        assertNull(table.get("a"));
+        assertNull(table.put("a", 1));
+        assertNull(table.put("b", 2));
+        assertEquals(1, (int)table.put("a", 3));
+        assertEquals(3, (int)table.get("a"));
+        assertEquals(2, table.size());
+        assertEquals(2, (int)table.remove("b"));
+        assertNull(table.remove("b"));
+        assertNull(table.get("b"));
+        assertEquals(1, table.size());
+    }
+
+
+    /**
+     * Tests that the table grows and stays at most half full
+     */
+    public void testGrows() {
+        assertEquals(16, table.capacity());
+        for (int i = 0; i < 1000; i++) {
+            table.put("k" + i, i);
+            assertTrue(2 * table.size() <= table.capacity());
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int)table.get("k" + i));
+        }
+    }
+
+
+    /**
+     * Tests removes inside long probe runs, using keys that all have the
+     * same hash code, against HashMap
+     */
+    public void testCollidingKeys() {
+        // every string made of "Aa" and "BB" blocks has the same hash code
+        ArrayList<String> keys = new ArrayList<>();
+        for (int mask = 0; mask < 64; mask++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 6; bit++) {
+                key.append(((mask >> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            keys.add(key.toString());
+        }
+        for (int i = 0; i < 40; i++) {
+            keys.add("k" + i);
+        }
+        HashMap<String, Integer> expected = new HashMap<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 5000; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(String.valueOf(expected.remove(key)), String
+                    .valueOf(table.remove(key)));
+            }
+            else {
+                assertEquals(String.valueOf(expected.put(key, i)), String
+                    .valueOf(table.put(key, i)));
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        for (String key : keys) {
+            assertEquals(String.valueOf(expected.get(key)), String.valueOf(
+                table.get(key)));
+        }
+    }
+
+}
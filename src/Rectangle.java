@@ -111,6 +111,21 @@ public class Rectangle {
     }
 
 
+    /**
+     * Returns a hash code built from the coordinates and dimensions, so that
+     * rectangles that are equal have the same hash code and can be used as
+     * keys in hash tables.
+     * 
+     * @return the hash code of the rectangle
+     */
+    public int hashCode() {
+        int hash = xCoordinate;
+        hash = 31 * hash + yCoordinate;
+        hash = 31 * hash + width;
+        return 31 * hash + height;
+    }
+
+
     /**
      * Outputs a human readable string with information about the rectangle
      * which includes the x and y coordinate and its height and width
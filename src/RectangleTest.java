@@ -97,6 +97,20 @@ public class RectangleTest extends TestCase {
     }
 
 
+    /**
+     * test case for hashCode being consistent with equals
+     */
+    public void testHashCode() {
+        Rectangle baseRect = new Rectangle(100, 100, 50, 50);
+        assertEquals(baseRect.hashCode(), new Rectangle(100, 100, 50, 50)
+            .hashCode());
+        assertFalse(baseRect.hashCode() == new Rectangle(100, 100, 50, 51)
+            .hashCode());
+        assertFalse(baseRect.hashCode() == new Rectangle(100, 101, 50, 50)
+            .hashCode());
+    }
+
+
     /**
      * test case for to string
      */
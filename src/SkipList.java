@@ -1,8 +1,18 @@
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.NoSuchElementException;
 import java.util.Random;
-import student.TestableRandom;
+import java.util.Spliterator;
+import java.util.TreeMap;
 
 /**
  * This class implements SkipList data structure and contains an inner SkipNode
@@ -17,18 +27,78 @@ import student.TestableRandom;
  *            Value
  */
 public class SkipList<K extends Comparable<? super K>, V>
-    implements Iterable<KVPair<K, V>> {
+    implements SkipListADT<K, V> {
     private SkipNode head; // First element (Sentinel Node)
+    private SkipNode tail; // Last element, or null if the list is empty
     private int size; // number of entries in the Skip List
-    private Random rng;
+    private LevelPolicy levels; // decides the level of new nodes
+    // predecessors reused by every insert and remove, grown with head
+    private SkipNode[] update;
+    // positions of the predecessors in update
+    private int[] updateRank;
+    // the first node holding each value, see SkipNode.sameValue for the
+    // rest, or null while the value index is disabled
+    private HashMap<V, SkipNode> valueIndex;
+    // the first node of each key, or null while the key index is disabled
+    private OpenHashTable<K, SkipNode> keyIndex;
+    // true after a split or concat, until refreshIndexes rebuilds the value
+    // index, the key index and the tower counts
+    private boolean indexesStale;
+    // the version of the list, increased by every change of level 0
+    private long version;
+    // the version of the oldest open snapshot, or NO_SNAPSHOT
+    private volatile long oldestSnapshot;
+    // the oldestSnapshot that the histories were last trimmed for
+    private long prunedFor;
+    // the number of open snapshots of each version
+    private final TreeMap<Long, Integer> openSnapshots;
+    // the nodes with more than one level 0 link in their history
+    private ArrayList<SkipNode> versioned;
+
+    // towerCounts[l] is the number of nodes of level l, kept for stats
+    private int[] towerCounts;
+    // the counters of the hot paths, or null while metrics are disabled
+    private SkipListMetrics metrics;
+    // true while searches count hits and promote hot nodes
+    private boolean adaptive;
+    // the number of search hits since the hit counts were last halved
+    private int hitsSinceDecay;
+
+    // the value of oldestSnapshot while no snapshot is open
+    private static final long NO_SNAPSHOT = Long.MAX_VALUE;
+    // the number of searches sampled by stats for the search path length
+    private static final int STATS_PROBES = 1000;
+    // the hits that lift a node from level 1 to 2; every level doubles it
+    private static final int PROMOTE_HITS = 4;
+    // the fewest search hits between two halvings of the hit counts
+    private static final int DECAY_HITS = 1024;
 
     /**
      * Initializes the fields head, size and level
      */
     public SkipList() {
+        this(new LevelPolicy());
+    }
+
+
+    /**
+     * Initializes an empty list whose node levels come from the given policy.
+     *
+     * @param levels
+     *            decides the level of every new node
+     */
+    @SuppressWarnings("unchecked")
+    public SkipList(LevelPolicy levels) {
         head = new SkipNode(null, 0);
         size = 0;
-        this.rng = new TestableRandom();
+        this.levels = levels;
+        oldestSnapshot = NO_SNAPSHOT;
+        prunedFor = NO_SNAPSHOT;
+        openSnapshots = new TreeMap<>();
+        versioned = new ArrayList<>();
+        towerCounts = new int[2];
+        update = (SkipNode[])Array.newInstance(SkipNode.class, 1);
+        updateRank = new int[1];
     }
 
 
@@ -38,10 +108,7 @@ public class SkipList<K extends Comparable<? super K>, V>
      * @return int the randomly generated level
      */
     public int randomLevel() {
-        int level = 1;
-        while (rng.nextBoolean())
-            level++;
-        return level;
+        return levels.randomLevel();
     }
 
 
@@ -53,14 +120,53 @@ public class SkipList<K extends Comparable<? super K>, V>
      * @return ArrayList of KVPairs that match the search key
      */
     public ArrayList<KVPair<K, V>> search(K key) {
+        SkipListMetrics counters = metrics;
+        if (counters == null) {
+            return searchKey(key);
+        }
+        long start = System.nanoTime();
+        ArrayList<KVPair<K, V>> output = searchKey(key);
+        counters.recordCall(SkipListMetrics.Operation.SEARCH, System
+            .nanoTime() - start);
+        return output;
+    }
+
+
+    /**
+     * Collects the KVPairs with the given key. The comparisons and steps are
+     * counted as they are made and recorded if metrics are enabled.
+     * 
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key
+     */
+    private ArrayList<KVPair<K, V>> searchKey(K key) {
+        if (keyIndex != null) {
+            refreshIndexes();
+            return searchIndexed(key);
+        }
+        if (adaptive) {
+            return searchAdaptive(key);
+        }
+        SkipListMetrics counters = metrics;
+        int compared = 0;
         ArrayList<KVPair<K, V>> output = new ArrayList<>();
         SkipNode curr = head;
 
         // Level traversal to find first matching element
         for (int level = curr.level; level >= 0; level--) {
-            while (curr.forward[level] != null && curr.forward[level].element()
-                .getKey().compareTo(key) < 0) {
+            int steps = 0;
+            while (curr.forward[level] != null) {
+                compared++;
+                if (curr.forward[level].element().getKey().compareTo(
+                    key) >= 0) {
+                    break;
+                }
                 curr = curr.forward[level];
+                steps++;
+            }
+            if (counters != null && steps > 0) {
+                counters.recordSteps(level, steps);
             }
         }
 
@@ -68,15 +174,484 @@ public class SkipList<K extends Comparable<? super K>, V>
         curr = curr.forward[0];
 
         // Collect only exactly matching elements
-        while (curr != null && curr.element().getKey().compareTo(key) == 0) {
+        while (curr != null) {
+            compared++;
+            if (curr.element().getKey().compareTo(key) != 0) {
+                break;
+            }
             output.add(curr.element());
             curr = curr.forward[0];
         }
 
+        if (counters != null) {
+            counters.recordPath(compared, head.level + 1);
+        }
+        return output;
+    }
+
+
+    /**
+     * Collects the KVPairs with the given key through the key index, which
+     * leads straight to the first of them, without descending the levels.
+     * 
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key
+     */
+    private ArrayList<KVPair<K, V>> searchIndexed(K key) {
+        ArrayList<KVPair<K, V>> output = new ArrayList<>();
+        SkipNode first = keyIndex.get(key);
+        if (first == null) {
+            return output;
+        }
+        int compared = 0;
+        for (SkipNode node = first; node != null; node = node.forward[0]) {
+            compared++;
+            if (node.element().getKey().compareTo(key) != 0) {
+                break;
+            }
+            output.add(node.element());
+        }
+        SkipListMetrics counters = metrics;
+        if (counters != null) {
+            counters.recordPath(compared, 0);
+        }
+        if (adaptive) {
+            hit(first);
+        }
+        return output;
+    }
+
+
+    /**
+     * Collects the KVPairs with the given key in adaptive mode. The descent
+     * stops at the first node with the key it meets, on whatever level, so a
+     * promoted key is found high up; the backward pointers then lead to the
+     * first of its duplicates, which is the node that is counted.
+     * 
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key
+     */
+    private ArrayList<KVPair<K, V>> searchAdaptive(K key) {
+        SkipListMetrics counters = metrics;
+        int compared = 0;
+        int descended = 0;
+        ArrayList<KVPair<K, V>> output = new ArrayList<>();
+        SkipNode curr = head;
+        SkipNode found = null;
+        for (int level = head.level; level >= 0 && found == null; level--) {
+            int steps = 0;
+            descended++;
+            while (curr.forward[level] != null) {
+                compared++;
+                int cmp = curr.forward[level].element().getKey().compareTo(
+                    key);
+                if (cmp == 0) {
+                    found = curr.forward[level];
+                }
+                if (cmp >= 0) {
+                    break;
+                }
+                curr = curr.forward[level];
+                steps++;
+            }
+            if (counters != null && steps > 0) {
+                counters.recordSteps(level, steps);
+            }
+        }
+        if (found != null) {
+            while (found.backward != null) {
+                compared++;
+                if (found.backward.element().getKey().compareTo(key) != 0) {
+                    break;
+                }
+                found = found.backward;
+            }
+            for (SkipNode node = found; node != null; node = node.forward[0]) {
+                compared++;
+                if (node.element().getKey().compareTo(key) != 0) {
+                    break;
+                }
+                output.add(node.element());
+            }
+        }
+        if (counters != null) {
+            counters.recordPath(compared, descended);
+        }
+        if (found != null) {
+            hit(found);
+        }
+        return output;
+    }
+
+
+    /**
+     * Searches for many keys at once. The keys are sorted and answered in one
+     * monotone traversal: the predecessors found for one key are where the
+     * search for the next key resumes, so the list is never searched from
+     * head again.
+     * 
+     * @param keys
+     *            the keys to be searched for
+     * @return one ArrayList of matching KVPairs per key, in the order of keys
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ArrayList<ArrayList<KVPair<K, V>>> searchAll(List<K> keys) {
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+
+        ArrayList<ArrayList<KVPair<K, V>>> output = new ArrayList<>();
+        for (int i = 0; i < order.length; i++) {
+            output.add(null);
+        }
+        SkipNode[] finger = (SkipNode[])Array.newInstance(SkipNode.class,
+            head.level + 1);
+        int[] rank = new int[head.level + 1];
+        for (int i = 0; i <= head.level; i++) {
+            finger[i] = head;
+        }
+        ArrayList<KVPair<K, V>> previous = null;
+        K previousKey = null;
+        for (int index : order) {
+            K key = keys.get(index);
+            if (previousKey != null && previousKey.compareTo(key) == 0) {
+                output.set(index, new ArrayList<>(previous));
+                continue;
+            }
+            SkipNode curr = finger[head.level];
+            int position = rank[head.level];
+            for (int level = head.level; level >= 0; level--) {
+                if (rank[level] > position) {
+                    curr = finger[level];
+                    position = rank[level];
+                }
+                while (curr.forward[level] != null && curr.forward[level]
+                    .element().getKey().compareTo(key) < 0) {
+                    position += curr.span[level];
+                    curr = curr.forward[level];
+                }
+                finger[level] = curr;
+                rank[level] = position;
+            }
+            ArrayList<KVPair<K, V>> matches = new ArrayList<>();
+            curr = curr.forward[0];
+            while (curr != null && curr.element().getKey().compareTo(
+                key) == 0) {
+                matches.add(curr.element());
+                curr = curr.forward[0];
+            }
+            output.set(index, matches);
+            previous = matches;
+            previousKey = key;
+        }
         return output;
     }
 
 
+    /**
+     * Passes every KVPair with the given key to a sink instead of collecting
+     * them, so a search allocates nothing.
+     * 
+     * @param key
+     *            key to be searched for
+     * @param sink
+     *            receives the matching KVPairs in list order
+     * @return the number of matching KVPairs
+     */
+    public int search(K key, Consumer<KVPair<K, V>> sink) {
+        SkipNode curr = lowerNode(key, false).forward[0];
+        if (adaptive && curr != null && curr.element().getKey().compareTo(
+            key) == 0) {
+            hit(curr);
+        }
+        int count = 0;
+        while (curr != null && curr.element().getKey().compareTo(key) == 0) {
+            sink.accept(curr.element());
+            count++;
+            curr = curr.forward[0];
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns a lazy cursor over the KVPairs whose keys lie between fromKey
+     * and toKey. The levels are descended once to find the start and the
+     * pairs are then streamed from level 0 without copying them into a list.
+     *
+     * @param fromKey
+     *            the lower bound, or null for no lower bound
+     * @param fromInclusive
+     *            true if pairs with key fromKey are included
+     * @param toKey
+     *            the upper bound, or null for no upper bound
+     * @param toInclusive
+     *            true if pairs with key toKey are included
+     * @return a cursor positioned before the first pair in the range
+     */
+    public Cursor range(
+        K fromKey,
+        boolean fromInclusive,
+        K toKey,
+        boolean toInclusive) {
+        Cursor cursor = new Cursor(toKey, toInclusive);
+        if (fromKey != null) {
+            cursor.current = lowerNode(fromKey, !fromInclusive);
+        }
+        return cursor;
+    }
+
+
+    /**
+     * Returns a lazy cursor over the KVPairs with fromKey <= key < toKey.
+     *
+     * @param fromKey
+     *            the inclusive lower bound, or null for no lower bound
+     * @param toKey
+     *            the exclusive upper bound, or null for no upper bound
+     * @return a cursor positioned before the first pair in the range
+     */
+    public Cursor range(K fromKey, K toKey) {
+        return range(fromKey, true, toKey, false);
+    }
+
+
+    /**
+     * Returns an unbounded cursor positioned before the first KVPair whose key
+     * is greater than or equal to the given key.
+     *
+     * @param key
+     *            the key to start from
+     * @return the cursor
+     */
+    public Cursor seek(K key) {
+        return range(key, true, null, false);
+    }
+
+
+    /**
+     * Returns the first KVPair with the greatest key less than or equal to
+     * the given key.
+     *
+     * @param key
+     *            the key to compare against
+     * @return the pair, or null if every key is greater
+     */
+    public KVPair<K, V> floor(K key) {
+        return firstOfKey(lowerNode(key, true));
+    }
+
+
+    /**
+     * Returns the first KVPair with the least key greater than or equal to
+     * the given key.
+     *
+     * @param key
+     *            the key to compare against
+     * @return the pair, or null if every key is smaller
+     */
+    public KVPair<K, V> ceiling(K key) {
+        return elementOf(lowerNode(key, false).forward[0]);
+    }
+
+
+    /**
+     * Returns the first KVPair with the greatest key strictly less than the
+     * given key.
+     *
+     * @param key
+     *            the key to compare against
+     * @return the pair, or null if no key is smaller
+     */
+    public KVPair<K, V> lower(K key) {
+        return firstOfKey(lowerNode(key, false));
+    }
+
+
+    /**
+     * Returns the first KVPair with the least key strictly greater than the
+     * given key.
+     *
+     * @param key
+     *            the key to compare against
+     * @return the pair, or null if no key is greater
+     */
+    public KVPair<K, V> higher(K key) {
+        return elementOf(lowerNode(key, true).forward[0]);
+    }
+
+
+    /**
+     * @return the first KVPair of the list, or null if it is empty
+     */
+    public KVPair<K, V> firstEntry() {
+        return elementOf(head.forward[0]);
+    }
+
+
+    /**
+     * Returns the first KVPair with the greatest key. The tail gives the key
+     * directly, and one descent leads to the first of its duplicates.
+     *
+     * @return the pair, or null if the list is empty
+     */
+    public KVPair<K, V> lastEntry() {
+        return firstOfKey(tail);
+    }
+
+
+    /**
+     * Removes and returns the first KVPair of the list.
+     *
+     * @return the removed pair, or null if the list is empty
+     */
+    public KVPair<K, V> pollFirstEntry() {
+        SkipNode node = head.forward[0];
+        if (node == null) {
+            return null;
+        }
+        SkipNode[] updateNodes = updateBuffer();
+        for (int level = 0; level <= head.level; level++) {
+            updateNodes[level] = head;
+        }
+        unlink(node, updateNodes);
+        return node.element();
+    }
+
+
+    /**
+     * Removes and returns the first KVPair with the greatest key, which is
+     * the pair lastEntry returns.
+     *
+     * @return the removed pair, or null if the list is empty
+     */
+    public KVPair<K, V> pollLastEntry() {
+        if (tail == null) {
+            return null;
+        }
+        SkipNode node = firstNodeOf(tail);
+        unlink(node, findUpdate(node, null));
+        return node.element();
+    }
+
+
+    /**
+     * Returns the pair of the first node with the same key as the given node.
+     *
+     * @param node
+     *            the node to start from, which may be head or null
+     * @return the pair, or null if node is head or null
+     */
+    private KVPair<K, V> firstOfKey(SkipNode node) {
+        if (node == null || node == head) {
+            return null;
+        }
+        return firstNodeOf(node).element();
+    }
+
+
+    /**
+     * Finds the first node with the same key as the given node. Like
+     * promote, this descends the levels to the last node before the key, so
+     * it takes O(log n) expected time however many duplicates the key has,
+     * instead of stepping back over them one by one.
+     *
+     * @param node
+     *            a node of the list
+     * @return the first node with its key
+     */
+    private SkipNode firstNodeOf(SkipNode node) {
+        return lowerNode(node.element().getKey(), false).forward[0];
+    }
+
+
+    /**
+     * @param node
+     *            a node of the list, or null
+     * @return the pair of the node, or null if node is null
+     */
+    private KVPair<K, V> elementOf(SkipNode node) {
+        return (node == null) ? null : node.element();
+    }
+
+
+    /**
+     * Descends the levels to find the last node whose key is smaller than the
+     * given key, or smaller than or equal to it if orEqual is set.
+     *
+     * @param key
+     *            the key to look for
+     * @param orEqual
+     *            true to also step over nodes with an equal key
+     * @return the node found, or head if there is none
+     */
+    private SkipNode lowerNode(K key, boolean orEqual) {
+        return lowerNode(key, orEqual, null);
+    }
+
+
+    /**
+     * Descends the levels like lowerNode(key, orEqual), counting the
+     * comparisons and steps in the given metrics.
+     *
+     * @param key
+     *            the key to look for
+     * @param orEqual
+     *            true to also step over nodes with an equal key
+     * @param counters
+     *            the metrics to count the descent in, or null
+     * @return the node found, or head if there is none
+     */
+    private SkipNode lowerNode(
+        K key,
+        boolean orEqual,
+        SkipListMetrics counters) {
+        int compared = 0;
+        SkipNode curr = head;
+        for (int level = head.level; level >= 0; level--) {
+            int steps = 0;
+            while (curr.forward[level] != null) {
+                compared++;
+                if (!isBefore(curr.forward[level].element().getKey(), key,
+                    orEqual)) {
+                    break;
+                }
+                curr = curr.forward[level];
+                steps++;
+            }
+            if (counters != null && steps > 0) {
+                counters.recordSteps(level, steps);
+            }
+        }
+        if (counters != null) {
+            counters.recordPath(compared, head.level + 1);
+        }
+        return curr;
+    }
+
+
+    /**
+     * Checks if a key comes before a bound.
+     *
+     * @param key
+     *            the key to check
+     * @param bound
+     *            the bound to compare against
+     * @param orEqual
+     *            true if an equal key counts as coming before the bound
+     * @return true if key < bound, or key <= bound when orEqual is set
+     */
+    private boolean isBefore(K key, K bound, boolean orEqual) {
+        int cmp = key.compareTo(bound);
+        return cmp < 0 || (orEqual && cmp == 0);
+    }
+
+
     /**
      * @return the size of the SkipList
      */
@@ -92,166 +667,1700 @@ public class SkipList<K extends Comparable<? super K>, V>
      * @param it
      *            the KVPair to be inserted
      */
-    @SuppressWarnings("unchecked")
     public void insert(KVPair<K, V> it) {
+        SkipListMetrics counters = metrics;
+        if (counters == null) {
+            insertPair(it);
+            return;
+        }
+        long start = System.nanoTime();
+        insertPair(it);
+        counters.recordCall(SkipListMetrics.Operation.INSERT, System
+            .nanoTime() - start);
+    }
+
+
+    /**
+     * Inserts the KVPair, counting the descent if metrics are enabled.
+     * 
+     * @param it
+     *            the KVPair to be inserted
+     */
+    private void insertPair(KVPair<K, V> it) {
         K key = it.getKey();
         int randLevel = randomLevel();
         if (head.level < randLevel) {
             adjustHead(randLevel);
         }
+        SkipListMetrics counters = metrics;
+        int compared = 0;
         SkipNode node = head;
-        SkipNode[] recordNode = (SkipNode[])Array.newInstance(SkipNode.class,
-            head.level + 1);
+        SkipNode[] recordNode = updateBuffer();
+        // rank[i] is the position of recordNode[i], head being position 0
+        int[] rank = updateRank;
         for (int i = head.level; i >= 0; i--) {
-            while (node.forward[i] != null && node.forward[i].element().getKey()
-                .compareTo(key) < 0) {
+            rank[i] = (i == head.level) ? 0 : rank[i + 1];
+            int steps = 0;
+            while (node.forward[i] != null) {
+                compared++;
+                if (node.forward[i].element().getKey().compareTo(key) >= 0) {
+                    break;
+                }
+                rank[i] += node.span[i];
                 node = node.forward[i];
+                steps++;
             }
             recordNode[i] = node;
-
+            if (counters != null && steps > 0) {
+                counters.recordSteps(i, steps);
+            }
         }
-        SkipNode newNode = new SkipNode(it, randLevel);
+        if (counters != null) {
+            counters.recordPath(compared, head.level + 1);
+        }
+        linkAfter(new SkipNode(it, randLevel), recordNode, rank);
+    }
+
+
+    /**
+     * Links a new node in after the given predecessors. The span of every
+     * link passing over the new node grows by one, and the links into and out
+     * of the new node are given the spans computed from the ranks of the
+     * predecessors.
+     * 
+     * @param newNode
+     *            the node to be linked in
+     * @param recordNode
+     *            the last node before the new one on every level of head
+     * @param rank
+     *            the positions of the nodes in recordNode
+     */
+    private void linkAfter(SkipNode newNode, SkipNode[] recordNode,
+        int[] rank) {
+        int randLevel = newNode.level;
 // System.out.println("Random Level: "+randLevel);
+        beginWrite();
+        setNext0(newNode, recordNode[0].forward[0]);
+        setNext0(recordNode[0], newNode);
         for (int j = 0; j <= randLevel; j++) {
-            newNode.forward[j] = recordNode[j].forward[j];
-            recordNode[j].forward[j] = newNode;
+            if (j > 0) {
+                newNode.forward[j] = recordNode[j].forward[j];
+                recordNode[j].forward[j] = newNode;
+            }
+            newNode.span[j] = recordNode[j].span[j] - (rank[0] - rank[j]);
+            recordNode[j].span[j] = rank[0] - rank[j] + 1;
 // System.out.println("Random Level: "+j+"New node:
 // "+newNode.element().getKey());
 // System.out.println(newNode.toString());
         }
-        size++;
+        newNode.backward = (recordNode[0] == head) ? null : recordNode[0];
+        if (newNode.forward[0] == null) {
+            tail = newNode;
+        }
+        else {
+            newNode.forward[0].backward = newNode;
+        }
+        for (int j = randLevel + 1; j <= head.level; j++) {
+            recordNode[j].span[j]++;
+        }
+        countTower(newNode.level, 1);
+        indexValue(newNode);
+        if (keyIndex != null && !indexesStale) {
+            // the new node goes in front of any with the same key
+            keyIndex.put(newNode.element().getKey(), newNode);
+        }
+        size++;
+    }
+
+
+    /**
+     * Inserts a whole batch of KVPairs in one forward sweep. The batch is
+     * sorted first, and the predecessors found for one pair are the starting
+     * points of the search for the next pair, so the search never restarts
+     * from head. The result is the same as inserting the pairs one by one in
+     * the order of the batch.
+     * 
+     * @param batch
+     *            the KVPairs to be inserted
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void insertAll(Collection<KVPair<K, V>> batch) {
+        ArrayList<KVPair<K, V>> sorted = new ArrayList<>(batch);
+        // stable, so equal keys stay in batch order and the last one inserted
+        // ends up first, as with repeated inserts
+        sorted.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+
+        SkipNode[] recordNode = (SkipNode[])Array.newInstance(SkipNode.class,
+            head.level + 1);
+        int[] rank = new int[head.level + 1];
+        for (int i = 0; i <= head.level; i++) {
+            recordNode[i] = head;
+        }
+        for (KVPair<K, V> it : sorted) {
+            K key = it.getKey();
+            int randLevel = randomLevel();
+            if (head.level < randLevel) {
+                SkipNode oldHead = head;
+                adjustHead(randLevel);
+                SkipNode[] newRecord = (SkipNode[])Array.newInstance(
+                    SkipNode.class, head.level + 1);
+                int[] newRank = new int[head.level + 1];
+                for (int i = 0; i <= head.level; i++) {
+                    newRecord[i] = (i < recordNode.length
+                        && recordNode[i] != oldHead) ? recordNode[i] : head;
+                    newRank[i] = (i < rank.length) ? rank[i] : 0;
+                }
+                recordNode = newRecord;
+                rank = newRank;
+            }
+            // resume from whichever of the previous predecessor on this level
+            // and the node reached on the level above is further along
+            SkipNode node = recordNode[head.level];
+            int position = rank[head.level];
+            for (int i = head.level; i >= 0; i--) {
+                if (rank[i] > position) {
+                    node = recordNode[i];
+                    position = rank[i];
+                }
+                while (node.forward[i] != null && node.forward[i].element()
+                    .getKey().compareTo(key) < 0) {
+                    position += node.span[i];
+                    node = node.forward[i];
+                }
+                recordNode[i] = node;
+                rank[i] = position;
+            }
+            linkAfter(new SkipNode(it, randLevel), recordNode, rank);
+        }
+    }
+
+
+    /**
+     * Increases the number of levels in head so that no element has more
+     * indices than the head. The new levels of head point past the end of the
+     * list, so their span is the size of the list.
+     * 
+     * @param newLevel
+     *            the number of levels to be added to head
+     */
+    @SuppressWarnings("unchecked")
+    public void adjustHead(int newLevel) {
+        SkipNode oldHead = head;
+        head = new SkipNode(null, newLevel);
+        for (int i = 0; i <= oldHead.level; i++) {
+            head.forward[i] = oldHead.forward[i];
+            head.span[i] = oldHead.span[i];
+        }
+        head.link0 = oldHead.link0;
+        for (int i = oldHead.level + 1; i <= newLevel; i++) {
+            head.span[i] = size;
+        }
+
+    }
+
+
+    /**
+     * Removes the KVPair that is passed in as a parameter and returns true if
+     * the pair was valid and false if not.
+     * 
+     * @param key
+     *            of the the KVPair to be removed
+     * @return remove the removed pair if the pair was valid and null if not
+     */
+    public KVPair<K, V> remove(K key) {
+        SkipListMetrics counters = metrics;
+        if (counters == null) {
+            return removeKey(key);
+        }
+        long start = System.nanoTime();
+        KVPair<K, V> removed = removeKey(key);
+        counters.recordCall(SkipListMetrics.Operation.REMOVE, System
+            .nanoTime() - start);
+        return removed;
+    }
+
+
+    /**
+     * Removes the first KVPair with the key, counting the descent if metrics
+     * are enabled.
+     * 
+     * @param key
+     *            of the the KVPair to be removed
+     * @return the removed pair, or null if there was none
+     */
+    private KVPair<K, V> removeKey(K key) {
+        if (key == null)
+            return null;
+        if (keyIndex != null) {
+            // without the key index, unlink leaves stale indexes alone
+            refreshIndexes();
+            if (keyIndex.get(key) == null) {
+                return null;
+            }
+        }
+
+        SkipListMetrics counters = metrics;
+        int compared = 0;
+        SkipNode[] updateNodes = updateBuffer();
+        SkipNode curr = head;
+
+        for (int level = head.level; level >= 0; level--) {
+            int steps = 0;
+            while (curr.forward[level] != null) {
+                compared++;
+                if (curr.forward[level].element().getKey().compareTo(
+                    key) >= 0) {
+                    break;
+                }
+                curr = curr.forward[level];
+                steps++;
+            }
+            updateNodes[level] = curr;
+            if (counters != null && steps > 0) {
+                counters.recordSteps(level, steps);
+            }
+        }
+
+        SkipNode removeNode = curr.forward[0];
+        if (removeNode != null) {
+            compared++;
+        }
+        if (counters != null) {
+            counters.recordPath(compared, head.level + 1);
+        }
+        if (size == 0 || removeNode == null || !removeNode.element().getKey()
+            .equals(key)) {
+            return null;
+        }
+        unlink(removeNode, updateNodes);
+        return removeNode.element();
+    }
+
+
+    /**
+     * Removes a KVPair with the specified value. The first pair in the list
+     * holding the value is removed. By default level 0 is scanned for it,
+     * which takes O(n) time. While the value index is enabled, the nodes
+     * holding the value are found through it instead, so together with the
+     * unlink this takes O(log n) expected time when few pairs share the
+     * value.
+     * 
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return returns true if the removal was successful
+     */
+    public KVPair<K, V> removeByValue(V val) {
+        SkipListMetrics counters = metrics;
+        if (counters == null) {
+            return removeValue(val);
+        }
+        long start = System.nanoTime();
+        KVPair<K, V> removed = removeValue(val);
+        counters.recordCall(SkipListMetrics.Operation.REMOVE_BY_VALUE, System
+            .nanoTime() - start);
+        return removed;
+    }
+
+
+    /**
+     * Removes the first KVPair holding the value, counting the descents if
+     * metrics are enabled.
+     * 
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair, or null if there was none
+     */
+    private KVPair<K, V> removeValue(V val) {
+        if (val == null)
+            return null;
+
+        if (valueIndex == null) {
+            return scanValue(val);
+        }
+        refreshIndexes();
+        SkipNode removeNode = valueIndex.get(val);
+        if (removeNode == null) {
+            return null;
+        }
+
+        // Of the nodes holding the value, the first in the list has the
+        // smallest key
+        boolean tie = false;
+        for (SkipNode other = removeNode.sameValue; other != null;
+            other = other.sameValue) {
+            int cmp = other.element().getKey().compareTo(removeNode.element()
+                .getKey());
+            if (cmp < 0) {
+                removeNode = other;
+                tie = false;
+            }
+            else if (cmp == 0) {
+                tie = true;
+            }
+        }
+        if (tie) {
+            // several share that key, so take the first of them on level 0
+            removeNode = lowerNode(removeNode.element().getKey(), false,
+                metrics).forward[0];
+            while (!val.equals(removeNode.element().getValue())) {
+                removeNode = removeNode.forward[0];
+            }
+        }
+
+        unlink(removeNode, findUpdate(removeNode, metrics));
+        return removeNode.element();
+
+    }
+
+
+    /**
+     * Removes the first KVPair holding the value by walking level 0, keeping
+     * the last node passed on every level as the predecessor for the unlink.
+     * 
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair, or null if there was none
+     */
+    private KVPair<K, V> scanValue(V val) {
+        SkipNode[] updateNodes = updateBuffer();
+        for (int i = 0; i <= head.level; i++) {
+            updateNodes[i] = head;
+        }
+        int steps = 0;
+        SkipNode removeNode = head.forward[0];
+        while (removeNode != null && !val.equals(removeNode.element()
+            .getValue())) {
+            steps++;
+            for (int i = 0; i <= removeNode.level; i++) {
+                updateNodes[i] = removeNode;
+            }
+            removeNode = removeNode.forward[0];
+        }
+        SkipListMetrics counters = metrics;
+        if (counters != null) {
+            // every value checked counts as a comparison
+            counters.recordSteps(0, steps);
+            counters.recordPath(removeNode == null ? steps : steps + 1, 0);
+        }
+        if (removeNode == null) {
+            return null;
+        }
+        unlink(removeNode, updateNodes);
+        return removeNode.element();
+    }
+
+
+    /**
+     * Removes every KVPair whose key lies in [fromKey, toKey) and returns how
+     * many there were. Two cursors descend the levels together, one to the
+     * last node before fromKey and one to the last node before toKey, so the
+     * predecessors on both sides of the range are found in one search per
+     * level. On every level the link of the first is then pointed past the
+     * range, with the ranks giving its new span, instead of removing the
+     * pairs one by one. The removed nodes are visited once only to take them
+     * out of the indexes.
+     * 
+     * @param fromKey
+     *            the smallest key removed
+     * @param toKey
+     *            the key after the range, which is kept
+     * @return the number of KVPairs removed
+     * @throws IllegalArgumentException
+     *             if fromKey is larger than toKey
+     */
+    @SuppressWarnings("unchecked")
+    public int removeRange(K fromKey, K toKey) {
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        SkipNode[] before = updateBuffer();
+        int[] beforeRank = updateRank;
+        SkipNode[] last = (SkipNode[])Array.newInstance(SkipNode.class,
+            head.level + 1);
+        int[] lastRank = new int[head.level + 1];
+        SkipNode from = head;
+        int fromRank = 0;
+        SkipNode to = head;
+        int toRank = 0;
+        for (int level = head.level; level >= 0; level--) {
+            while (from.forward[level] != null && from.forward[level]
+                .element().getKey().compareTo(fromKey) < 0) {
+                fromRank += from.span[level];
+                from = from.forward[level];
+            }
+            before[level] = from;
+            beforeRank[level] = fromRank;
+            if (fromRank > toRank) {
+                to = from;
+                toRank = fromRank;
+            }
+            while (to.forward[level] != null && to.forward[level].element()
+                .getKey().compareTo(toKey) < 0) {
+                toRank += to.span[level];
+                to = to.forward[level];
+            }
+            last[level] = to;
+            lastRank[level] = toRank;
+        }
+        int removed = toRank - fromRank;
+        if (removed == 0) {
+            return 0;
+        }
+
+        SkipNode first = before[0].forward[0];
+        SkipNode after = last[0].forward[0];
+        for (SkipNode node = first; node != after; node = node.forward[0]) {
+            countTower(node.level, -1);
+            unindexValue(node);
+            unindexKey(node);
+        }
+        beginWrite();
+        for (int level = 0; level <= head.level; level++) {
+            SkipNode prev = before[level];
+            if (last[level] == prev) {
+                prev.span[level] -= removed;
+                continue;
+            }
+            prev.span[level] = lastRank[level] + last[level].span[level]
+                - removed - beforeRank[level];
+            if (level == 0) {
+                setNext0(prev, after);
+            }
+            else {
+                prev.forward[level] = last[level].forward[level];
+            }
+        }
+        if (after == null) {
+            tail = (before[0] == head) ? null : before[0];
+        }
+        else {
+            after.backward = (before[0] == head) ? null : before[0];
+        }
+        size -= removed;
+        lowerHead();
+        return removed;
+    }
+
+
+    /**
+     * Removes every KVPair whose value passes a filter in two passes over
+     * level 0, without a search per pair. The first pass only calls the
+     * filter, so if it throws the list is left unchanged. The second pass
+     * remembers the last kept node of every level and its new position,
+     * links every kept node in after them and gives the links their new
+     * spans, the same way bulkLoad appends nodes, so the whole list is
+     * relinked in O(n) time. The filter is also called for null values.
+     * 
+     * @param filter
+     *            true for the values to be removed
+     * @return the removed pairs in list order
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public ArrayList<KVPair<K, V>> removeValuesIf(
+        Predicate<? super V> filter) {
+        ArrayList<KVPair<K, V>> removed = new ArrayList<>();
+        boolean[] remove = new boolean[size];
+        int position = 0;
+        int matched = 0;
+        for (SkipNode node = head.forward[0]; node != null;
+            node = node.forward[0]) {
+            remove[position] = filter.test(node.element().getValue());
+            if (remove[position++]) {
+                matched++;
+            }
+        }
+        if (matched == 0) {
+            return removed;
+        }
+        SkipNode[] last = (SkipNode[])Array.newInstance(SkipNode.class,
+            head.level + 1);
+        int[] lastRank = new int[head.level + 1];
+        Arrays.fill(last, head);
+        int kept = 0;
+        beginWrite();
+        SkipNode node = head.forward[0];
+        position = 0;
+        while (node != null) {
+            SkipNode next = node.forward[0];
+            if (remove[position++]) {
+                countTower(node.level, -1);
+                unindexValue(node);
+                unindexKey(node);
+                removed.add(node.element());
+            }
+            else {
+                kept++;
+                if (last[0].forward[0] != node) {
+                    setNext0(last[0], node);
+                    node.backward = (last[0] == head) ? null : last[0];
+                }
+                for (int level = 0; level <= node.level; level++) {
+                    if (level > 0) {
+                        last[level].forward[level] = node;
+                    }
+                    last[level].span[level] = kept - lastRank[level];
+                    last[level] = node;
+                    lastRank[level] = kept;
+                }
+            }
+            node = next;
+        }
+        size = kept;
+        for (int level = 0; level <= head.level; level++) {
+            if (level == 0) {
+                if (last[0].forward[0] != null) {
+                    setNext0(last[0], null);
+                }
+            }
+            else {
+                last[level].forward[level] = null;
+            }
+            last[level].span[level] = kept - lastRank[level];
+        }
+        tail = (last[0] == head) ? null : last[0];
+        lowerHead();
+        return removed;
+    }
+
+
+    /**
+     * Adds a node to the value index. Nodes holding equal values are chained
+     * through sameValue behind the one stored in the map.
+     * 
+     * @param node
+     *            the node that was linked in
+     */
+    private void indexValue(SkipNode node) {
+        V value = node.element().getValue();
+        if (valueIndex != null && value != null && !indexesStale) {
+            node.sameValue = valueIndex.put(value, node);
+        }
+    }
+
+
+    /**
+     * Removes a node from the value index.
+     * 
+     * @param node
+     *            the node that was unlinked
+     */
+    private void unindexValue(SkipNode node) {
+        V value = node.element().getValue();
+        if (valueIndex == null || value == null || indexesStale) {
+            return;
+        }
+        SkipNode first = valueIndex.get(value);
+        if (first == node) {
+            if (node.sameValue == null) {
+                valueIndex.remove(value);
+            }
+            else {
+                valueIndex.put(value, node.sameValue);
+            }
+        }
+        else {
+            SkipNode prev = first;
+            while (prev.sameValue != node) {
+                prev = prev.sameValue;
+            }
+            prev.sameValue = node.sameValue;
+        }
+        node.sameValue = null;
+    }
+
+
+    /**
+     * Finds the last node before the given node on every level. The levels are
+     * descended by key to the first node with the same key, and from there
+     * level 0 is walked up to the node, since duplicates may come before it.
+     * 
+     * @param node
+     *            the node whose predecessors are needed
+     * @param counters
+     *            the metrics to count the descent in, or null
+     * @return the predecessors of the node for the levels 0 to head.level
+     */
+    private SkipNode[] findUpdate(SkipNode node, SkipListMetrics counters) {
+        K key = node.element().getKey();
+        int compared = 0;
+        SkipNode[] updateNodes = updateBuffer();
+        SkipNode curr = head;
+        for (int level = head.level; level >= 0; level--) {
+            int steps = 0;
+            while (curr.forward[level] != null) {
+                compared++;
+                if (curr.forward[level].element().getKey().compareTo(
+                    key) >= 0) {
+                    break;
+                }
+                curr = curr.forward[level];
+                steps++;
+            }
+            updateNodes[level] = curr;
+            if (counters != null && steps > 0) {
+                counters.recordSteps(level, steps);
+            }
+        }
+        int walked = 0;
+        while (curr.forward[0] != node) {
+            curr = curr.forward[0];
+            walked++;
+            for (int level = 0; level <= curr.level; level++) {
+                updateNodes[level] = curr;
+            }
+        }
+        if (counters != null) {
+            if (walked > 0) {
+                counters.recordSteps(0, walked);
+            }
+            counters.recordPath(compared, head.level + 1);
+        }
+        return updateNodes;
+    }
+
+
+    /**
+     * Returns the reusable predecessor array, first growing it (and the rank
+     * array) if head has become taller than it. Growing doubles the length,
+     * so in the steady state inserts and removes allocate no arrays.
+     * 
+     * @return an array with room for the levels 0 to head.level
+     */
+    @SuppressWarnings("unchecked")
+    private SkipNode[] updateBuffer() {
+        if (update.length <= head.level) {
+            int length = Math.max(head.level + 1, update.length * 2);
+            update = (SkipNode[])Array.newInstance(SkipNode.class, length);
+            updateRank = new int[length];
+        }
+        return update;
+    }
+
+
+    /**
+     * Unlinks a node from every level using its predecessors, fixes the spans
+     * of the links that passed over it and lowers head if its top levels are
+     * now empty.
+     * 
+     * @param node
+     *            the node to be removed
+     * @param updateNodes
+     *            the last node before the removed node on every level
+     */
+    private void unlink(SkipNode node, SkipNode[] updateNodes) {
+        beginWrite();
+        for (int level = 0; level <= head.level; level++) {
+            SkipNode prev = updateNodes[level];
+            if (prev.forward[level] == node && level == 0) {
+                setNext0(prev, node.forward[0]);
+                prev.span[0] += node.span[0] - 1;
+            }
+            else if (prev.forward[level] == node) {
+                prev.forward[level] = node.forward[level];
+                prev.span[level] += node.span[level] - 1;
+            }
+            else {
+                prev.span[level]--;
+            }
+        }
+        if (node.forward[0] == null) {
+            tail = node.backward;
+        }
+        else {
+            node.forward[0].backward = node.backward;
+        }
+        while (head.level > 0 && head.forward[head.level] == null) {
+            head.level--;
+        }
+        countTower(node.level, -1);
+        unindexValue(node);
+        unindexKey(node);
+        size--;
+    }
+
+
+    /**
+     * Removes a node from the key index. If it was the first node of its key,
+     * the node after it takes its place when it has the same key.
+     * 
+     * @param node
+     *            the node that was unlinked
+     */
+    private void unindexKey(SkipNode node) {
+        if (keyIndex == null || indexesStale) {
+            return;
+        }
+        K key = node.element().getKey();
+        if (keyIndex.get(key) != node) {
+            return;
+        }
+        SkipNode next = node.forward[0];
+        if (next != null && next.element().getKey().compareTo(key) == 0) {
+            keyIndex.put(key, next);
+        }
+        else {
+            keyIndex.remove(key);
+        }
+    }
+
+
+    /**
+     * Starts a change of level 0 by moving to the next version. If snapshots
+     * were closed since the histories were last trimmed, the links only they
+     * could see are dropped first.
+     */
+    private void beginWrite() {
+        version++;
+        if (oldestSnapshot != prunedFor) {
+            long oldest = oldestSnapshot;
+            for (int i = versioned.size() - 1; i >= 0; i--) {
+                SkipNode node = versioned.get(i);
+                if (oldest == NO_SNAPSHOT) {
+                    node.link0 = null;
+                    continue;
+                }
+                trimHistory(node.link0, oldest);
+                if (node.link0.older == null) {
+                    versioned.set(i, versioned.get(versioned.size() - 1));
+                    versioned.remove(versioned.size() - 1);
+                }
+            }
+            if (oldest == NO_SNAPSHOT) {
+                versioned.clear();
+            }
+            prunedFor = oldest;
+        }
+    }
+
+
+    /**
+     * Sets the level 0 pointer of a node. While no snapshot is open no
+     * history is kept: the pointer is only written to forward[0], and a
+     * history left from closed snapshots is dropped. While snapshots are open
+     * a new link is put in front of the history, which starts from the old
+     * forward[0] if the node had none, so open snapshots still find the
+     * pointer they saw. The history is published before forward[0] changes,
+     * so a snapshot that finds no history can read forward[0].
+     * 
+     * @param node
+     *            the node to change
+     * @param next
+     *            the new next node on level 0
+     */
+    private void setNext0(SkipNode node, SkipNode next) {
+        long oldest = oldestSnapshot;
+        if (oldest == NO_SNAPSHOT) {
+            if (node.link0 != null) {
+                node.link0 = null;
+            }
+            node.forward[0] = next;
+            return;
+        }
+        Link current = node.link0;
+        if (current == null) {
+            // every open snapshot saw the old pointer
+            node.link0 = new Link(next, version, new Link(node.forward[0],
+                Long.MIN_VALUE, null));
+            versioned.add(node);
+        }
+        else {
+            boolean wasSingle = current.older == null;
+            trimHistory(current, oldest);
+            node.link0 = new Link(next, version, current);
+            if (wasSingle) {
+                versioned.add(node);
+            }
+        }
+        VarHandle.storeStoreFence();
+        node.forward[0] = next;
+    }
+
+
+    /**
+     * Cuts a history after the newest link that the oldest open snapshot can
+     * see, since no snapshot can see the links behind it.
+     * 
+     * @param newest
+     *            the newest link of the history
+     * @param oldest
+     *            the version of the oldest open snapshot, or NO_SNAPSHOT
+     */
+    private void trimHistory(Link newest, long oldest) {
+        Link link = newest;
+        while (link != null && link.stamp > oldest) {
+            link = link.older;
+        }
+        if (link != null) {
+            link.older = null;
+        }
+    }
+
+
+    /**
+     * Finds the level 0 successor of a node as it was at a version.
+     * 
+     * @param node
+     *            a node that was in the list at that version
+     * @param stamp
+     *            the version
+     * @return the successor at that version, or null
+     */
+    private SkipNode nextAt(SkipNode node, long stamp) {
+        Link link = node.link0;
+        if (link == null) {
+            SkipNode next = node.forward[0];
+            VarHandle.loadLoadFence();
+            link = node.link0;
+            if (link == null) {
+                // unchanged since before every open snapshot
+                return next;
+            }
+        }
+        while (link != null && link.stamp > stamp) {
+            link = link.older;
+        }
+        return (link == null) ? null : link.next;
+    }
+
+
+    /**
+     * Returns a point-in-time view of the list. The snapshot sees the list as
+     * it is now, whatever is inserted or removed afterwards, and reading it
+     * takes no lock: each node keeps the level 0 links that open snapshots
+     * may still need, and they are dropped at the next change after the
+     * snapshots are closed. The snapshot has to be taken by the thread that
+     * modifies the list (or while it is not being modified), but it may then
+     * be read by any thread while the list keeps changing.
+     * 
+     * @return the snapshot, which should be closed when it is no longer read
+     */
+    public Snapshot snapshot() {
+        synchronized (openSnapshots) {
+            openSnapshots.merge(version, 1, Integer::sum);
+            oldestSnapshot = openSnapshots.firstKey();
+        }
+        return new Snapshot(head, version, size);
+    }
+
+
+    /**
+     * @return the number of nodes holding old level 0 links for open
+     *         snapshots, until those are trimmed at the next change
+     */
+    public int retainedVersions() {
+        return versioned.size();
+    }
+
+
+    /**
+     * Turns the hot path counters on or off. Turning them on starts from zero.
+     * The comparisons and steps are counted in the descents of search, insert,
+     * remove and removeByValue as they are made; while the counters are off,
+     * those counts stay in local variables and are never recorded.
+     * 
+     * @param enabled
+     *            true to count, false to stop counting
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (!enabled) {
+            metrics = null;
+        }
+        else if (metrics == null) {
+            metrics = new SkipListMetrics();
+        }
+    }
+
+
+    /**
+     * @return the current values of the hot path counters, or null if
+     *         metrics are disabled
+     */
+    public SkipListMetrics.Snapshot metrics() {
+        SkipListMetrics counters = metrics;
+        return (counters == null) ? null : counters.snapshot();
+    }
+
+
+    /**
+     * Turns the key index on or off. The key index is an OpenHashTable from
+     * every key to the first node holding it, kept up to date by every insert
+     * and remove. While it is on, search finds the first pair of a key in
+     * O(1) expected time and then reads the duplicates from level 0, and
+     * remove returns at once when the key is missing. A remove of a key that
+     * is present still descends the levels, since the spans and links of the
+     * predecessors on every level change. Turning it on builds it in one pass
+     * over level 0; turning it off drops it.
+     * 
+     * @param enabled
+     *            true to keep a key index, false to drop it
+     */
+    public void setKeyIndexEnabled(boolean enabled) {
+        if (!enabled) {
+            keyIndex = null;
+            return;
+        }
+        if (keyIndex != null) {
+            return;
+        }
+        refreshIndexes();
+        OpenHashTable<K, SkipNode> index = new OpenHashTable<>();
+        for (SkipNode node = head.forward[0]; node != null;
+            node = node.forward[0]) {
+            if (startsKey(node)) {
+                index.put(node.element().getKey(), node);
+            }
+        }
+        keyIndex = index;
+    }
+
+
+    /**
+     * @param node
+     *            a node in the list
+     * @return true if the node is the first one with its key
+     */
+    private boolean startsKey(SkipNode node) {
+        return node.backward == null || node.backward.element().getKey()
+            .compareTo(node.element().getKey()) != 0;
+    }
+
+
+    /**
+     * @return true if the key index is kept
+     */
+    public boolean isKeyIndexEnabled() {
+        return keyIndex != null;
+    }
+
+
+    /**
+     * Turns the value index on or off. The value index is a HashMap from
+     * every value to the nodes holding it, kept up to date by every insert
+     * and remove. While it is on, removeByValue finds its node without a
+     * scan of level 0; the value type must then implement hashCode
+     * consistently with equals. Turning it on builds it in one pass over
+     * level 0; turning it off drops it.
+     * 
+     * @param enabled
+     *            true to keep a value index, false to drop it
+     */
+    public void setValueIndexEnabled(boolean enabled) {
+        if (!enabled) {
+            valueIndex = null;
+            return;
+        }
+        if (valueIndex != null) {
+            return;
+        }
+        refreshIndexes();
+        valueIndex = new HashMap<>();
+        for (SkipNode node = head.forward[0]; node != null;
+            node = node.forward[0]) {
+            indexValue(node);
+        }
+    }
+
+
+    /**
+     * @return true if the value index is kept
+     */
+    public boolean isValueIndexEnabled() {
+        return valueIndex != null;
+    }
+
+
+    /**
+     * Turns the self-adjusting mode on or off. While it is on, every search
+     * that finds a key counts a hit on the first node with that key, and a
+     * node whose hits reach PROMOTE_HITS times 2 to the power of its level
+     * minus one is raised one level, up to the level of head. Without the
+     * key index, a search in this mode stops at the first node with the key
+     * that it meets, so the keys searched most are found in a few steps from
+     * the top. Every
+     * DECAY_HITS hits, or size hits if that is more, all counts are halved
+     * and nodes whose counts fell below a quarter of what their level took
+     * are lowered again, never below the level they were inserted with. The
+     * quarter keeps a key that is still searched at the same rate from being
+     * lowered and raised again after every halving.
+     * 
+     * Promoting makes search a write, so a list in this mode must not be
+     * searched by several threads at once. Only levels above 0 change, so
+     * snapshots are not affected. Turning the mode off keeps the current
+     * levels and stops counting.
+     * 
+     * @param enabled
+     *            true to adapt to searches, false to stop
+     */
+    public void setAdaptive(boolean enabled) {
+        adaptive = enabled;
+    }
+
+
+    /**
+     * @return true if searches count hits and promote hot nodes
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+
+    /**
+     * Counts a search hit on a node, raises it one level if it has earned
+     * it and halves all counts once enough hits have been counted.
+     * 
+     * @param node
+     *            the first node with the key that was searched for
+     */
+    private void hit(SkipNode node) {
+        node.hits++;
+        if (node.level < head.level && node.hits >= promoteHits(node.level
+            + 1)) {
+            promote(node);
+        }
+        hitsSinceDecay++;
+        if (hitsSinceDecay >= Math.max(DECAY_HITS, size)) {
+            decay();
+        }
+    }
+
+
+    /**
+     * @param level
+     *            a level above 1
+     * @return the hits a node needs to be promoted to that level
+     */
+    private static long promoteHits(int level) {
+        return (long)PROMOTE_HITS << Math.min(level - 2, 60);
+    }
+
+
+    /**
+     * Raises a node by one level. It is linked in on the new level after
+     * the last node with a smaller key, which the descent by key finds since
+     * the node is the first with its key, and the spans are split at the
+     * position of the node like in linkAfter.
+     * 
+     * @param node
+     *            the first node with its key, below the level of head
+     */
+    private void promote(SkipNode node) {
+        K key = node.element().getKey();
+        int newLevel = node.level + 1;
+        SkipNode curr = head;
+        int rank = 0;
+        SkipNode pred = head;
+        int predRank = 0;
+        for (int level = head.level; level >= 0; level--) {
+            while (curr.forward[level] != null && curr.forward[level].element()
+                .getKey().compareTo(key) < 0) {
+                rank += curr.span[level];
+                curr = curr.forward[level];
+            }
+            if (level == newLevel) {
+                pred = curr;
+                predRank = rank;
+            }
+        }
+        int position = rank + 1;
+        node.forward = Arrays.copyOf(node.forward, newLevel + 1);
+        node.span = Arrays.copyOf(node.span, newLevel + 1);
+        node.forward[newLevel] = pred.forward[newLevel];
+        node.span[newLevel] = pred.span[newLevel] - (position - predRank);
+        pred.forward[newLevel] = node;
+        pred.span[newLevel] = position - predRank;
+        countTower(node.level, -1);
+        node.level = newLevel;
+        countTower(newLevel, 1);
+    }
+
+
+    /**
+     * Halves the hit count of every node and lowers the nodes whose counts no
+     * longer justify their level, in one pass over level 0 that remembers the
+     * last node seen on every level. Those are the predecessors of a lowered
+     * node on the levels it leaves, and their spans absorb its spans.
+     */
+    @SuppressWarnings("unchecked")
+    private void decay() {
+        hitsSinceDecay = 0;
+        SkipNode[] last = (SkipNode[])Array.newInstance(SkipNode.class,
+            head.level + 1);
+        Arrays.fill(last, head);
+        for (SkipNode node = head.forward[0]; node != null;
+            node = node.forward[0]) {
+            node.hits >>= 1;
+            int level = node.level;
+            while (level > node.baseLevel && node.hits < promoteHits(level)
+                / 4) {
+                level--;
+            }
+            if (level < node.level) {
+                for (int i = level + 1; i <= node.level; i++) {
+                    last[i].forward[i] = node.forward[i];
+                    last[i].span[i] += node.span[i];
+                }
+                node.forward = Arrays.copyOf(node.forward, level + 1);
+                node.span = Arrays.copyOf(node.span, level + 1);
+                countTower(node.level, -1);
+                node.level = level;
+                countTower(level, 1);
+            }
+            for (int i = 0; i <= node.level; i++) {
+                last[i] = node;
+            }
+        }
+        while (head.level > 0 && head.forward[head.level] == null) {
+            head.level--;
+        }
+    }
+
+
+    /**
+     * Updates the number of nodes of a level.
+     * 
+     * @param level
+     *            the level of a node that was linked in or unlinked
+     * @param change
+     *            1 for a new node and -1 for a removed one
+     */
+    private void countTower(int level, int change) {
+        if (indexesStale) {
+            return;
+        }
+        if (level >= towerCounts.length) {
+            towerCounts = Arrays.copyOf(towerCounts, Math.max(level + 1,
+                towerCounts.length * 2));
+        }
+        towerCounts[level] += change;
+    }
+
+
+    /**
+     * Reports structural statistics without printing the list. The level
+     * histogram and tower heights come from counts kept by every insert and
+     * remove, and the memory estimate is computed from them. The search path
+     * length is measured by searching for the keys at up to STATS_PROBES
+     * positions, all of them if the list is that small and evenly sampled
+     * ones otherwise, so stats takes O(log n) per probe.
+     * 
+     * @return the statistics
+     */
+    public SkipListStats stats() {
+        refreshIndexes();
+        int maxHeight = 0;
+        long heights = 0;
+        for (int level = 1; level < towerCounts.length; level++) {
+            if (towerCounts[level] > 0) {
+                maxHeight = level;
+                heights += (long)level * towerCounts[level];
+            }
+        }
+        int[] nodesPerLevel = new int[maxHeight + 1];
+        int atLeast = 0;
+        for (int level = maxHeight; level >= 0; level--) {
+            if (level < towerCounts.length) {
+                atLeast += towerCounts[level];
+            }
+            nodesPerLevel[level] = atLeast;
+        }
+
+        long steps = 0;
+        int probes = Math.min(size, STATS_PROBES);
+        if (size <= STATS_PROBES) {
+            for (SkipNode node = head.forward[0]; node != null;
+                node = node.forward[0]) {
+                steps += searchPathLength(node.element().getKey());
+            }
+        }
+        else {
+            Random random = new Random(size);
+            for (int i = 0; i < probes; i++) {
+                SkipNode node = nodeAt(1 + random.nextInt(size));
+                steps += searchPathLength(node.element().getKey());
+            }
+        }
+
+        return new SkipListStats(size, head.level, nodesPerLevel,
+            (size == 0) ? 0 : (double)heights / size, (probes == 0)
+                ? 0
+                : (double)steps / probes, probes, estimateBytes());
+    }
+
+
+    /**
+     * Counts the steps of a search for a key: the links followed plus the
+     * levels descended until level 0 is left.
+     * 
+     * @param key
+     *            the key to search for
+     * @return the number of steps
+     */
+    private int searchPathLength(K key) {
+        SkipNode curr = head;
+        int steps = 0;
+        for (int level = head.level; level >= 0; level--) {
+            while (curr.forward[level] != null && curr.forward[level].element()
+                .getKey().compareTo(key) < 0) {
+                curr = curr.forward[level];
+                steps++;
+            }
+            steps++;
+        }
+        return steps;
+    }
+
+
+    /**
+     * Estimates the bytes retained by the list for a 64-bit JVM with
+     * compressed references: 12 byte object headers, 4 byte references and
+     * sizes rounded up to 8 bytes. The keys and values are not counted.
+     * 
+     * @return the estimated number of bytes
+     */
+    private long estimateBytes() {
+        // header, 6 references, the levels and the hit count
+        long nodeBytes = align(12 + 6 * 4 + 3 * 4);
+        // the level 0 history link and the KVPair
+        long perPair = nodeBytes + align(12 + 4 + 8 + 4) + align(12 + 2 * 4);
+        long bytes = 0;
+        for (int level = 0; level < towerCounts.length; level++) {
+            // forward and span arrays of level + 1 entries each
+            long arrays = 2 * align(16 + 4L * (level + 1));
+            bytes += towerCounts[level] * (perPair + arrays);
+        }
+        bytes += nodeBytes + 2 * align(16 + 4L * head.forward.length);
+        if (valueIndex != null) {
+            // value index: a table slot and an entry per distinct value
+            bytes += valueIndex.size() * (4 + align(12 + 3 * 4 + 4));
+        }
+        if (keyIndex != null) {
+            // key index: the object and its key and value arrays
+            bytes += align(12 + 2 * 4 + 4) + 2 * align(16 + 4L * keyIndex
+                .capacity());
+        }
+        return bytes;
+    }
+
+
+    /**
+     * @param bytes
+     *            a size in bytes
+     * @return the size rounded up to a multiple of 8
+     */
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+
+    /**
+     * Builds a SkipList from pairs that are already sorted by key in a single
+     * left-to-right pass. Instead of searching from the top for every pair,
+     * the last node of every level is remembered and each new tower is
+     * appended after them, so n pairs take O(n) time. Pairs with equal keys
+     * keep the order in which they are given.
+     * 
+     * @param <K>
+     *            Key
+     * @param <V>
+     *            Value
+     * @param sorted
+     *            the pairs in ascending key order
+     * @return a new SkipList holding the pairs
+     * @throws IllegalArgumentException
+     *             if the pairs are not sorted by key
+     */
+    public static <K extends Comparable<? super K>, V> SkipList<K, V> bulkLoad(
+        Iterator<KVPair<K, V>> sorted) {
+        SkipList<K, V> list = new SkipList<K, V>();
+        SkipList<K, V>.Appender appender = list.new Appender();
+        K previous = null;
+        while (sorted.hasNext()) {
+            KVPair<K, V> pair = sorted.next();
+            if (previous != null && pair.getKey().compareTo(previous) < 0) {
+                throw new IllegalArgumentException("Pairs are not sorted by "
+                    + "key: " + pair.getKey() + " after " + previous);
+            }
+            previous = pair.getKey();
+            appender.append(list.new SkipNode(pair, list.randomLevel()));
+        }
+        appender.finish();
+        return list;
+    }
+
+
+    /**
+     * Cuts the list in two at a key. This list keeps the pairs whose keys are
+     * smaller than the key, and the pairs from the first one with the key on
+     * are moved to the returned list, which shares the level policy, the
+     * adaptive mode and the value and key index settings of this one. The
+     * cut descends the levels once to find the last node before the key on
+     * every level; there every link is cut and its span split between the
+     * two lists, so the towers are divided in O(log n) expected time. The
+     * value index, the key index and the level counts of both lists are not
+     * updated here. The O(n) pass that rebuilds them is deferred to the next
+     * call that needs them: stats, removeByValue when the value index is
+     * enabled, and search or remove when the key index is enabled. Without
+     * the key index, insert and remove by key stay O(log n) after the cut.
+     * 
+     * @param key
+     *            the smallest key of the returned list
+     * @return a new list holding the pairs with keys not smaller than key
+     * @throws IllegalStateException
+     *             if a snapshot of this list is open
+     */
+    public SkipList<K, V> splitAt(K key) {
+        requireNoSnapshots();
+        SkipList<K, V> upper = new SkipList<K, V>(levels);
+        upper.adaptive = adaptive;
+        if (valueIndex != null) {
+            upper.valueIndex = new HashMap<>();
+        }
+        if (keyIndex != null) {
+            upper.keyIndex = new OpenHashTable<>();
+        }
+        upper.version = version;
+        upper.adjustHead(head.level);
+
+        SkipNode[] pred = updateBuffer();
+        int[] predRank = updateRank;
+        SkipNode curr = head;
+        int rank = 0;
+        for (int level = head.level; level >= 0; level--) {
+            while (curr.forward[level] != null && curr.forward[level].element()
+                .getKey().compareTo(key) < 0) {
+                rank += curr.span[level];
+                curr = curr.forward[level];
+            }
+            pred[level] = curr;
+            predRank[level] = rank;
+        }
+        SkipNode first = curr.forward[0];
+        if (first == null) {
+            return upper;
+        }
+
+        beginWrite();
+        upper.beginWrite();
+        for (int level = 0; level <= head.level; level++) {
+            SkipNode before = pred[level];
+            upper.head.span[level] = before.span[level] - (rank
+                - predRank[level]);
+            before.span[level] = rank - predRank[level];
+            if (level == 0) {
+                upper.setNext0(upper.head, first);
+                setNext0(before, null);
+            }
+            else {
+                upper.head.forward[level] = before.forward[level];
+                before.forward[level] = null;
+            }
+        }
+        first.backward = null;
+        upper.tail = tail;
+        tail = (pred[0] == head) ? null : pred[0];
+        upper.size = size - rank;
+        size = rank;
+        upper.lowerHead();
+        lowerHead();
+        upper.indexesStale = true;
+        indexesStale = true;
+        return upper;
+    }
+
+
+    /**
+     * Appends all pairs of another list, whose keys must all be larger than
+     * the keys of this list, and leaves the other list empty. The last node
+     * of every level is found by running to the end of each level from the
+     * top, and its link is pointed at the first node of the other list on
+     * that level with the span added up, so the lists are joined in O(log n)
+     * expected time. The value index, the key index and the level counts of
+     * this list are not updated here. The O(n) pass that rebuilds them is
+     * deferred to the next call that needs them: stats, removeByValue when
+     * the value index is enabled, and search or remove when the key index is
+     * enabled. Without the key index, insert and remove by key stay
+     * O(log n) after the join.
+     * 
+     * @param other
+     *            the list whose pairs are appended
+     * @throws IllegalArgumentException
+     *             if other is this list or the key ranges overlap
+     * @throws IllegalStateException
+     *             if a snapshot of either list is open
+     */
+    public void concat(SkipList<K, V> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot concat a list to "
+                + "itself");
+        }
+        requireNoSnapshots();
+        other.requireNoSnapshots();
+        if (other.size == 0) {
+            return;
+        }
+        SkipNode first = other.head.forward[0];
+        if (size > 0 && tail.element().getKey().compareTo(first.element()
+            .getKey()) >= 0) {
+            throw new IllegalArgumentException("Key ranges overlap: "
+                + tail.element().getKey() + " >= " + first.element()
+                    .getKey());
+        }
+        // trims the histories of the moved nodes, and no link of theirs may
+        // be newer than this list
+        other.beginWrite();
+        version = Math.max(version, other.version);
+        if (head.level < other.head.level) {
+            adjustHead(other.head.level);
+        }
+
+        SkipNode[] last = updateBuffer();
+        int[] lastRank = updateRank;
+        SkipNode curr = head;
+        int rank = 0;
+        for (int level = head.level; level >= 0; level--) {
+            while (curr.forward[level] != null) {
+                rank += curr.span[level];
+                curr = curr.forward[level];
+            }
+            last[level] = curr;
+            lastRank[level] = rank;
+        }
+
+        beginWrite();
+        for (int level = 0; level <= head.level; level++) {
+            SkipNode end = last[level];
+            if (level > other.head.level) {
+                end.span[level] += other.size;
+                continue;
+            }
+            end.span[level] = size - lastRank[level] + other.head.span[level];
+            if (level == 0) {
+                setNext0(end, first);
+            }
+            else {
+                end.forward[level] = other.head.forward[level];
+            }
+        }
+        first.backward = (last[0] == head) ? null : last[0];
+        tail = other.tail;
+        size += other.size;
+        indexesStale = true;
+        other.clear();
+    }
+
+
+    /**
+     * Merges all pairs of another list into this one and leaves the other
+     * list empty. The key ranges may overlap; of pairs with equal keys, those
+     * of this list stay in front of those of the other list. Both lists are
+     * walked once on level 0 in key order and every node is appended, with
+     * the level it has, after the last node of each of its levels, so the
+     * merge takes O(n + m) time and keeps every index up to date.
+     * 
+     * @param other
+     *            the list whose pairs are merged in
+     * @throws IllegalArgumentException
+     *             if other is this list
+     * @throws IllegalStateException
+     *             if a snapshot of either list is open
+     */
+    public void mergeWith(SkipList<K, V> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a list with "
+                + "itself");
+        }
+        requireNoSnapshots();
+        other.requireNoSnapshots();
+        other.beginWrite();
+        version = Math.max(version, other.version);
+        beginWrite();
+        SkipNode mine = head.forward[0];
+        SkipNode theirs = other.head.forward[0];
+        clear();
+        other.clear();
+        Appender appender = new Appender();
+        while (mine != null || theirs != null) {
+            SkipNode next;
+            if (theirs == null || (mine != null && mine.element().getKey()
+                .compareTo(theirs.element().getKey()) <= 0)) {
+                next = mine;
+                mine = mine.forward[0];
+            }
+            else {
+                next = theirs;
+                theirs = theirs.forward[0];
+            }
+            next.sameValue = null;
+            appender.append(next);
+        }
+        appender.finish();
+    }
+
+
+    /**
+     * @throws IllegalStateException
+     *             if a snapshot of this list is open
+     */
+    private void requireNoSnapshots() {
+        if (oldestSnapshot != NO_SNAPSHOT) {
+            throw new IllegalStateException("Cannot restructure a list with "
+                + "open snapshots");
+        }
+    }
+
+
+    /**
+     * Lowers head while its top level is empty.
+     */
+    private void lowerHead() {
+        while (head.level > 0 && head.forward[head.level] == null) {
+            head.level--;
+        }
+    }
+
+
+    /**
+     * Empties the list, keeping its level policy and modes.
+     */
+    private void clear() {
+        head = new SkipNode(null, 0);
+        tail = null;
+        size = 0;
+        towerCounts = new int[2];
+        if (valueIndex != null) {
+            valueIndex = new HashMap<>();
+        }
+        if (keyIndex != null) {
+            keyIndex = new OpenHashTable<>();
+        }
+        indexesStale = false;
+        versioned.clear();
+    }
+
+
+    /**
+     * Rebuilds the tower counts, the value index and the key index in one
+     * pass over level 0 if a split or concat has left them stale.
+     */
+    private void refreshIndexes() {
+        if (!indexesStale) {
+            return;
+        }
+        indexesStale = false;
+        towerCounts = new int[2];
+        if (valueIndex != null) {
+            valueIndex = new HashMap<>();
+        }
+        if (keyIndex != null) {
+            keyIndex = new OpenHashTable<>();
+        }
+        for (SkipNode node = head.forward[0]; node != null;
+            node = node.forward[0]) {
+            node.sameValue = null;
+            countTower(node.level, 1);
+            indexValue(node);
+            if (keyIndex != null && startsKey(node)) {
+                keyIndex.put(node.element().getKey(), node);
+            }
+        }
     }
 
 
     /**
-     * Increases the number of levels in head so that no element has more
-     * indices than the head.
+     * Returns the KVPair at the given position in key order, using the spans
+     * to skip over whole runs of nodes.
      * 
-     * @param newLevel
-     *            the number of levels to be added to head
+     * @param index
+     *            the position of the pair, starting at 0
+     * @return the KVPair at that position
+     * @throws IndexOutOfBoundsException
+     *             if the index is negative or not smaller than size
      */
-    @SuppressWarnings("unchecked")
-    public void adjustHead(int newLevel) {
-        SkipNode oldHead = head;
-        head = new SkipNode(null, newLevel);
-        for (int i = 0; i <= oldHead.level; i++) {
-            head.forward[i] = oldHead.forward[i];
+    public KVPair<K, V> get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                + size);
         }
-
+        return nodeAt(index + 1).element();
     }
 
 
     /**
-     * Removes the KVPair that is passed in as a parameter and returns true if
-     * the pair was valid and false if not.
+     * Returns the position in key order of the first KVPair with the given
+     * key.
      * 
      * @param key
-     *            of the the KVPair to be removed
-     * @return remove the removed pair if the pair was valid and null if not
+     *            the key to look for
+     * @return the position of the first pair with the key starting at 0, or
+     *         -1 if there is no such pair
      */
-    @SuppressWarnings("unchecked")
-    public KVPair<K, V> remove(K key) {
-        if (key == null)
-            return null;
-
-        SkipNode[] updateNodes = (SkipNode[])Array.newInstance(SkipNode.class,
-            head.level + 1);
+    public int rankOf(K key) {
         SkipNode curr = head;
-
+        int rank = 0;
         for (int level = head.level; level >= 0; level--) {
             while (curr.forward[level] != null && curr.forward[level].element()
                 .getKey().compareTo(key) < 0) {
+                rank += curr.span[level];
                 curr = curr.forward[level];
             }
-            updateNodes[level] = curr;
         }
-
-        SkipNode removeNode = curr.forward[0];
-        if (size == 0 || removeNode == null || !removeNode.element().getKey()
-            .equals(key)) {
-            return null;
+        curr = curr.forward[0];
+        if (curr == null || curr.element().getKey().compareTo(key) != 0) {
+            return -1;
         }
-        for (int level = 0; level <= head.level; level++) {
-            if (updateNodes[level].forward[level] != removeNode)
-                break;
-            updateNodes[level].forward[level] = removeNode.forward[level];
+        return rank;
+    }
 
+
+    /**
+     * Returns one page of the SkipList by position. The first pair is found
+     * through the spans and the rest of the page is read from level 0.
+     * 
+     * @param offset
+     *            the position of the first pair of the page, starting at 0
+     * @param limit
+     *            the maximum number of pairs in the page
+     * @return the pairs at the positions offset to offset + limit - 1 that
+     *         exist, in key order
+     */
+    public ArrayList<KVPair<K, V>> subList(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be "
+                + "negative");
         }
-        while (head.level > 0 && head.forward[head.level] == null) {
-            head.level--;
+        ArrayList<KVPair<K, V>> output = new ArrayList<>();
+        if (offset >= size) {
+            return output;
         }
-
-        size--;
-        return removeNode.element();
+        SkipNode curr = nodeAt(offset + 1);
+        while (curr != null && output.size() < limit) {
+            output.add(curr.element());
+            curr = curr.forward[0];
+        }
+        return output;
     }
 
 
     /**
-     * Removes a KVPair with the specified value.
+     * Descends the levels following the spans to the node at a position.
      * 
-     * @param val
-     *            the value of the KVPair to be removed
-     * @return returns true if the removal was successful
+     * @param position
+     *            the position of the node, head being position 0
+     * @return the node at that position
      */
-    @SuppressWarnings("unchecked")
-    public KVPair<K, V> removeByValue(V val) {
-        if (val == null)
-            return null;
-
-        SkipNode[] updateNodes = (SkipNode[])Array.newInstance(SkipNode.class,
-            head.level + 1);
-
-        // Initialize update array with head
-        for (int i = 0; i <= head.level; i++) {
-            updateNodes[i] = head;
-        }
-
-        // Search from the top level down
+    private SkipNode nodeAt(int position) {
         SkipNode curr = head;
-        SkipNode removeNode = null;
-
-        // First find the node to remove at each level
+        int traversed = 0;
         for (int level = head.level; level >= 0; level--) {
-            while (curr.forward[level] != null) {
-                V nodeValue = curr.forward[level].element().getValue();
-                if (nodeValue != null && nodeValue.equals(val)) {
-                    removeNode = curr.forward[level];
-                    break;
-                }
-                if (curr.forward[level].forward[level] != null
-                    && curr.forward[level].forward[level].element().getValue()
-                        .equals(val)) {
-                    curr = curr.forward[level];
-                    removeNode = curr.forward[level];
-                    break;
-                }
+            while (curr.forward[level] != null && traversed
+                + curr.span[level] <= position) {
+                traversed += curr.span[level];
                 curr = curr.forward[level];
             }
-            updateNodes[level] = curr;
-            curr = updateNodes[0]; // Reset to leftmost position for next level
-        }
-
-        if (removeNode == null) {
-            return null;
-        }
-
-        // Remove the node by updating all forward pointers
-        for (int level = 0; level <= head.level; level++) {
-            curr = updateNodes[level];
-            if (curr.forward[level] != null && curr.forward[level].element()
-                .getValue().equals(val)) {
-                curr.forward[level] = curr.forward[level].forward[level];
-            }
-        }
-
-        // Update head level if necessary
-        while (head.level > 0 && head.forward[head.level] == null) {
-            head.level--;
         }
-
-        size--;
-        return removeNode.element();
-
+        return curr;
     }
 
 
@@ -289,8 +2398,23 @@ public class SkipList<K extends Comparable<? super K>, V>
         private KVPair<K, V> pair;
         // An array of pointers to subsequent nodes
         private SkipNode[] forward;
+        // the number of level 0 steps each forward pointer spans, or the
+        // number of nodes left in the list if the pointer is null
+        private int[] span;
         // the level of the node
         private int level;
+        // the level the node was inserted with, which decay never goes below
+        private final int baseLevel;
+        // the search hits counted in adaptive mode, halved by every decay
+        private int hits;
+        // the next node holding a value equal to this one, for the value
+        // index
+        private SkipNode sameValue;
+        // the previous node on level 0, or null for the first node
+        private SkipNode backward;
+        // the history of the level 0 pointer for snapshots, newest first, or
+        // null while forward[0] has not changed since the oldest open one
+        private volatile Link link0;
 
         /**
          * Initializes the fields with the required KVPair and the number of
@@ -304,9 +2428,10 @@ public class SkipList<K extends Comparable<? super K>, V>
         @SuppressWarnings("unchecked")
         public SkipNode(KVPair<K, V> tempPair, int level) {
             pair = tempPair;
-            forward = (SkipNode[])Array.newInstance(SkipList.SkipNode.class,
-                level + 1);
+            forward = (SkipNode[])Array.newInstance(SkipNode.class, level + 1);
+            span = new int[level + 1];
             this.level = level;
+            baseLevel = level;
         }
 
 
@@ -322,6 +2447,121 @@ public class SkipList<K extends Comparable<? super K>, V>
     }
 
 
+    /**
+     * This class is one entry in the history of the level 0 pointer of a
+     * node: the successor the node had from a version on.
+     */
+    private class Link {
+        // the next node on level 0
+        private SkipNode next;
+        // the version from which next was the successor
+        private long stamp;
+        // the link that was replaced by this one, or null
+        private Link older;
+
+        /**
+         * Creates a link.
+         * 
+         * @param next
+         *            the next node on level 0
+         * @param stamp
+         *            the version from which next is the successor
+         * @param older
+         *            the link replaced by this one, or null
+         */
+        public Link(SkipNode next, long stamp, Link older) {
+            this.next = next;
+            this.stamp = stamp;
+            this.older = older;
+        }
+    }
+
+
+    /**
+     * This class appends nodes to the end of an empty SkipList. It keeps the
+     * last node of every level and its position, so each node is linked in
+     * without searching and the spans are known right away.
+     */
+    private class Appender {
+        // the last node on every level
+        private SkipNode[] last;
+        // the position of the last node on every level
+        private int[] lastRank;
+
+        /**
+         * Creates an appender for this list, which must be empty.
+         */
+        @SuppressWarnings("unchecked")
+        public Appender() {
+            last = (SkipNode[])Array.newInstance(SkipNode.class, head.level
+                + 1);
+            lastRank = new int[head.level + 1];
+            for (int i = 0; i <= head.level; i++) {
+                last[i] = head;
+            }
+        }
+
+
+        /**
+         * Links the node in after the current last node of every one of its
+         * levels, raising head first if the node is taller.
+         * 
+         * @param node
+         *            the node to be appended, with the largest key so far
+         */
+        @SuppressWarnings("unchecked")
+        public void append(SkipNode node) {
+            if (node.level > head.level) {
+                SkipNode oldHead = head;
+                int oldLevel = head.level;
+                adjustHead(node.level);
+                SkipNode[] newLast = (SkipNode[])Array.newInstance(
+                    SkipNode.class, head.level + 1);
+                int[] newRank = new int[head.level + 1];
+                for (int i = 0; i <= head.level; i++) {
+                    newLast[i] = (i <= oldLevel && last[i] != oldHead)
+                        ? last[i]
+                        : head;
+                    newRank[i] = (i <= oldLevel) ? lastRank[i] : 0;
+                }
+                last = newLast;
+                lastRank = newRank;
+            }
+            size++;
+            node.backward = (last[0] == head) ? null : last[0];
+            tail = node;
+            beginWrite();
+            setNext0(node, null);
+            setNext0(last[0], node);
+            for (int i = 0; i <= node.level; i++) {
+                if (i > 0) {
+                    last[i].forward[i] = node;
+                    node.forward[i] = null;
+                }
+                last[i].span[i] = size - lastRank[i];
+                last[i] = node;
+                lastRank[i] = size;
+            }
+            countTower(node.level, 1);
+            indexValue(node);
+            if (keyIndex != null && !indexesStale && startsKey(node)) {
+                keyIndex.put(node.element().getKey(), node);
+            }
+        }
+
+
+        /**
+         * Sets the spans of the last node of every level, whose pointers now
+         * lead past the end of the list.
+         */
+        public void finish() {
+            for (int i = 0; i <= head.level; i++) {
+                last[i].span[i] = size - lastRank[i];
+            }
+        }
+    }
+
+
     private class SkipListIterator implements Iterator<KVPair<K, V>> {
         private SkipNode current;
 
@@ -345,9 +2585,321 @@ public class SkipList<K extends Comparable<? super K>, V>
 
     }
 
+    private class DescendingIterator implements Iterator<KVPair<K, V>> {
+        private SkipNode upcoming;
+
+        public DescendingIterator(SkipNode start) {
+            upcoming = (start == head) ? null : start;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return upcoming != null;
+        }
+
+
+        @Override
+        public KVPair<K, V> next() {
+            if (upcoming == null) {
+                throw new NoSuchElementException();
+            }
+            KVPair<K, V> elem = upcoming.element();
+            upcoming = upcoming.backward;
+            return elem;
+        }
+
+    }
+
+    /**
+     * This class splits the SkipList by position for parallel streams. It
+     * covers the positions from to to - 1 and walks them on level 0 from the
+     * node before the first one. A split descends the levels through the
+     * spans to the node in the middle of the range, so both halves are equal
+     * to within one pair and splitting costs O(log n). The list must not be
+     * modified while it is being traversed.
+     */
+    private class SkipListSpliterator implements Spliterator<KVPair<K, V>> {
+        // the node before the next one to return
+        private SkipNode before;
+        // the position of the next node to return, head being position 0
+        private int from;
+        // the position after the last node to return
+        private final int to;
+
+        /**
+         * Creates a spliterator over a range of positions.
+         *
+         * @param before
+         *            the node at position from - 1
+         * @param from
+         *            the position of the first node
+         * @param to
+         *            the position after the last node
+         */
+        public SkipListSpliterator(SkipNode before, int from, int to) {
+            this.before = before;
+            this.from = from;
+            this.to = to;
+        }
+
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair<K, V>> action) {
+            if (from >= to) {
+                return false;
+            }
+            before = before.forward[0];
+            from++;
+            action.accept(before.element());
+            return true;
+        }
+
+
+        @Override
+        public void forEachRemaining(Consumer<? super KVPair<K, V>> action) {
+            SkipNode curr = before;
+            for (int position = from; position < to; position++) {
+                curr = curr.forward[0];
+                action.accept(curr.element());
+            }
+            before = curr;
+            from = to;
+        }
+
+
+        @Override
+        public Spliterator<KVPair<K, V>> trySplit() {
+            int mid = (from + to) >>> 1;
+            if (mid <= from) {
+                return null;
+            }
+            SkipListSpliterator prefix = new SkipListSpliterator(before, from,
+                mid);
+            before = nodeAt(mid - 1);
+            from = mid;
+            return prefix;
+        }
+
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+
+        @Override
+        public Comparator<? super KVPair<K, V>> getComparator() {
+            return (a, b) -> a.getKey().compareTo(b.getKey());
+        }
+    }
+
+    /**
+     * This class is a point-in-time view of the SkipList returned by
+     * snapshot. It walks level 0 through the histories of the nodes, reading
+     * for every node the link of the version the snapshot was taken at.
+     */
+    public class Snapshot implements Iterable<KVPair<K, V>>, AutoCloseable {
+        // the head of the list when the snapshot was taken
+        private final SkipNode start;
+        // the version of the list when the snapshot was taken
+        private final long stamp;
+        // the size of the list when the snapshot was taken
+        private final int count;
+        // true once the snapshot is closed
+        private boolean closed;
+
+        /**
+         * Creates a snapshot, which must already be registered as open.
+         * 
+         * @param start
+         *            the current head
+         * @param stamp
+         *            the current version
+         * @param count
+         *            the current size
+         */
+        private Snapshot(SkipNode start, long stamp, int count) {
+            this.start = start;
+            this.stamp = stamp;
+            this.count = count;
+        }
+
+
+        /**
+         * @return the number of KVPairs in the snapshot
+         */
+        public int size() {
+            return count;
+        }
+
+
+        /**
+         * @return an iterator over the KVPairs of the snapshot in list order
+         * @throws IllegalStateException
+         *             if the snapshot is closed
+         */
+        @Override
+        public Iterator<KVPair<K, V>> iterator() {
+            synchronized (openSnapshots) {
+                if (closed) {
+                    throw new IllegalStateException("Snapshot is closed");
+                }
+            }
+            return new Iterator<KVPair<K, V>>() {
+                private SkipNode current = start;
+
+                @Override
+                public boolean hasNext() {
+                    return nextAt(current, stamp) != null;
+                }
+
+
+                @Override
+                public KVPair<K, V> next() {
+                    SkipNode upcoming = nextAt(current, stamp);
+                    if (upcoming == null) {
+                        throw new NoSuchElementException();
+                    }
+                    current = upcoming;
+                    return current.element();
+                }
+            };
+        }
+
+
+        /**
+         * Closes the snapshot, so the links kept only for it can be dropped.
+         * Closing it again has no effect.
+         */
+        @Override
+        public void close() {
+            synchronized (openSnapshots) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (openSnapshots.merge(stamp, -1, Integer::sum) == 0) {
+                    openSnapshots.remove(stamp);
+                }
+                oldestSnapshot = openSnapshots.isEmpty()
+                    ? NO_SNAPSHOT
+                    : openSnapshots.firstKey();
+            }
+        }
+    }
+
+    /**
+     * This class implements a cursor that walks level 0 of the SkipList from
+     * a position found by descending the levels once, optionally stopping at
+     * an upper bound. It can be moved to any key with seek. Like the iterator
+     * it does not copy the pairs; after the list is modified the cursor
+     * should be re-positioned with seek before it is used again.
+     */
+    public class Cursor implements Iterator<KVPair<K, V>> {
+        // the node before the next one to return
+        private SkipNode current;
+        // the upper bound, or null if there is none
+        private K toKey;
+        // true if pairs with key toKey are included
+        private boolean toInclusive;
+
+        /**
+         * Creates a cursor positioned before the first pair of the list.
+         *
+         * @param toKey
+         *            the upper bound, or null for no upper bound
+         * @param toInclusive
+         *            true if pairs with key toKey are included
+         */
+        private Cursor(K toKey, boolean toInclusive) {
+            current = head;
+            this.toKey = toKey;
+            this.toInclusive = toInclusive;
+        }
+
+
+        /**
+         * Moves the cursor before the first pair whose key is greater than or
+         * equal to the given key. The upper bound stays the same.
+         *
+         * @param key
+         *            the key to resume from
+         */
+        public void seek(K key) {
+            current = lowerNode(key, false);
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            SkipNode upcoming = current.forward[0];
+            return upcoming != null && (toKey == null || isBefore(upcoming
+                .element().getKey(), toKey, toInclusive));
+        }
+
+
+        @Override
+        public KVPair<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = current.forward[0];
+            return current.element();
+        }
+    }
+
     @Override
     public Iterator<KVPair<K, V>> iterator() {
         return new SkipListIterator();
     }
 
+
+    /**
+     * Returns a spliterator that splits the list into halves by position,
+     * so parallel streams over the list balance their work.
+     *
+     * @return the spliterator
+     */
+    @Override
+    public Spliterator<KVPair<K, V>> spliterator() {
+        return new SkipListSpliterator(head, 1, size + 1);
+    }
+
+
+    /**
+     * Returns an iterator over the KVPairs in the reverse of list order. It
+     * follows the backward links from the tail, so it needs no search.
+     *
+     * @return the iterator
+     */
+    public Iterator<KVPair<K, V>> descendingIterator() {
+        return new DescendingIterator(tail);
+    }
+
+
+    /**
+     * Returns an iterator over the KVPairs in the reverse of list order,
+     * starting from the last pair whose key is less than the given key, or
+     * less than or equal to it if inclusive is set. The start is found with
+     * one descent of the levels.
+     *
+     * @param fromKey
+     *            the key to start from
+     * @param inclusive
+     *            true if pairs with key fromKey are included
+     * @return the iterator
+     */
+    public Iterator<KVPair<K, V>> descendingIterator(
+        K fromKey,
+        boolean inclusive) {
+        return new DescendingIterator(lowerNode(fromKey, inclusive));
+    }
+
 }
@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * This interface describes the operations the Database needs from a skip list
+ * so that different skip list engines can be plugged in behind it. Every
+ * implementation keeps its KVPairs sorted by key and allows duplicate keys,
+ * with the most recently inserted duplicate coming first. Search, remove and
+ * the iterator hand out the KVPair objects that were inserted, unless an
+ * implementation documents that it hands out copies.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <K>
+ *            Key
+ * @param <V>
+ *            Value
+ */
+public interface SkipListADT<K extends Comparable<? super K>, V>
+    extends Iterable<KVPair<K, V>> {
+
+    /**
+     * Inserts the KVPair at its appropriate spot as designated by the
+     * ordering of its key.
+     *
+     * @param it
+     *            the KVPair to be inserted
+     */
+    public void insert(KVPair<K, V> it);
+
+
+    /**
+     * Inserts a batch of KVPairs. The result is the same as inserting them one
+     * by one in the order of the batch, which is what this default does;
+     * implementations may override it with something faster.
+     *
+     * @param batch
+     *            the KVPairs to be inserted
+     */
+    public default void insertAll(Collection<KVPair<K, V>> batch) {
+        for (KVPair<K, V> it : batch) {
+            insert(it);
+        }
+    }
+
+
+    /**
+     * Searches for all KVPairs with the given key.
+     *
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key
+     */
+    public ArrayList<KVPair<K, V>> search(K key);
+
+
+    /**
+     * Searches for many keys at once. This default searches for them one at
+     * a time; implementations may override it with something faster.
+     *
+     * @param keys
+     *            the keys to be searched for
+     * @return one ArrayList of matching KVPairs per key, in the order of keys
+     */
+    public default ArrayList<ArrayList<KVPair<K, V>>> searchAll(List<K> keys) {
+        ArrayList<ArrayList<KVPair<K, V>>> output = new ArrayList<>();
+        for (K key : keys) {
+            output.add(search(key));
+        }
+        return output;
+    }
+
+
+    /**
+     * Removes the first KVPair with the given key.
+     *
+     * @param key
+     *            of the KVPair to be removed
+     * @return the removed pair if the key was present and null if not
+     */
+    public KVPair<K, V> remove(K key);
+
+
+    /**
+     * Removes a KVPair with the specified value.
+     *
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair if the value was present and null if not
+     */
+    public KVPair<K, V> removeByValue(V val);
+
+
+    /**
+     * Removes every KVPair whose value passes a filter. This default collects
+     * the matching pairs and removes them one at a time by value, which
+     * removes the right pairs because every pair with an equal value passes
+     * the filter too; implementations may override it with a single pass.
+     *
+     * @param filter
+     *            true for the values to be removed
+     * @return the removed pairs in list order
+     */
+    public default ArrayList<KVPair<K, V>> removeValuesIf(
+        Predicate<? super V> filter) {
+        ArrayList<KVPair<K, V>> matches = new ArrayList<>();
+        for (KVPair<K, V> pair : this) {
+            if (filter.test(pair.getValue())) {
+                matches.add(pair);
+            }
+        }
+        ArrayList<KVPair<K, V>> removed = new ArrayList<>();
+        for (KVPair<K, V> pair : matches) {
+            removed.add(removeByValue(pair.getValue()));
+        }
+        return removed;
+    }
+
+
+    /**
+     * @return the number of KVPairs stored
+     */
+    public int size();
+
+
+    /**
+     * Prints out the skip list in a human readable format to the console.
+     */
+    public void dump();
+}
@@ -0,0 +1,155 @@
+import java.util.Iterator;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class holds the tests that every SkipListADT engine has to pass. The
+ * test class of an engine extends it and supplies an empty list; the shared
+ * tests then compare the engine with SkipList through a long random mix of
+ * operations and check its dump output.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public abstract class SkipListADTTestCase extends TestCase {
+
+    /**
+     * @return a new empty list of the engine under test
+     */
+    protected abstract SkipListADT<String, Rectangle> createList();
+
+
+    /**
+     * Picks the key of the next random operation. This default picks among
+     * 40 short keys; engine tests override it to aim at their own corner
+     * cases.
+     *
+     * @param random
+     *            the source of the random operations
+     * @return the key
+     */
+    protected String randomKey(Random random) {
+        return "k" + random.nextInt(40);
+    }
+
+
+    /**
+     * @return true if the engine hands out the KVPairs that were inserted,
+     *         false if it hands out copies
+     */
+    protected boolean keepsPairs() {
+        return true;
+    }
+
+
+    /**
+     * Tests that a long random mix of operations gives the same results and
+     * contents as SkipList
+     */
+    public void testMatchesSkipList() {
+        assertMatchesSkipList(createList(), new Random(13), 3000);
+    }
+
+
+    /**
+     * Tests the dump output of the list
+     */
+    public void testDump() {
+        SkipListADT<String, Rectangle> list = createList();
+        list.insert(new KVPair<>("A", new Rectangle(1, 2, 3, 4)));
+        list.insert(new KVPair<>("A", new Rectangle(5, 6, 7, 8)));
+        list.dump();
+        String output = systemOut().getHistory();
+        assertTrue(output.contains("SkipList dump:"));
+        assertTrue(output.indexOf("value A 5, 6, 7, 8") < output.indexOf(
+            "value A 1, 2, 3, 4"));
+        assertTrue(output.contains("SkipList size is: 2"));
+    }
+
+
+    /**
+     * Runs a random mix of inserts, removes by key and removes by value on
+     * the list and on a SkipList, and checks that every remove takes out the
+     * same pair, that searches agree along the way and that both end with
+     * the same contents.
+     *
+     * @param list
+     *            the list under test
+     * @param random
+     *            the source of the operations
+     * @param operations
+     *            the number of operations
+     */
+    protected void assertMatchesSkipList(SkipListADT<String, Rectangle> list,
+        Random random, int operations) {
+        SkipList<String, Rectangle> expected = new SkipList<>();
+        for (int i = 0; i < operations; i++) {
+            String key = randomKey(random);
+            Rectangle rect = new Rectangle(random.nextInt(50), 0, 1, 1);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertSamePair(expected.remove(key), list.remove(key));
+                    break;
+                case 1:
+                    assertSamePair(expected.removeByValue(rect), list
+                        .removeByValue(rect));
+                    break;
+                default:
+                    KVPair<String, Rectangle> pair = new KVPair<>(key, rect);
+                    expected.insert(pair);
+                    list.insert(pair);
+                    break;
+            }
+            if (i % 100 == 0) {
+                assertSamePairs(expected.search(key), list.search(key));
+            }
+        }
+        assertNull(list.remove(null));
+        assertNull(list.removeByValue(null));
+        assertEquals(expected.size(), list.size());
+        assertSamePairs(expected, list);
+    }
+
+
+    /**
+     * Checks that a pair handed out by the list is the expected one: the
+     * same object if the engine keeps the inserted pairs, otherwise a pair
+     * with an equal key and value.
+     *
+     * @param expected
+     *            the pair SkipList handed out, or null
+     * @param actual
+     *            the pair the list under test handed out, or null
+     */
+    protected void assertSamePair(KVPair<String, Rectangle> expected,
+        KVPair<String, Rectangle> actual) {
+        if (expected == null || keepsPairs()) {
+            assertSame(expected, actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getValue(), actual.getValue());
+    }
+
+
+    /**
+     * Checks two sequences of pairs element by element with assertSamePair.
+     *
+     * @param expected
+     *            the pairs SkipList handed out
+     * @param actual
+     *            the pairs the list under test handed out
+     */
+    protected void assertSamePairs(Iterable<KVPair<String, Rectangle>> expected,
+        Iterable<KVPair<String, Rectangle>> actual) {
+        Iterator<KVPair<String, Rectangle>> iter = actual.iterator();
+        for (KVPair<String, Rectangle> pair : expected) {
+            assertTrue(iter.hasNext());
+            assertSamePair(pair, iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+}
@@ -0,0 +1,879 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * This class adapts a SkipList to java.util.NavigableMap, so the list can be
+ * handed to code written against the collections framework without copying
+ * it into a TreeMap. The map and all of its sub-map, head-map, tail-map and
+ * descending views are live: they hold only their key bounds and a direction
+ * and read and write the list itself. Iterating a view seeks to its first key
+ * with one descent of the levels.
+ *
+ * The SkipList may hold several pairs with one key. The map shows each key
+ * once, mapped to the value of its first pair in list order, which is the one
+ * search returns first. put replaces only that first pair, and remove takes
+ * every pair with the key out of the list.
+ *
+ * size walks the view, as it does for the sub-maps of TreeMap. Like the
+ * cursors of SkipList, iterators must not be used after the list is modified
+ * other than through the iterator itself.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <K>
+ *            Key
+ * @param <V>
+ *            Value
+ */
+public class SkipListMap<K extends Comparable<? super K>, V>
+    extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    // the list holding the pairs
+    private final SkipList<K, V> list;
+    // the lowest key of the view, or null if there is no lower bound
+    private final K lo;
+    // true if lo itself is in the view
+    private final boolean loInclusive;
+    // the highest key of the view, or null if there is no upper bound
+    private final K hi;
+    // true if hi itself is in the view
+    private final boolean hiInclusive;
+    // true if the view runs from the highest key to the lowest
+    private final boolean descending;
+
+    /**
+     * Creates a map over the whole list.
+     *
+     * @param list
+     *            the list to adapt
+     */
+    public SkipListMap(SkipList<K, V> list) {
+        this(list, null, false, null, false, false);
+    }
+
+
+    /**
+     * Creates a view of the list between two bounds.
+     *
+     * @param list
+     *            the list to adapt
+     * @param lo
+     *            the lowest key, or null for no lower bound
+     * @param loInclusive
+     *            true if lo itself is in the view
+     * @param hi
+     *            the highest key, or null for no upper bound
+     * @param hiInclusive
+     *            true if hi itself is in the view
+     * @param descending
+     *            true if the view runs from the highest key to the lowest
+     */
+    private SkipListMap(
+        SkipList<K, V> list,
+        K lo,
+        boolean loInclusive,
+        K hi,
+        boolean hiInclusive,
+        boolean descending) {
+        this.list = list;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+
+    /**
+     * @param key
+     *            the key to check
+     * @return true if the key is below the lower bound
+     */
+    private boolean tooLow(K key) {
+        if (lo == null) {
+            return false;
+        }
+        int cmp = key.compareTo(lo);
+        return cmp < 0 || (cmp == 0 && !loInclusive);
+    }
+
+
+    /**
+     * @param key
+     *            the key to check
+     * @return true if the key is above the upper bound
+     */
+    private boolean tooHigh(K key) {
+        if (hi == null) {
+            return false;
+        }
+        int cmp = key.compareTo(hi);
+        return cmp > 0 || (cmp == 0 && !hiInclusive);
+    }
+
+
+    /**
+     * @param key
+     *            the key to check
+     * @return true if the key lies between the bounds of the view
+     */
+    private boolean inRange(K key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+
+    /**
+     * Checks that a bound for a new view does not reach outside this view.
+     *
+     * @param key
+     *            the bound
+     * @param inclusive
+     *            true if the bound itself would be in the new view
+     * @throws IllegalArgumentException
+     *             if the bound reaches outside this view
+     */
+    private void checkBound(K key, boolean inclusive) {
+        boolean outside;
+        if (inclusive) {
+            outside = !inRange(key);
+        }
+        else {
+            outside = (lo != null && key.compareTo(lo) < 0) || (hi != null
+                && key.compareTo(hi) > 0);
+        }
+        if (outside) {
+            throw new IllegalArgumentException("key out of range: " + key);
+        }
+    }
+
+    // The abs methods navigate in ascending key order regardless of the
+    // direction of the view, and return null for keys outside the bounds.
+
+    /**
+     * @return the first pair of the lowest key in the view, or null
+     */
+    private KVPair<K, V> absLowest() {
+        KVPair<K, V> pair;
+        if (lo == null) {
+            pair = list.firstEntry();
+        }
+        else {
+            pair = loInclusive ? list.ceiling(lo) : list.higher(lo);
+        }
+        return (pair == null || tooHigh(pair.getKey())) ? null : pair;
+    }
+
+
+    /**
+     * @return the first pair of the highest key in the view, or null
+     */
+    private KVPair<K, V> absHighest() {
+        KVPair<K, V> pair;
+        if (hi == null) {
+            pair = list.lastEntry();
+        }
+        else {
+            pair = hiInclusive ? list.floor(hi) : list.lower(hi);
+        }
+        return (pair == null || tooLow(pair.getKey())) ? null : pair;
+    }
+
+
+    /**
+     * @param key
+     *            the key to compare against
+     * @return the first pair of the least key >= key in the view, or null
+     */
+    private KVPair<K, V> absCeiling(K key) {
+        if (tooLow(key)) {
+            return absLowest();
+        }
+        KVPair<K, V> pair = list.ceiling(key);
+        return (pair == null || tooHigh(pair.getKey())) ? null : pair;
+    }
+
+
+    /**
+     * @param key
+     *            the key to compare against
+     * @return the first pair of the least key > key in the view, or null
+     */
+    private KVPair<K, V> absHigher(K key) {
+        if (tooLow(key)) {
+            return absLowest();
+        }
+        KVPair<K, V> pair = list.higher(key);
+        return (pair == null || tooHigh(pair.getKey())) ? null : pair;
+    }
+
+
+    /**
+     * @param key
+     *            the key to compare against
+     * @return the first pair of the greatest key <= key in the view, or
+     *         null
+     */
+    private KVPair<K, V> absFloor(K key) {
+        if (tooHigh(key)) {
+            return absHighest();
+        }
+        KVPair<K, V> pair = list.floor(key);
+        return (pair == null || tooLow(pair.getKey())) ? null : pair;
+    }
+
+
+    /**
+     * @param key
+     *            the key to compare against
+     * @return the first pair of the greatest key < key in the view, or
+     *         null
+     */
+    private KVPair<K, V> absLower(K key) {
+        if (tooHigh(key)) {
+            return absHighest();
+        }
+        KVPair<K, V> pair = list.lower(key);
+        return (pair == null || tooLow(pair.getKey())) ? null : pair;
+    }
+
+
+    /**
+     * @param pair
+     *            a pair of the list, or null
+     * @return an immutable map entry for the pair, or null
+     */
+    private Entry<K, V> entry(KVPair<K, V> pair) {
+        return (pair == null)
+            ? null
+            : new SimpleImmutableEntry<>(pair.getKey(), pair.getValue());
+    }
+
+
+    /**
+     * @param pair
+     *            a pair of the list, or null
+     * @return the key of the pair, or null
+     */
+    private K keyOf(KVPair<K, V> pair) {
+        return (pair == null) ? null : pair.getKey();
+    }
+
+
+    /**
+     * @param pair
+     *            a pair of the list, or null
+     * @return the key of the pair
+     * @throws NoSuchElementException
+     *             if pair is null
+     */
+    private K keyOrThrow(KVPair<K, V> pair) {
+        if (pair == null) {
+            throw new NoSuchElementException();
+        }
+        return pair.getKey();
+    }
+
+
+    /**
+     * Finds the first pair with exactly the given key inside the view.
+     *
+     * @param key
+     *            the key, which must be a K
+     * @return the pair, or null if the view has no such key
+     */
+    @SuppressWarnings("unchecked")
+    private KVPair<K, V> exact(Object key) {
+        K k = (K)key;
+        if (!inRange(k)) {
+            return null;
+        }
+        KVPair<K, V> pair = list.ceiling(k);
+        return (pair != null && pair.getKey().compareTo(k) == 0) ? pair : null;
+    }
+
+
+    @Override
+    public V get(Object key) {
+        KVPair<K, V> pair = exact(key);
+        return (pair == null) ? null : pair.getValue();
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return exact(key) != null;
+    }
+
+
+    /**
+     * Maps the key to the value by replacing the first pair with the key, or
+     * inserting a new pair if there is none.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the previous value of the first pair, or null if there was none
+     * @throws IllegalArgumentException
+     *             if the key lies outside the view
+     */
+    @Override
+    public V put(K key, V value) {
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("key out of range: " + key);
+        }
+        KVPair<K, V> previous = list.remove(key);
+        list.insert(new KVPair<>(key, value));
+        return (previous == null) ? null : previous.getValue();
+    }
+
+
+    /**
+     * Removes every pair with the key.
+     *
+     * @param key
+     *            the key
+     * @return the value of the first removed pair, or null if there was none
+     */
+    @Override
+    public V remove(Object key) {
+        KVPair<K, V> first = exact(key);
+        if (first == null) {
+            return null;
+        }
+        while (list.remove(first.getKey()) != null) {
+            // keep removing the duplicates
+        }
+        return first.getValue();
+    }
+
+
+    @Override
+    public int size() {
+        int count = 0;
+        for (Iterator<Entry<K, V>> iter = new EntryIterator(); iter
+            .hasNext(); iter.next()) {
+            count++;
+        }
+        return count;
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return absLowest() == null;
+    }
+
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+
+            @Override
+            public int size() {
+                return SkipListMap.this.size();
+            }
+
+
+            @Override
+            public boolean isEmpty() {
+                return SkipListMap.this.isEmpty();
+            }
+        };
+    }
+
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(descending ? absHighest() : absLowest());
+    }
+
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(descending ? absLowest() : absHighest());
+    }
+
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return entry(descending ? absHighest() : absLowest());
+    }
+
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return entry(descending ? absLowest() : absHighest());
+    }
+
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        Entry<K, V> first = firstEntry();
+        if (first != null) {
+            remove(first.getKey());
+        }
+        return first;
+    }
+
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        Entry<K, V> last = lastEntry();
+        if (last != null) {
+            remove(last.getKey());
+        }
+        return last;
+    }
+
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return entry(descending ? absHigher(key) : absLower(key));
+    }
+
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOf(descending ? absHigher(key) : absLower(key));
+    }
+
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return entry(descending ? absCeiling(key) : absFloor(key));
+    }
+
+
+    @Override
+    public K floorKey(K key) {
+        return keyOf(descending ? absCeiling(key) : absFloor(key));
+    }
+
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return entry(descending ? absFloor(key) : absCeiling(key));
+    }
+
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOf(descending ? absFloor(key) : absCeiling(key));
+    }
+
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return entry(descending ? absLower(key) : absHigher(key));
+    }
+
+
+    @Override
+    public K higherKey(K key) {
+        return keyOf(descending ? absLower(key) : absHigher(key));
+    }
+
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SkipListMap<>(list, lo, loInclusive, hi, hiInclusive,
+            !descending);
+    }
+
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet();
+    }
+
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+
+    /**
+     * Creates a narrower view in ascending key terms. A side that is not
+     * given keeps the bound of this view.
+     *
+     * @param fromKey
+     *            the new lower bound, ignored if fromStart is set
+     * @param fromInclusive
+     *            true if fromKey is in the new view
+     * @param fromStart
+     *            true to keep the lower bound of this view
+     * @param toKey
+     *            the new upper bound, ignored if toEnd is set
+     * @param toInclusive
+     *            true if toKey is in the new view
+     * @param toEnd
+     *            true to keep the upper bound of this view
+     * @return the view
+     * @throws IllegalArgumentException
+     *             if a bound reaches outside this view or the lower bound is
+     *             above the upper bound
+     */
+    private NavigableMap<K, V> view(
+        K fromKey,
+        boolean fromInclusive,
+        boolean fromStart,
+        K toKey,
+        boolean toInclusive,
+        boolean toEnd) {
+        if (fromStart) {
+            fromKey = lo;
+            fromInclusive = loInclusive;
+        }
+        else {
+            checkBound(fromKey, fromInclusive);
+        }
+        if (toEnd) {
+            toKey = hi;
+            toInclusive = hiInclusive;
+        }
+        else {
+            checkBound(toKey, toInclusive);
+        }
+        if (fromKey != null && toKey != null && fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new SkipListMap<>(list, fromKey, fromInclusive, toKey,
+            toInclusive, descending);
+    }
+
+
+    @Override
+    public NavigableMap<K, V> subMap(
+        K fromKey,
+        boolean fromInclusive,
+        K toKey,
+        boolean toInclusive) {
+        if (descending) {
+            return view(toKey, toInclusive, false, fromKey, fromInclusive,
+                false);
+        }
+        return view(fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        if (descending) {
+            return view(toKey, inclusive, false, null, false, true);
+        }
+        return view(null, false, true, toKey, inclusive, false);
+    }
+
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        if (descending) {
+            return view(null, false, true, fromKey, inclusive, false);
+        }
+        return view(fromKey, inclusive, false, null, false, true);
+    }
+
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+
+    /**
+     * This class iterates the entries of the view. It reads the pairs of the
+     * list from the start of the view and turns each run of pairs with equal
+     * keys into one entry holding the value of the first pair of the run.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        // the pairs of the list in the direction of the view
+        private final Iterator<KVPair<K, V>> source;
+        // the next pair of the source inside the view, or null at the end
+        private KVPair<K, V> pending;
+        // the key of the last entry returned, or null if it may not be
+        // removed
+        private K lastKey;
+
+        /**
+         * Creates an iterator positioned before the first entry of the view.
+         */
+        public EntryIterator() {
+            if (!descending) {
+                source = list.range(lo, loInclusive, hi, hiInclusive);
+            }
+            else if (hi == null) {
+                source = list.descendingIterator();
+            }
+            else {
+                source = list.descendingIterator(hi, hiInclusive);
+            }
+            pending = pull();
+        }
+
+
+        /**
+         * @return the next pair of the source if it lies inside the view, or
+         *         null
+         */
+        private KVPair<K, V> pull() {
+            if (!source.hasNext()) {
+                return null;
+            }
+            KVPair<K, V> pair = source.next();
+            return (descending && tooLow(pair.getKey())) ? null : pair;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return pending != null;
+        }
+
+
+        @Override
+        public Entry<K, V> next() {
+            if (pending == null) {
+                throw new NoSuchElementException();
+            }
+            KVPair<K, V> first = pending;
+            K key = first.getKey();
+            pending = pull();
+            while (pending != null && pending.getKey().compareTo(key) == 0) {
+                // going backwards, the first pair of the run comes last
+                if (descending) {
+                    first = pending;
+                }
+                pending = pull();
+            }
+            lastKey = key;
+            return entry(first);
+        }
+
+
+        /**
+         * Removes every pair with the key of the last entry returned. The
+         * source has already moved past them, so it is not disturbed.
+         */
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            while (list.remove(lastKey) != null) {
+                // keep removing the duplicates
+            }
+            lastKey = null;
+        }
+    }
+
+
+    /**
+     * This class is the key set of a view, reading and writing through it.
+     */
+    private class KeySet extends AbstractSet<K> implements NavigableSet<K> {
+
+        @Override
+        public Iterator<K> iterator() {
+            Iterator<Entry<K, V>> entries = new EntryIterator();
+            return new Iterator<K>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+
+                @Override
+                public K next() {
+                    return entries.next().getKey();
+                }
+
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+
+        @Override
+        public int size() {
+            return SkipListMap.this.size();
+        }
+
+
+        @Override
+        public boolean isEmpty() {
+            return SkipListMap.this.isEmpty();
+        }
+
+
+        @Override
+        public boolean contains(Object key) {
+            return containsKey(key);
+        }
+
+
+        @Override
+        public boolean remove(Object key) {
+            boolean present = containsKey(key);
+            SkipListMap.this.remove(key);
+            return present;
+        }
+
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return SkipListMap.this.comparator();
+        }
+
+
+        @Override
+        public K first() {
+            return firstKey();
+        }
+
+
+        @Override
+        public K last() {
+            return lastKey();
+        }
+
+
+        @Override
+        public K lower(K key) {
+            return lowerKey(key);
+        }
+
+
+        @Override
+        public K floor(K key) {
+            return floorKey(key);
+        }
+
+
+        @Override
+        public K ceiling(K key) {
+            return ceilingKey(key);
+        }
+
+
+        @Override
+        public K higher(K key) {
+            return higherKey(key);
+        }
+
+
+        @Override
+        public K pollFirst() {
+            return keyOf(pollFirstEntry());
+        }
+
+
+        @Override
+        public K pollLast() {
+            return keyOf(pollLastEntry());
+        }
+
+
+        /**
+         * @param entry
+         *            a map entry, or null
+         * @return the key of the entry, or null
+         */
+        private K keyOf(Entry<K, V> entry) {
+            return (entry == null) ? null : entry.getKey();
+        }
+
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return descendingMap().navigableKeySet();
+        }
+
+
+        @Override
+        public NavigableSet<K> subSet(
+            K fromElement,
+            boolean fromInclusive,
+            K toElement,
+            boolean toInclusive) {
+            return subMap(fromElement, fromInclusive, toElement, toInclusive)
+                .navigableKeySet();
+        }
+
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return headMap(toElement, inclusive).navigableKeySet();
+        }
+
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return tailMap(fromElement, inclusive).navigableKeySet();
+        }
+
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+
+        @Override
+        public NavigableSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
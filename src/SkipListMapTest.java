@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import student.TestCase;
+
+/**
+ * This class tests the methods of SkipListMap class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class SkipListMapTest extends TestCase {
+    /**
+     * The skip list behind the map.
+     */
+    private SkipList<String, Integer> sl;
+    /**
+     * The map instance used for testing.
+     */
+    private SkipListMap<String, Integer> map;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        sl = new SkipList<String, Integer>();
+        map = new SkipListMap<String, Integer>(sl);
+    }
+
+
+    /**
+     * Tests that duplicate keys show up once with the value of their first
+     * pair, and that put and remove write through to the list
+     */
+    public void testDuplicatesAndWriteThrough() {
+        sl.insert(new KVPair<>("b", 1));
+        sl.insert(new KVPair<>("a", 2));
+        sl.insert(new KVPair<>("b", 3));
+        assertEquals(2, map.size());
+        assertEquals(3, (int)map.get("b"));
+        assertEquals("{a=2, b=3}", map.toString());
+        assertEquals("{b=3, a=2}", map.descendingMap().toString());
+
+        assertEquals(3, (int)map.put("b", 4));
+        assertEquals(4, (int)map.get("b"));
+        assertEquals(3, sl.size());
+        assertNull(map.put("c", 5));
+        assertEquals(5, (int)sl.search("c").get(0).getValue());
+
+        assertEquals(4, (int)map.remove("b"));
+        assertTrue(sl.search("b").isEmpty());
+        assertNull(map.remove("b"));
+        assertFalse(map.containsKey("b"));
+        assertTrue(map.containsKey("a"));
+        assertEquals(2, sl.size());
+    }
+
+
+    /**
+     * Tests that views are live and reject keys outside their bounds
+     */
+    public void testViewsAreLive() {
+        NavigableMap<String, Integer> sub = map.subMap("b", true, "d",
+            false);
+        assertTrue(sub.isEmpty());
+        sl.insert(new KVPair<>("a", 1));
+        sl.insert(new KVPair<>("c", 2));
+        sl.insert(new KVPair<>("d", 3));
+        assertEquals("{c=2}", sub.toString());
+        sub.put("b", 4);
+        assertEquals(4, (int)map.get("b"));
+        assertEquals("[c, b]", sub.descendingKeySet().toString());
+
+        Exception thrown = null;
+        try {
+            sub.put("d", 5);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            sub.subMap("a", "c");
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            map.subMap("c", "b");
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            sub.firstEntry();
+            map.headMap("a").firstKey();
+        }
+        catch (NoSuchElementException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+
+        sub.clear();
+        assertEquals("{a=1, d=3}", map.toString());
+        assertEquals(2, sl.size());
+    }
+
+
+    /**
+     * Tests a long random mix of updates and queries on the map and its
+     * views against TreeMap
+     */
+    public void testMatchesTreeMap() {
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        Random random = new Random(17);
+        for (int i = 0; i < 400; i++) {
+            String key = "k" + random.nextInt(60);
+            if (random.nextInt(4) == 0) {
+                check(expected.remove(key), map.remove(key));
+            }
+            else {
+                check(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.size());
+
+        for (int i = 0; i < 300; i++) {
+            String a = "k" + random.nextInt(70);
+            String b = "k" + random.nextInt(70);
+            if (a.compareTo(b) > 0) {
+                String swap = a;
+                a = b;
+                b = swap;
+            }
+            boolean aInc = random.nextBoolean();
+            boolean bInc = random.nextBoolean();
+            NavigableMap<String, Integer> want;
+            NavigableMap<String, Integer> got;
+            switch (random.nextInt(4)) {
+                case 0:
+                    want = expected.subMap(a, aInc, b, bInc);
+                    got = map.subMap(a, aInc, b, bInc);
+                    break;
+                case 1:
+                    want = expected.headMap(b, bInc);
+                    got = map.headMap(b, bInc);
+                    break;
+                case 2:
+                    want = expected.tailMap(a, aInc);
+                    got = map.tailMap(a, aInc);
+                    break;
+                default:
+                    want = expected.descendingMap().subMap(b, bInc, a, aInc);
+                    got = map.descendingMap().subMap(b, bInc, a, aInc);
+                    break;
+            }
+            if (random.nextBoolean()) {
+                want = want.descendingMap();
+                got = got.descendingMap();
+            }
+            assertViewMatches(want, got, "k" + random.nextInt(70));
+        }
+    }
+
+
+    /**
+     * Checks iteration and navigation of a view against the same TreeMap
+     * view.
+     *
+     * @param want
+     *            the TreeMap view
+     * @param got
+     *            the SkipListMap view
+     * @param probe
+     *            a key to navigate from
+     */
+    private void assertViewMatches(
+        NavigableMap<String, Integer> want,
+        NavigableMap<String, Integer> got,
+        String probe) {
+        assertEquals(new ArrayList<>(want.entrySet()), new ArrayList<>(got
+            .entrySet()));
+        assertEquals(new ArrayList<>(want.descendingKeySet()),
+            new ArrayList<>(got.descendingKeySet()));
+        assertEquals(want.isEmpty(), got.isEmpty());
+        check(want.firstEntry(), got.firstEntry());
+        check(want.lastEntry(), got.lastEntry());
+        check(want.get(probe), got.get(probe));
+        check(want.lowerEntry(probe), got.lowerEntry(probe));
+        check(want.floorKey(probe), got.floorKey(probe));
+        check(want.ceilingEntry(probe), got.ceilingEntry(probe));
+        check(want.higherKey(probe), got.higherKey(probe));
+    }
+
+
+    /**
+     * Checks that two results are equal, either of which may be null.
+     *
+     * @param want
+     *            the expected result
+     * @param got
+     *            the actual result
+     */
+    private void check(Object want, Object got) {
+        assertEquals(String.valueOf(want), String.valueOf(got));
+    }
+
+
+    /**
+     * Tests removing through an iterator and polling the ends
+     */
+    public void testIteratorRemoveAndPoll() {
+        for (int i = 0; i < 10; i++) {
+            sl.insert(new KVPair<>("k" + i, i));
+            sl.insert(new KVPair<>("k" + i, i + 10));
+        }
+        Iterator<Map.Entry<String, Integer>> iter = map.descendingMap()
+            .entrySet().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().getValue() % 2 == 0) {
+                iter.remove();
+            }
+        }
+        assertEquals("[k1, k3, k5, k7, k9]", map.keySet().toString());
+        assertEquals(10, sl.size());
+
+        assertEquals("k1", map.pollFirstEntry().getKey());
+        assertEquals(19, (int)map.pollLastEntry().getValue());
+        assertEquals("k7", map.navigableKeySet().pollLast());
+        assertEquals(4, sl.size());
+        assertEquals("{k3=13, k5=15}", map.toString());
+    }
+
+}
@@ -0,0 +1,282 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects counters for the hot paths of a SkipList: how often
+ * each operation ran and how long it took, how many keys were compared, how
+ * many horizontal steps were taken on every level and how many levels were
+ * descended. The counters are striped LongAdders, so threads recording into
+ * them do not contend. A SkipList only has a SkipListMetrics while metrics
+ * are enabled; see SkipList.setMetricsEnabled.
+ *
+ * More comparisons per operation point at a poor level distribution, while
+ * more nanoseconds per comparison point at an expensive compareTo.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class SkipListMetrics {
+    // the number of levels counted separately; higher ones share the last
+    public static final int TRACKED_LEVELS = 32;
+
+    /**
+     * The operations that are counted.
+     */
+    public enum Operation {
+        /** search by key */
+        SEARCH,
+        /** insert of a KVPair */
+        INSERT,
+        /** remove by key */
+        REMOVE,
+        /** remove by value */
+        REMOVE_BY_VALUE
+    }
+
+    // the number of calls of each operation
+    private final LongAdder[] calls;
+    // the nanoseconds spent in each operation
+    private final LongAdder[] nanos;
+    // the number of key comparisons
+    private final LongAdder comparisons;
+    // the number of levels descended
+    private final LongAdder descents;
+    // the number of horizontal steps on each level
+    private final LongAdder[] steps;
+
+    /**
+     * Creates counters that are all zero.
+     */
+    public SkipListMetrics() {
+        int operations = Operation.values().length;
+        calls = new LongAdder[operations];
+        nanos = new LongAdder[operations];
+        for (int i = 0; i < operations; i++) {
+            calls[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+        }
+        comparisons = new LongAdder();
+        descents = new LongAdder();
+        steps = new LongAdder[TRACKED_LEVELS];
+        for (int i = 0; i < TRACKED_LEVELS; i++) {
+            steps[i] = new LongAdder();
+        }
+    }
+
+
+    /**
+     * Records one call of an operation.
+     *
+     * @param op
+     *            the operation
+     * @param elapsed
+     *            the nanoseconds it took
+     */
+    public void recordCall(Operation op, long elapsed) {
+        calls[op.ordinal()].increment();
+        nanos[op.ordinal()].add(elapsed);
+    }
+
+
+    /**
+     * Records the steps taken on one level.
+     *
+     * @param level
+     *            the level
+     * @param count
+     *            the number of horizontal steps
+     */
+    public void recordSteps(int level, int count) {
+        steps[Math.min(level, TRACKED_LEVELS - 1)].add(count);
+    }
+
+
+    /**
+     * Records the comparisons and descents of one search path.
+     *
+     * @param compared
+     *            the number of key comparisons
+     * @param descended
+     *            the number of levels descended
+     */
+    public void recordPath(int compared, int descended) {
+        comparisons.add(compared);
+        descents.add(descended);
+    }
+
+
+    /**
+     * Sets every counter back to zero. Updates running at the same time may
+     * or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < calls.length; i++) {
+            calls[i].reset();
+            nanos[i].reset();
+        }
+        comparisons.reset();
+        descents.reset();
+        for (LongAdder level : steps) {
+            level.reset();
+        }
+    }
+
+
+    /**
+     * Reads all the counters. Counts recorded while the snapshot is taken may
+     * or may not be included.
+     *
+     * @return the current values of the counters
+     */
+    public Snapshot snapshot() {
+        long[] callCounts = new long[calls.length];
+        long[] nanoCounts = new long[nanos.length];
+        for (int i = 0; i < calls.length; i++) {
+            callCounts[i] = calls[i].sum();
+            nanoCounts[i] = nanos[i].sum();
+        }
+        long[] stepCounts = new long[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            stepCounts[i] = steps[i].sum();
+        }
+        return new Snapshot(callCounts, nanoCounts, comparisons.sum(),
+            descents.sum(), stepCounts);
+    }
+
+    /**
+     * This class holds the values of the counters at one point in time.
+     */
+    public static class Snapshot {
+        // the number of calls of each operation
+        private final long[] calls;
+        // the nanoseconds spent in each operation
+        private final long[] nanos;
+        // the number of key comparisons
+        private final long comparisons;
+        // the number of levels descended
+        private final long descents;
+        // the number of horizontal steps on each level
+        private final long[] steps;
+
+        /**
+         * Creates a snapshot from the counter values.
+         *
+         * @param calls
+         *            the number of calls of each operation
+         * @param nanos
+         *            the nanoseconds spent in each operation
+         * @param comparisons
+         *            the number of key comparisons
+         * @param descents
+         *            the number of levels descended
+         * @param steps
+         *            the number of horizontal steps on each level
+         */
+        private Snapshot(
+            long[] calls,
+            long[] nanos,
+            long comparisons,
+            long descents,
+            long[] steps) {
+            this.calls = calls;
+            this.nanos = nanos;
+            this.comparisons = comparisons;
+            this.descents = descents;
+            this.steps = steps;
+        }
+
+
+        /**
+         * @param op
+         *            an operation
+         * @return the number of calls of the operation
+         */
+        public long getCalls(Operation op) {
+            return calls[op.ordinal()];
+        }
+
+
+        /**
+         * @param op
+         *            an operation
+         * @return the nanoseconds spent in the operation
+         */
+        public long getNanos(Operation op) {
+            return nanos[op.ordinal()];
+        }
+
+
+        /**
+         * @return the number of calls of all operations
+         */
+        public long getTotalCalls() {
+            long total = 0;
+            for (long count : calls) {
+                total += count;
+            }
+            return total;
+        }
+
+
+        /**
+         * @return the number of key comparisons
+         */
+        public long getComparisons() {
+            return comparisons;
+        }
+
+
+        /**
+         * @return the number of levels descended
+         */
+        public long getDescents() {
+            return descents;
+        }
+
+
+        /**
+         * @param level
+         *            a level; the last tracked level also counts all higher
+         *            ones
+         * @return the number of horizontal steps on that level
+         */
+        public long getSteps(int level) {
+            return steps[Math.min(level, TRACKED_LEVELS - 1)];
+        }
+
+
+        /**
+         * @return the number of horizontal steps on all levels
+         */
+        public long getTotalSteps() {
+            long total = 0;
+            for (long count : steps) {
+                total += count;
+            }
+            return total;
+        }
+
+
+        /**
+         * @return the average number of key comparisons per operation, or 0
+         *         if nothing was recorded
+         */
+        public double getComparisonsPerCall() {
+            long total = getTotalCalls();
+            return (total == 0) ? 0 : (double)comparisons / total;
+        }
+
+
+        /**
+         * @return the nanoseconds of all operations divided by the number of
+         *         comparisons, or 0 if nothing was compared
+         */
+        public double getNanosPerComparison() {
+            long total = 0;
+            for (long count : nanos) {
+                total += count;
+            }
+            return (comparisons == 0) ? 0 : (double)total / comparisons;
+        }
+    }
+}
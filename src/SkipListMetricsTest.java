@@ -0,0 +1,136 @@
+import student.TestCase;
+import student.TestableRandom;
+
+/**
+ * This class tests the methods of SkipListMetrics class and the metrics of
+ * SkipList
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class SkipListMetricsTest extends TestCase {
+    /**
+     * The skip list instance used for testing.
+     */
+    private SkipList<String, Integer> sl;
+
+    /**
+     * Sets up a list with the keys a (depth 1), b (depth 3) and c (depth 2).
+     */
+    public void setUp() {
+        sl = new SkipList<String, Integer>();
+        TestableRandom.setNextBooleans(false, true, true, false, true, false);
+        sl.insert(new KVPair<>("a", 1));
+        sl.insert(new KVPair<>("b", 2));
+        sl.insert(new KVPair<>("c", 3));
+    }
+
+
+    /**
+     * Tests that nothing is counted while metrics are disabled
+     */
+    public void testDisabled() {
+        assertNull(sl.metrics());
+        sl.search("b");
+        sl.setMetricsEnabled(true);
+        assertEquals(0, sl.metrics().getTotalCalls());
+        sl.setMetricsEnabled(false);
+        assertNull(sl.metrics());
+    }
+
+
+    /**
+     * Tests the exact counts of two searches
+     */
+    public void testSearchCounts() {
+        sl.setMetricsEnabled(true);
+        assertEquals(1, sl.search("b").size());
+        SkipListMetrics.Snapshot snap = sl.metrics();
+        assertEquals(1, snap.getCalls(SkipListMetrics.Operation.SEARCH));
+        assertEquals(7, snap.getComparisons());
+        assertEquals(4, snap.getDescents());
+        assertEquals(1, snap.getSteps(1));
+        assertEquals(1, snap.getTotalSteps());
+
+        assertTrue(sl.search("z").isEmpty());
+        snap = sl.metrics();
+        assertEquals(2, snap.getCalls(SkipListMetrics.Operation.SEARCH));
+        assertEquals(9, snap.getComparisons());
+        assertEquals(8, snap.getDescents());
+        assertEquals(1, snap.getSteps(3));
+        assertEquals(1, snap.getSteps(2));
+        assertEquals(3, snap.getTotalSteps());
+        assertEquals(4.5, snap.getComparisonsPerCall(), 1e-9);
+        assertTrue(snap.getNanos(SkipListMetrics.Operation.SEARCH) >= 0);
+        assertTrue(snap.getNanosPerComparison() >= 0);
+    }
+
+
+    /**
+     * Tests that a remove by value counts the values it checks on level 0,
+     * and with the value index the descent it makes to unlink the node
+     * instead, and nothing when the value is missing
+     */
+    public void testRemoveByValueCounts() {
+        sl.setMetricsEnabled(true);
+        assertEquals("b", sl.removeByValue(2).getKey());
+        SkipListMetrics.Snapshot snap = sl.metrics();
+        assertEquals(1, snap.getCalls(
+            SkipListMetrics.Operation.REMOVE_BY_VALUE));
+        assertEquals(2, snap.getComparisons());
+        assertEquals(0, snap.getDescents());
+        assertEquals(1, snap.getSteps(0));
+        assertNull(sl.removeByValue(9));
+        assertEquals(4, sl.metrics().getComparisons());
+
+        setUp();
+        sl.setValueIndexEnabled(true);
+        sl.setMetricsEnabled(true);
+        assertEquals("b", sl.removeByValue(2).getKey());
+        snap = sl.metrics();
+        assertEquals(5, snap.getComparisons());
+        assertEquals(4, snap.getDescents());
+        assertEquals(1, snap.getSteps(1));
+
+        assertNull(sl.removeByValue(9));
+        snap = sl.metrics();
+        assertEquals(2, snap.getCalls(
+            SkipListMetrics.Operation.REMOVE_BY_VALUE));
+        assertEquals(5, snap.getComparisons());
+    }
+
+
+    /**
+     * Tests that every instrumented operation is counted and that reset
+     * starts over
+     */
+    public void testAllOperations() {
+        sl.setMetricsEnabled(true);
+        TestableRandom.setNextBooleans(false);
+        sl.insert(new KVPair<>("d", 4));
+        sl.remove("a");
+        sl.remove("x");
+        sl.remove(null);
+        sl.removeByValue(3);
+        sl.removeByValue(9);
+        SkipListMetrics.Snapshot snap = sl.metrics();
+        assertEquals(1, snap.getCalls(SkipListMetrics.Operation.INSERT));
+        assertEquals(3, snap.getCalls(SkipListMetrics.Operation.REMOVE));
+        assertEquals(2, snap.getCalls(
+            SkipListMetrics.Operation.REMOVE_BY_VALUE));
+        assertEquals(6, snap.getTotalCalls());
+        assertTrue(snap.getComparisons() > 0);
+
+        SkipListMetrics counters = new SkipListMetrics();
+        counters.recordSteps(40, 2);
+        counters.recordPath(3, 1);
+        assertEquals(2, counters.snapshot().getSteps(
+            SkipListMetrics.TRACKED_LEVELS - 1));
+        counters.reset();
+        assertEquals(0, counters.snapshot().getComparisons());
+        assertEquals(0.0, counters.snapshot().getComparisonsPerCall(), 0.0);
+        assertEquals(0.0, counters.snapshot().getNanosPerComparison(), 0.0);
+    }
+
+}
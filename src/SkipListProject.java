@@ -59,8 +59,9 @@ public class SkipListProject {
             // creates a scanner object
             Scanner scanner = new Scanner(file);
 
-            // creates a command processor object
-            CommandProcessor cmdProc = new CommandProcessor();
+            // creates a command processor object that hands runs of
+            // inserts to the database in batches
+            CommandProcessor cmdProc = new CommandProcessor(true);
 
             // reads the entire file and processes the commands
             // line by line
@@ -71,6 +72,7 @@ public class SkipListProject {
                     cmdProc.processor(line.trim());
                 }
             }
+            cmdProc.flush();
             // closes the scanner
             scanner.close();
         }
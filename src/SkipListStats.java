@@ -0,0 +1,164 @@
+import java.util.Locale;
+
+/**
+ * This class holds structural statistics of a SkipList as returned by
+ * SkipList.stats: how many nodes reach each level, how tall the towers are,
+ * how long searches are and roughly how much memory the list retains. The
+ * toString method formats them for the stats command.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class SkipListStats {
+    // the number of KVPairs in the list
+    private final int size;
+    // the level of the head node
+    private final int headLevel;
+    // nodesPerLevel[d] is the number of nodes with depth at least d
+    private final int[] nodesPerLevel;
+    // the average depth of the nodes
+    private final double averageHeight;
+    // the depth of the tallest node
+    private final int maxHeight;
+    // the average number of steps of a search, over the probes
+    private final double averageSearchPath;
+    // the number of searches the average search path is taken over
+    private final int probes;
+    // the estimated number of bytes retained by the list structure
+    private final long estimatedBytes;
+
+    /**
+     * Creates the statistics.
+     *
+     * @param size
+     *            the number of KVPairs in the list
+     * @param headLevel
+     *            the level of the head node
+     * @param nodesPerLevel
+     *            the number of nodes with depth at least d, for every d
+     * @param averageHeight
+     *            the average depth of the nodes
+     * @param averageSearchPath
+     *            the average number of steps of a search
+     * @param probes
+     *            the number of searches averaged
+     * @param estimatedBytes
+     *            the estimated number of bytes retained
+     */
+    public SkipListStats(
+        int size,
+        int headLevel,
+        int[] nodesPerLevel,
+        double averageHeight,
+        double averageSearchPath,
+        int probes,
+        long estimatedBytes) {
+        this.size = size;
+        this.headLevel = headLevel;
+        this.nodesPerLevel = nodesPerLevel.clone();
+        this.averageHeight = averageHeight;
+        this.maxHeight = nodesPerLevel.length - 1;
+        this.averageSearchPath = averageSearchPath;
+        this.probes = probes;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+
+    /**
+     * @return the number of KVPairs in the list
+     */
+    public int getSize() {
+        return size;
+    }
+
+
+    /**
+     * @return the level of the head node
+     */
+    public int getHeadLevel() {
+        return headLevel;
+    }
+
+
+    /**
+     * @param depth
+     *            a depth, starting at 1
+     * @return the number of nodes whose depth is at least the given depth
+     */
+    public int getNodesAtLevel(int depth) {
+        if (depth <= 0) {
+            return size;
+        }
+        return (depth < nodesPerLevel.length) ? nodesPerLevel[depth] : 0;
+    }
+
+
+    /**
+     * @return the average depth of the nodes, or 0 if the list is empty
+     */
+    public double getAverageHeight() {
+        return averageHeight;
+    }
+
+
+    /**
+     * @return the depth of the tallest node, or 0 if the list is empty
+     */
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+
+    /**
+     * @return the average number of links followed and levels descended by
+     *         a search for a key in the list
+     */
+    public double getAverageSearchPath() {
+        return averageSearchPath;
+    }
+
+
+    /**
+     * @return the number of searches the average search path is taken over
+     */
+    public int getProbes() {
+        return probes;
+    }
+
+
+    /**
+     * @return the estimated number of bytes retained by the nodes, their
+     *         arrays, the KVPairs and the value and key indexes, not counting
+     *         the keys and values themselves
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+
+    /**
+     * @return the statistics in the format printed by the stats command
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append("SkipList stats:\n");
+        out.append("size: ").append(size).append("\n");
+        out.append("head level: ").append(headLevel).append("\n");
+        out.append("nodes per level:");
+        for (int depth = 1; depth <= maxHeight; depth++) {
+            out.append(" ").append(depth).append("=").append(
+                nodesPerLevel[depth]);
+        }
+        out.append("\n");
+        out.append(String.format(Locale.ROOT, "average tower height: %.2f\n",
+            averageHeight));
+        out.append("max tower height: ").append(maxHeight).append("\n");
+        out.append(String.format(Locale.ROOT,
+            "average search path: %.2f (%d probes)\n", averageSearchPath,
+            probes));
+        out.append("estimated bytes: ").append(estimatedBytes);
+        return out.toString();
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.Locale;
+import student.TestCase;
+import student.TestableRandom;
+
+/**
+ * This class tests the methods of SkipListStats class and SkipList.stats
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class SkipListStatsTest extends TestCase {
+
+    /**
+     * Tests the statistics of an empty list
+     */
+    public void testEmpty() {
+        SkipListStats stats = new SkipList<String, Integer>().stats();
+        assertEquals(0, stats.getSize());
+        assertEquals(0, stats.getMaxHeight());
+        assertEquals(0, stats.getProbes());
+        assertEquals(0.0, stats.getAverageHeight(), 0.0);
+        assertEquals(0, stats.getNodesAtLevel(1));
+        assertTrue(stats.getEstimatedBytes() > 0);
+    }
+
+
+    /**
+     * Tests the exact statistics of a small list with known levels, which
+     * follow inserts and removes
+     */
+    public void testSmallListIsExact() {
+        SkipList<String, Integer> list = new SkipList<>();
+        TestableRandom.setNextBooleans(false, true, true, false, true, false);
+        list.insert(new KVPair<>("a", 1)); // depth 1
+        list.insert(new KVPair<>("b", 2)); // depth 3
+        list.insert(new KVPair<>("c", 3)); // depth 2
+
+        SkipListStats stats = list.stats();
+        assertEquals(3, stats.getSize());
+        assertEquals(3, stats.getHeadLevel());
+        assertEquals(3, stats.getNodesAtLevel(0));
+        assertEquals(3, stats.getNodesAtLevel(1));
+        assertEquals(2, stats.getNodesAtLevel(2));
+        assertEquals(1, stats.getNodesAtLevel(3));
+        assertEquals(0, stats.getNodesAtLevel(4));
+        assertEquals(2.0, stats.getAverageHeight(), 1e-9);
+        assertEquals(3, stats.getMaxHeight());
+        assertEquals(3, stats.getProbes());
+        // a: 4 drops; b: 1 step + 4 drops; c: 1 step + 4 drops
+        assertEquals(14.0 / 3, stats.getAverageSearchPath(), 1e-9);
+        assertTrue(stats.toString().contains("nodes per level: 1=3 2=2 3=1"));
+
+        long before = stats.getEstimatedBytes();
+        list.remove("b");
+        stats = list.stats();
+        assertEquals(2, stats.getMaxHeight());
+        assertEquals(1.5, stats.getAverageHeight(), 1e-9);
+        assertTrue(stats.getEstimatedBytes() < before);
+    }
+
+
+    /**
+     * Tests that a large list is sampled and that its levels follow the
+     * level policy
+     */
+    public void testLargeListIsSampled() {
+        SkipList<Integer, Integer> list = new SkipList<>(LevelPolicy.seeded(
+            0.25, 16, 3));
+        for (int i = 0; i < 20000; i++) {
+            list.insert(new KVPair<>(i, i));
+        }
+        SkipListStats stats = list.stats();
+        assertEquals(1000, stats.getProbes());
+        assertEquals(20000, stats.getNodesAtLevel(1));
+        assertEquals(5000, stats.getNodesAtLevel(2), 300);
+        assertEquals(4.0 / 3, stats.getAverageHeight(), 0.05);
+        assertTrue(stats.getAverageSearchPath() > 5);
+        assertTrue(stats.getAverageSearchPath() < 60);
+    }
+
+
+    /**
+     * Tests that the printed averages do not depend on the default locale
+     */
+    public void testFormatIgnoresLocale() {
+        SkipList<String, Integer> list = new SkipList<>();
+        TestableRandom.setNextBooleans(false, true, false);
+        list.insert(new KVPair<>("a", 1)); // depth 1
+        list.insert(new KVPair<>("b", 2)); // depth 2
+        Locale previous = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            String output = list.stats().toString();
+            assertTrue(output.contains("average tower height: 1.50"));
+            assertFalse(output.contains("1,50"));
+        }
+        finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+}
@@ -1,5 +1,11 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 import org.junit.After;
 import org.junit.Test;
 
@@ -488,4 +494,1156 @@ public class SkipListTest extends TestCase {
             : "Not found"));
     }
 
+
+    /**
+     * Inserts one rectangle for each of the given keys.
+     *
+     * @param keys
+     *            the keys to insert
+     */
+    private void insertKeys(String... keys) {
+        for (int i = 0; i < keys.length; i++) {
+            sl.insert(new KVPair<>(keys[i], new Rectangle(i, i, 1, 1)));
+        }
+    }
+
+
+    /**
+     * Collects the keys returned by an iterator into one string.
+     *
+     * @param iter
+     *            the iterator to drain
+     * @return the keys separated by spaces
+     */
+    private String keysOf(Iterator<KVPair<String, Rectangle>> iter) {
+        StringBuilder keys = new StringBuilder();
+        while (iter.hasNext()) {
+            keys.append(iter.next().getKey()).append(" ");
+        }
+        return keys.toString().trim();
+    }
+
+
+    /**
+     * test case for range cursors with inclusive and exclusive bounds
+     */
+    @Test
+    public void testRange() {
+        sl = new SkipList<String, Rectangle>();
+        insertKeys("e", "a", "c", "b", "d", "c");
+
+        assertEquals("b c c d", keysOf(sl.range("b", "e")));
+        assertEquals("c c d", keysOf(sl.range("b", false, "d", true)));
+        assertEquals("a b c c", keysOf(sl.range(null, true, "c", true)));
+        assertEquals("d e", keysOf(sl.range("cc", true, null, false)));
+        assertEquals("", keysOf(sl.range("f", "z")));
+        assertEquals("", keysOf(sl.range("c", false, "c", true)));
+    }
+
+
+    /**
+     * test case for seeking a cursor and resuming from another key
+     */
+    @Test
+    public void testSeek() {
+        sl = new SkipList<String, Rectangle>();
+        insertKeys("e", "a", "c", "b", "d");
+
+        SkipList<String, Rectangle>.Cursor cursor = sl.seek("c");
+        assertEquals("c", cursor.next().getKey());
+        cursor.seek("a");
+        assertEquals("a", cursor.next().getKey());
+        assertEquals("b", cursor.next().getKey());
+
+        cursor = sl.range("a", "c");
+        cursor.seek("b");
+        assertEquals("b", keysOf(cursor));
+        Exception thrown = null;
+        try {
+            cursor.next();
+        }
+        catch (Exception e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test case for positional access with get and subList
+     */
+    @Test
+    public void testGetAndSubList() {
+        sl = new SkipList<String, Rectangle>();
+        insertKeys("e", "a", "c", "b", "d");
+
+        assertEquals("a", sl.get(0).getKey());
+        assertEquals("c", sl.get(2).getKey());
+        assertEquals("e", sl.get(4).getKey());
+        assertEquals("b c d", keysOf(sl.subList(1, 3).iterator()));
+        assertEquals("d e", keysOf(sl.subList(3, 10).iterator()));
+        assertTrue(sl.subList(5, 2).isEmpty());
+
+        Exception thrown = null;
+        try {
+            sl.get(5);
+        }
+        catch (IndexOutOfBoundsException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            sl.subList(-1, 2);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test case for rankOf with duplicates and missing keys
+     */
+    @Test
+    public void testRankOf() {
+        sl = new SkipList<String, Rectangle>();
+        insertKeys("e", "a", "c", "b", "c");
+
+        assertEquals(0, sl.rankOf("a"));
+        assertEquals(2, sl.rankOf("c"));
+        assertEquals(4, sl.rankOf("e"));
+        assertEquals(-1, sl.rankOf("d"));
+        assertEquals(-1, sl.rankOf("f"));
+    }
+
+
+    /**
+     * test case checking that the spans stay correct through a long mix of
+     * inserts and both kinds of removes
+     */
+    @Test
+    public void testSpansAfterMixedUpdates() {
+        sl = new SkipList<String, Rectangle>();
+        Random random = new Random(7);
+        for (int i = 0; i < 600; i++) {
+            String key = "k" + random.nextInt(100);
+            int choice = random.nextInt(4);
+            if (choice == 0) {
+                sl.remove(key);
+            }
+            else if (choice == 1 && sl.size() > 0) {
+                sl.removeByValue(sl.get(random.nextInt(sl.size()))
+                    .getValue());
+            }
+            else {
+                sl.insert(new KVPair<>(key, new Rectangle(i, i, 1, 1)));
+            }
+        }
+        int index = 0;
+        for (KVPair<String, Rectangle> pair : sl) {
+            assertSame(pair, sl.get(index));
+            int rank = sl.rankOf(pair.getKey());
+            assertTrue(rank >= 0 && rank <= index);
+            assertEquals(pair.getKey(), sl.get(rank).getKey());
+            index++;
+        }
+        assertEquals(sl.size(), index);
+    }
+
+
+    /**
+     * test case for building a list from sorted pairs in one pass
+     */
+    @Test
+    public void testBulkLoad() {
+        ArrayList<KVPair<String, Rectangle>> sorted = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sorted.add(new KVPair<>(String.format("k%03d", i / 2),
+                new Rectangle(i, i, 1, 1)));
+        }
+        sl = SkipList.bulkLoad(sorted.iterator());
+        assertEquals(200, sl.size());
+        for (int i = 0; i < 200; i++) {
+            assertSame(sorted.get(i), sl.get(i));
+        }
+        assertEquals(2, sl.search("k050").size());
+        assertEquals(100, sl.rankOf("k050"));
+
+        sl.insert(new KVPair<>("k050", new Rectangle(1, 1, 1, 1)));
+        assertNotNull(sl.remove("k000"));
+        assertEquals(200, sl.size());
+        assertEquals(99, sl.rankOf("k050"));
+        assertEquals("k099", sl.get(199).getKey());
+
+        sl = SkipList.bulkLoad(new ArrayList<KVPair<String, Rectangle>>()
+            .iterator());
+        assertEquals(0, sl.size());
+    }
+
+
+    /**
+     * test case for rejecting unsorted input to bulkLoad
+     */
+    @Test
+    public void testBulkLoadUnsorted() {
+        ArrayList<KVPair<String, Rectangle>> pairs = new ArrayList<>();
+        pairs.add(new KVPair<>("b", new Rectangle(1, 1, 1, 1)));
+        pairs.add(new KVPair<>("a", new Rectangle(1, 1, 1, 1)));
+        Exception thrown = null;
+        try {
+            SkipList.bulkLoad(pairs.iterator());
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test case checking that a batch insert gives the same order as
+     * inserting the pairs one at a time
+     */
+    @Test
+    public void testInsertAll() {
+        Random random = new Random(3);
+        SkipList<String, Rectangle> expected = new SkipList<>();
+        sl = new SkipList<String, Rectangle>();
+        for (int round = 0; round < 5; round++) {
+            ArrayList<KVPair<String, Rectangle>> batch = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                batch.add(new KVPair<>("k" + random.nextInt(40),
+                    new Rectangle(round, i, 1, 1)));
+            }
+            for (KVPair<String, Rectangle> pair : batch) {
+                expected.insert(pair);
+            }
+            sl.insertAll(batch);
+        }
+        assertEquals(expected.size(), sl.size());
+        Iterator<KVPair<String, Rectangle>> iter = sl.iterator();
+        int index = 0;
+        for (KVPair<String, Rectangle> pair : expected) {
+            assertSame(pair, iter.next());
+            assertSame(pair, sl.get(index));
+            index++;
+        }
+        assertEquals(expected.rankOf("k7"), sl.rankOf("k7"));
+
+        sl.insertAll(new ArrayList<KVPair<String, Rectangle>>());
+        assertEquals(expected.size(), sl.size());
+    }
+
+
+    /**
+     * test case for looking up many keys in one traversal
+     */
+    @Test
+    public void testSearchAll() {
+        sl = new SkipList<String, Rectangle>();
+        insertKeys("e", "a", "c", "b", "c", "g");
+
+        ArrayList<ArrayList<KVPair<String, Rectangle>>> results = sl
+            .searchAll(Arrays.asList("g", "c", "z", "a", "c", "d"));
+        assertEquals(6, results.size());
+        assertEquals("g", keysOf(results.get(0).iterator()));
+        assertEquals(sl.search("c"), results.get(1));
+        assertTrue(results.get(2).isEmpty());
+        assertEquals("a", keysOf(results.get(3).iterator()));
+        assertEquals(sl.search("c"), results.get(4));
+        assertTrue(results.get(5).isEmpty());
+        assertTrue(sl.searchAll(new ArrayList<String>()).isEmpty());
+    }
+
+
+    /**
+     * test case for searching into a sink instead of a list
+     */
+    @Test
+    public void testSearchWithSink() {
+        sl = new SkipList<String, Rectangle>();
+        insertKeys("b", "a", "b", "c");
+
+        ArrayList<KVPair<String, Rectangle>> found = new ArrayList<>();
+        assertEquals(2, sl.search("b", found::add));
+        assertEquals(sl.search("b"), found);
+        assertEquals(0, sl.search("d", found::add));
+        assertEquals(2, found.size());
+    }
+
+
+    /**
+     * test case checking that removal by value picks the first pair in the
+     * list, also among duplicate keys, with and without the value index
+     */
+    @Test
+    public void testRemoveByValueUsesFirstInList() {
+        for (boolean indexed : new boolean[] { false, true }) {
+            sl = new SkipList<String, Rectangle>();
+            sl.setValueIndexEnabled(indexed);
+            assertEquals(indexed, sl.isValueIndexEnabled());
+            Rectangle shared = new Rectangle(1, 1, 1, 1);
+            KVPair<String, Rectangle> late = new KVPair<>("m", shared);
+            KVPair<String, Rectangle> other = new KVPair<>("c", new Rectangle(
+                2, 2, 2, 2));
+            KVPair<String, Rectangle> older = new KVPair<>("c", shared);
+            KVPair<String, Rectangle> newer = new KVPair<>("c", new Rectangle(
+                1, 1, 1, 1));
+            sl.insert(late);
+            sl.insert(older);
+            sl.insert(other);
+            sl.insert(newer);
+
+            // list order is c(newer) c(other) c(older) m(late)
+            assertSame(newer, sl.removeByValue(shared));
+            assertSame(older, sl.removeByValue(shared));
+            assertSame(late, sl.removeByValue(shared));
+            assertNull(sl.removeByValue(shared));
+            assertEquals(1, sl.size());
+            assertSame(other, sl.get(0));
+
+            sl = SkipList.bulkLoad(Arrays.asList(older, late).iterator());
+            sl.setValueIndexEnabled(indexed);
+            assertSame(older, sl.removeByValue(new Rectangle(1, 1, 1, 1)));
+            assertEquals("m", sl.get(0).getKey());
+        }
+    }
+
+
+    /**
+     * test case checking that a list with a value index removes by value
+     * like one that scans, and that turning the index off and on keeps it
+     * right
+     */
+    @Test
+    public void testValueIndex() {
+        Random random = new Random(37);
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.5, 32, 3));
+        SkipList<String, Rectangle> plain = new SkipList<>(LevelPolicy.seeded(
+            0.5, 32, 3));
+        assertFalse(sl.isValueIndexEnabled());
+        sl.setValueIndexEnabled(true);
+        for (int i = 0; i < 3000; i++) {
+            String key = "k" + (10 + random.nextInt(40));
+            Rectangle rect = new Rectangle(random.nextInt(30), 0, 1, 1);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertSame(plain.removeByValue(rect), sl.removeByValue(
+                        rect));
+                    break;
+                case 1:
+                    assertSame(plain.remove(key), sl.remove(key));
+                    break;
+                default:
+                    KVPair<String, Rectangle> pair = new KVPair<>(key, rect);
+                    plain.insert(pair);
+                    sl.insert(pair);
+                    break;
+            }
+            if (i % 500 == 250) {
+                SkipList<String, Rectangle> upper = sl.splitAt("k30");
+                assertTrue(upper.isValueIndexEnabled());
+                sl.concat(upper);
+            }
+            if (i % 1000 == 999) {
+                sl.setValueIndexEnabled(false);
+                assertSame(plain.removeByValue(rect), sl.removeByValue(rect));
+                sl.setValueIndexEnabled(true);
+            }
+        }
+        assertEquals(plain.size(), sl.size());
+        long indexed = sl.stats().getEstimatedBytes();
+        sl.setValueIndexEnabled(false);
+        assertTrue(sl.stats().getEstimatedBytes() < indexed);
+        while (plain.size() > 0) {
+            Rectangle rect = plain.get(random.nextInt(plain.size()))
+                .getValue();
+            assertSame(plain.removeByValue(rect), sl.removeByValue(rect));
+        }
+        assertEquals(0, sl.size());
+    }
+
+
+    /**
+     * test case checking that a list built with a level policy takes its
+     * levels from it and still keeps its entries in order
+     */
+    @Test
+    public void testLevelPolicyConstructor() {
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.25, 3, 42));
+        LevelPolicy twin = LevelPolicy.seeded(0.25, 3, 42);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(twin.randomLevel(), sl.randomLevel());
+        }
+        for (int i = 0; i < 200; i++) {
+            sl.insert(new KVPair<>("k" + (i * 37 % 200), new Rectangle(i, 0,
+                1, 1)));
+        }
+        assertEquals(200, sl.size());
+        String previous = "";
+        for (KVPair<String, Rectangle> pair : sl) {
+            assertTrue(previous.compareTo(pair.getKey()) <= 0);
+            previous = pair.getKey();
+        }
+        sl.dump();
+        assertFalse(systemOut().getHistory().contains("depth 4"));
+    }
+
+
+    /**
+     * test case for floor, ceiling, lower and higher, which return the first
+     * pair of the key they find
+     */
+    @Test
+    public void testOrderedQueries() {
+        sl = new SkipList<String, Rectangle>();
+        assertNull(sl.floor("a"));
+        assertNull(sl.ceiling("a"));
+        assertNull(sl.firstEntry());
+        assertNull(sl.lastEntry());
+        insertKeys("e", "a", "c", "b", "d", "c", "g");
+        Rectangle newerC = new Rectangle(5, 5, 1, 1);
+
+        assertEquals(newerC, sl.floor("c").getValue());
+        assertEquals(newerC, sl.floor("cc").getValue());
+        assertNull(sl.floor("0"));
+        assertEquals("g", sl.floor("z").getKey());
+        assertEquals(newerC, sl.ceiling("c").getValue());
+        assertEquals(newerC, sl.ceiling("bb").getValue());
+        assertNull(sl.ceiling("h"));
+        assertEquals("b", sl.lower("c").getKey());
+        assertEquals(newerC, sl.lower("d").getValue());
+        assertNull(sl.lower("a"));
+        assertEquals("d", sl.higher("c").getKey());
+        assertEquals("g", sl.higher("f").getKey());
+        assertNull(sl.higher("g"));
+        assertEquals("a", sl.firstEntry().getKey());
+        assertEquals("g", sl.lastEntry().getKey());
+    }
+
+
+    /**
+     * test case for pollFirstEntry and pollLastEntry, checking that the
+     * backward links and spans stay correct
+     */
+    @Test
+    public void testPollEntries() {
+        sl = new SkipList<String, Rectangle>();
+        assertNull(sl.pollFirstEntry());
+        assertNull(sl.pollLastEntry());
+        insertKeys("b", "a", "c", "c", "d");
+
+        assertEquals("a", sl.pollFirstEntry().getKey());
+        assertEquals("d", sl.pollLastEntry().getKey());
+        assertEquals(new Rectangle(3, 3, 1, 1), sl.pollLastEntry()
+            .getValue());
+        assertEquals(new Rectangle(2, 2, 1, 1), sl.lastEntry().getValue());
+        assertEquals("c b", keysOf(sl.descendingIterator()));
+        assertEquals("c", sl.get(1).getKey());
+        assertEquals("b", sl.pollFirstEntry().getKey());
+        assertEquals("c", sl.pollLastEntry().getKey());
+        assertEquals(0, sl.size());
+        assertNull(sl.lastEntry());
+        assertFalse(sl.descendingIterator().hasNext());
+    }
+
+
+    /**
+     * test case checking that descending iteration is the exact reverse of
+     * iteration after a random mix of updates, bulk loads and batch inserts
+     */
+    @Test
+    public void testDescendingIterator() {
+        sl = new SkipList<String, Rectangle>();
+        Random random = new Random(11);
+        ArrayList<KVPair<String, Rectangle>> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String key = "k" + random.nextInt(100);
+            int choice = random.nextInt(6);
+            if (choice == 0) {
+                sl.remove(key);
+            }
+            else if (choice == 1) {
+                sl.removeByValue(new Rectangle(random.nextInt(20), 0, 1, 1));
+            }
+            else if (choice == 2) {
+                sl.pollLastEntry();
+            }
+            else if (choice == 3) {
+                batch.add(new KVPair<>(key, new Rectangle(i, 0, 1, 1)));
+            }
+            else {
+                sl.insert(new KVPair<>(key, new Rectangle(random.nextInt(20),
+                    0, 1, 1)));
+            }
+        }
+        sl.insertAll(batch);
+        assertDescendingMatches();
+
+        sl = SkipList.bulkLoad(sl.iterator());
+        assertDescendingMatches();
+        sl.pollFirstEntry();
+        assertDescendingMatches();
+    }
+
+
+    /**
+     * Checks that the descending iterator returns the pairs of the iterator
+     * in reverse.
+     */
+    private void assertDescendingMatches() {
+        ArrayList<KVPair<String, Rectangle>> forward = new ArrayList<>();
+        for (KVPair<String, Rectangle> pair : sl) {
+            forward.add(pair);
+        }
+        assertEquals(sl.size(), forward.size());
+        Iterator<KVPair<String, Rectangle>> iter = sl.descendingIterator();
+        for (int i = forward.size() - 1; i >= 0; i--) {
+            assertSame(forward.get(i), iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+
+    /**
+     * test case checking that the spliterator splits into halves and that a
+     * parallel stream sees every pair in list order
+     */
+    @Test
+    public void testSpliterator() {
+        sl = new SkipList<String, Rectangle>();
+        Random random = new Random(19);
+        for (int i = 0; i < 1001; i++) {
+            sl.insert(new KVPair<>("k" + random.nextInt(300), new Rectangle(i,
+                0, 1, 1)));
+        }
+        Spliterator<KVPair<String, Rectangle>> suffix = sl
+            .spliterator();
+        assertTrue(suffix.hasCharacteristics(Spliterator.SORTED
+            | Spliterator.SIZED | Spliterator.NONNULL));
+        Spliterator<KVPair<String, Rectangle>> prefix = suffix
+            .trySplit();
+        assertEquals(500, prefix.estimateSize());
+        assertEquals(501, suffix.estimateSize());
+        ArrayList<KVPair<String, Rectangle>> seen = new ArrayList<>();
+        assertTrue(prefix.tryAdvance(seen::add));
+        prefix.forEachRemaining(seen::add);
+        assertFalse(prefix.tryAdvance(seen::add));
+        suffix.forEachRemaining(seen::add);
+        assertEquals(1001, seen.size());
+
+        ArrayList<KVPair<String, Rectangle>> expected = new ArrayList<>();
+        for (KVPair<String, Rectangle> pair : sl) {
+            expected.add(pair);
+        }
+        assertEquals(expected, seen);
+        assertEquals(expected, StreamSupport.stream(sl
+            .spliterator(), true).collect(Collectors
+                .toList()));
+
+        Spliterator<KVPair<String, Rectangle>> single =
+            new SkipList<String, Rectangle>().spliterator();
+        assertNull(single.trySplit());
+        assertEquals(0, single.estimateSize());
+    }
+
+
+    /**
+     * test case checking that a snapshot keeps seeing the list as it was when
+     * it was taken
+     */
+    @Test
+    public void testSnapshot() {
+        sl = new SkipList<String, Rectangle>();
+        SkipList<String, Rectangle>.Snapshot empty = sl.snapshot();
+        insertKeys("c", "a", "e");
+        SkipList<String, Rectangle>.Snapshot first = sl.snapshot();
+        sl.remove("c");
+        insertKeys("b", "d", "f", "g", "h");
+        SkipList<String, Rectangle>.Snapshot second = sl.snapshot();
+        sl.pollFirstEntry();
+        sl.removeByValue(new Rectangle(1, 1, 1, 1));
+
+        assertEquals("", keysOf(empty.iterator()));
+        assertEquals("a c e", keysOf(first.iterator()));
+        assertEquals(3, first.size());
+        assertEquals("a b d e f g h", keysOf(second.iterator()));
+        assertEquals(7, second.size());
+        assertEquals("b e f g h", keysOf(sl.iterator()));
+        assertTrue(sl.retainedVersions() > 0);
+
+        first.close();
+        first.close();
+        Exception thrown = null;
+        try {
+            first.iterator();
+        }
+        catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        empty.close();
+        second.close();
+        sl.insert(new KVPair<>("z", new Rectangle(9, 9, 1, 1)));
+        assertEquals(0, sl.retainedVersions());
+        assertEquals("b e f g h z", keysOf(sl.iterator()));
+        try (SkipList<String, Rectangle>.Snapshot last = sl.snapshot()) {
+            assertEquals("b e f g h z", keysOf(last.iterator()));
+        }
+    }
+
+
+    /**
+     * test case checking that no level 0 history is kept without open
+     * snapshots, and that histories dropped after a snapshot closes do not
+     * confuse a later snapshot
+     */
+    @Test
+    public void testSnapshotHistoriesOnlyWhileOpen() {
+        sl = new SkipList<String, Rectangle>();
+        insertKeys("b", "d", "f");
+        sl.remove("d");
+        assertEquals(0, sl.retainedVersions());
+
+        SkipList<String, Rectangle>.Snapshot first = sl.snapshot();
+        insertKeys("c", "e");
+        assertTrue(sl.retainedVersions() > 0);
+        first.close();
+        sl.remove("c");
+        assertEquals(0, sl.retainedVersions());
+        insertKeys("a");
+
+        SkipList<String, Rectangle>.Snapshot second = sl.snapshot();
+        sl.remove("e");
+        insertKeys("g");
+        sl.pollFirstEntry();
+        assertEquals("a b e f", keysOf(second.iterator()));
+        assertEquals("b f g", keysOf(sl.iterator()));
+        second.close();
+    }
+
+
+    /**
+     * test case reading a snapshot in another thread while this thread keeps
+     * inserting and removing
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testSnapshotWhileWriting() throws InterruptedException {
+        sl = new SkipList<String, Rectangle>();
+        for (int i = 0; i < 2000; i++) {
+            sl.insert(new KVPair<>("k" + i, new Rectangle(i, 0, 1, 1)));
+        }
+        ArrayList<KVPair<String, Rectangle>> expected = new ArrayList<>();
+        for (KVPair<String, Rectangle> pair : sl) {
+            expected.add(pair);
+        }
+        SkipList<String, Rectangle>.Snapshot snapshot = sl.snapshot();
+        ArrayList<KVPair<String, Rectangle>> seen = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            for (int round = 0; round < 20; round++) {
+                seen.clear();
+                for (KVPair<String, Rectangle> pair : snapshot) {
+                    seen.add(pair);
+                }
+            }
+        });
+        reader.start();
+        Random random = new Random(23);
+        for (int i = 0; i < 20000; i++) {
+            String key = "k" + random.nextInt(4000);
+            if (random.nextBoolean()) {
+                sl.remove(key);
+            }
+            else {
+                sl.insert(new KVPair<>(key, new Rectangle(i, 1, 1, 1)));
+            }
+        }
+        reader.join();
+        snapshot.close();
+        assertEquals(expected, seen);
+    }
+
+
+    /**
+     * test case checking that adaptive mode lifts a hot key so that it is
+     * found with fewer comparisons, keeps positions and order intact and
+     * lowers the key again once the searches move elsewhere
+     */
+    @Test
+    public void testAdaptivePromotion() {
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.5, 32, 7));
+        for (int i = 0; i < 2000; i++) {
+            sl.insert(new KVPair<>("k" + (i * 7919 % 2000), new Rectangle(i,
+                0, 1, 1)));
+        }
+        String hot = "k1234";
+        long cold = comparisonsFor(hot);
+        sl.setAdaptive(true);
+        assertTrue(sl.isAdaptive());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(1, sl.search(hot).size());
+        }
+        long promoted = comparisonsFor(hot);
+        assertTrue(promoted < cold);
+        assertListIntact(2000);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 30000; i++) {
+            sl.search("k" + random.nextInt(2000));
+        }
+        assertTrue(comparisonsFor(hot) > promoted);
+        assertListIntact(2000);
+
+        KVPair<String, Rectangle> newer = new KVPair<>(hot, new Rectangle(5,
+            5, 5, 5));
+        sl.insert(newer);
+        for (int i = 0; i < 100; i++) {
+            assertSame(newer, sl.search(hot).get(0));
+        }
+        assertSame(newer, sl.remove(hot));
+        assertEquals(1, sl.search(hot).size());
+
+        sl.setAdaptive(false);
+        assertFalse(sl.isAdaptive());
+        sl.remove(hot);
+        assertEquals(-1, sl.rankOf(hot));
+        assertListIntact(1999);
+    }
+
+
+    /**
+     * Counts the key comparisons of one search.
+     *
+     * @param key
+     *            the key to search for
+     * @return the comparisons recorded by the metrics
+     */
+    private long comparisonsFor(String key) {
+        sl.setMetricsEnabled(true);
+        sl.search(key);
+        long compared = sl.metrics().getComparisons();
+        sl.setMetricsEnabled(false);
+        return compared;
+    }
+
+
+    /**
+     * Checks that positions, ranks and the level histogram agree with the
+     * pairs on level 0.
+     *
+     * @param expectedSize
+     *            the number of pairs the list should hold
+     */
+    private void assertListIntact(int expectedSize) {
+        assertEquals(expectedSize, sl.size());
+        int index = 0;
+        String previous = "";
+        for (KVPair<String, Rectangle> pair : sl) {
+            assertTrue(previous.compareTo(pair.getKey()) < 0);
+            assertSame(pair, sl.get(index));
+            assertEquals(index, sl.rankOf(pair.getKey()));
+            previous = pair.getKey();
+            index++;
+        }
+        assertEquals(expectedSize, index);
+        assertEquals(expectedSize, sl.stats().getNodesAtLevel(1));
+    }
+
+
+    /**
+     * test case checking that a list with a key index answers searches and
+     * removes like one without it, through every kind of update
+     */
+    @Test
+    public void testKeyIndex() {
+        Random random = new Random(31);
+        ArrayList<KVPair<String, Rectangle>> loaded = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            loaded.add(new KVPair<>("k" + (10 + i / 2), new Rectangle(i, 0, 1,
+                1)));
+        }
+        sl = SkipList.bulkLoad(loaded.iterator());
+        sl.setKeyIndexEnabled(true);
+        assertTrue(sl.isKeyIndexEnabled());
+        SkipList<String, Rectangle> plain = SkipList.bulkLoad(loaded
+            .iterator());
+        for (int i = 0; i < 4000; i++) {
+            String key = "k" + (10 + random.nextInt(40));
+            Rectangle rect = new Rectangle(random.nextInt(60), 0, 1, 1);
+            switch (random.nextInt(5)) {
+                case 0:
+                    assertSame(plain.remove(key), sl.remove(key));
+                    break;
+                case 1:
+                    assertSame(plain.removeByValue(rect), sl.removeByValue(
+                        rect));
+                    break;
+                case 2:
+                    ArrayList<KVPair<String, Rectangle>> batch =
+                        new ArrayList<>();
+                    batch.add(new KVPair<>(key, rect));
+                    batch.add(new KVPair<>(key, rect));
+                    plain.insertAll(batch);
+                    sl.insertAll(batch);
+                    break;
+                default:
+                    KVPair<String, Rectangle> pair = new KVPair<>(key, rect);
+                    plain.insert(pair);
+                    sl.insert(pair);
+                    break;
+            }
+            assertEquals(plain.search(key), sl.search(key));
+        }
+        assertNull(sl.remove("missing"));
+        assertTrue(sl.search("missing").isEmpty());
+
+        sl.setMetricsEnabled(true);
+        sl.search("k20");
+        assertEquals(1, sl.metrics().getCalls(
+            SkipListMetrics.Operation.SEARCH));
+        // only the duplicates and the node after them are compared
+        int found = plain.search("k20").size();
+        assertTrue(sl.metrics().getComparisons() >= found);
+        assertTrue(sl.metrics().getComparisons() <= found + 1);
+        assertEquals(0, sl.metrics().getDescents());
+        long indexed = sl.stats().getEstimatedBytes();
+        sl.setKeyIndexEnabled(false);
+        assertFalse(sl.isKeyIndexEnabled());
+        assertTrue(sl.stats().getEstimatedBytes() < indexed);
+        assertEquals(plain.search("k20"), sl.search("k20"));
+    }
+
+
+    /**
+     * test case checking that splitting a list and concatenating the parts
+     * keeps every pair, position and index right
+     */
+    @Test
+    public void testSplitAndConcat() {
+        Random random = new Random(41);
+        ArrayList<KVPair<String, Rectangle>> expected = new ArrayList<>();
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.5, 32, 5));
+        sl.setKeyIndexEnabled(true);
+        for (int i = 0; i < 600; i++) {
+            sl.insert(new KVPair<>("k" + (100 + random.nextInt(300)),
+                new Rectangle(i, 0, 1, 1)));
+        }
+        for (KVPair<String, Rectangle> pair : sl) {
+            expected.add(pair);
+        }
+
+        for (String cut : new String[] { "k250", "k100", "k9", "k" }) {
+            SkipList<String, Rectangle> upper = sl.splitAt(cut);
+            assertTrue(upper.isKeyIndexEnabled());
+            int lowerSize = 0;
+            while (lowerSize < expected.size() && expected.get(lowerSize)
+                .getKey().compareTo(cut) < 0) {
+                lowerSize++;
+            }
+            assertContents(expected.subList(0, lowerSize), sl);
+            assertContents(expected.subList(lowerSize, expected.size()),
+                upper);
+            sl.concat(upper);
+            assertEquals(0, upper.size());
+            assertFalse(upper.iterator().hasNext());
+            assertContents(expected, sl);
+        }
+
+        SkipList<String, Rectangle> upper = sl.splitAt("k300");
+        KVPair<String, Rectangle> low = new KVPair<>("k150", new Rectangle(1,
+            2, 3, 4));
+        sl.insert(low);
+        assertSame(low, sl.search("k150").get(0));
+        assertSame(upper.get(0), upper.removeByValue(upper.get(0)
+            .getValue()));
+        assertNotNull(sl.remove("k150"));
+        assertEquals(expected.get(expected.size() - 1).getKey(), upper
+            .lastEntry().getKey());
+        upper.insert(new KVPair<>("k399", new Rectangle(9, 9, 9, 9)));
+        sl.concat(upper);
+        assertEquals(expected.size(), sl.size());
+        assertEquals(sl.size(), sl.stats().getNodesAtLevel(1));
+    }
+
+
+    /**
+     * test case checking that removes by key after a split without the key
+     * index leave the stale indexes to be rebuilt correctly later
+     */
+    @Test
+    public void testRemoveAfterSplit() {
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.5, 32, 7));
+        for (int i = 0; i < 100; i++) {
+            sl.insert(new KVPair<>("k" + (100 + i), new Rectangle(i, i, 1,
+                1)));
+        }
+        SkipList<String, Rectangle> upper = sl.splitAt("k150");
+        for (int i = 0; i < 50; i += 2) {
+            assertNotNull(sl.remove("k" + (100 + i)));
+            assertNotNull(upper.remove("k" + (150 + i)));
+        }
+        assertNull(sl.remove("k150"));
+        assertEquals(25, sl.size());
+        assertEquals(25, sl.stats().getNodesAtLevel(1));
+        assertNull(sl.removeByValue(new Rectangle(0, 0, 1, 1)));
+        assertEquals("k101", sl.removeByValue(new Rectangle(1, 1, 1, 1))
+            .getKey());
+        assertEquals("k151", upper.removeByValue(new Rectangle(51, 51, 1, 1))
+            .getKey());
+        assertEquals(24, upper.stats().getNodesAtLevel(1));
+    }
+
+
+    /**
+     * test case checking that concat and split reject what they cannot do
+     */
+    @Test
+    public void testSplitAndConcatErrors() {
+        sl = new SkipList<String, Rectangle>();
+        sl.insert(new KVPair<>("b", new Rectangle(1, 1, 1, 1)));
+        SkipList<String, Rectangle> other = new SkipList<>();
+        other.insert(new KVPair<>("b", new Rectangle(2, 2, 2, 2)));
+        Exception thrown = null;
+        try {
+            sl.concat(other);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            sl.mergeWith(sl);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        SkipList<String, Rectangle>.Snapshot snapshot = other.snapshot();
+        try {
+            sl.mergeWith(other);
+        }
+        catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        snapshot.close();
+        assertEquals(1, sl.size());
+        assertEquals(0, sl.splitAt("c").size());
+        assertEquals(1, sl.size());
+    }
+
+
+    /**
+     * test case checking that mergeWith interleaves overlapping lists with
+     * the pairs of this list first among equal keys
+     */
+    @Test
+    public void testMergeWith() {
+        Random random = new Random(43);
+        sl = new SkipList<String, Rectangle>();
+        SkipList<String, Rectangle> other = new SkipList<>();
+        ArrayList<KVPair<String, Rectangle>> expected = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            KVPair<String, Rectangle> pair = new KVPair<>("k" + (100 + random
+                .nextInt(200)), new Rectangle(i, 0, 1, 1));
+            if (i % 3 == 0) {
+                other.insert(pair);
+            }
+            else {
+                sl.insert(pair);
+            }
+        }
+        for (KVPair<String, Rectangle> pair : sl) {
+            expected.add(pair);
+        }
+        for (KVPair<String, Rectangle> pair : other) {
+            int at = 0;
+            while (at < expected.size() && expected.get(at).getKey()
+                .compareTo(pair.getKey()) <= 0) {
+                at++;
+            }
+            expected.add(at, pair);
+        }
+        SkipList<String, Rectangle>.Snapshot closed = sl.snapshot();
+        closed.close();
+        sl.mergeWith(other);
+        assertEquals(0, other.size());
+        assertContents(expected, sl);
+        other.insert(new KVPair<>("a", new Rectangle(1, 1, 1, 1)));
+        assertEquals(1, other.size());
+        assertEquals("a", other.firstEntry().getKey());
+    }
+
+
+    /**
+     * test case checking removeRange against removing the pairs of the range
+     * from a copy of the contents
+     */
+    @Test
+    public void testRemoveRange() {
+        Random random = new Random(47);
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.5, 32, 9));
+        sl.setKeyIndexEnabled(true);
+        ArrayList<KVPair<String, Rectangle>> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sl.insert(new KVPair<>("k" + (100 + random.nextInt(400)),
+                new Rectangle(i, 0, 1, 1)));
+        }
+        for (KVPair<String, Rectangle> pair : sl) {
+            expected.add(pair);
+        }
+        for (int round = 0; round < 30; round++) {
+            String a = "k" + (100 + random.nextInt(420));
+            String b = "k" + (100 + random.nextInt(420));
+            if (a.compareTo(b) > 0) {
+                String swap = a;
+                a = b;
+                b = swap;
+            }
+            int count = 0;
+            for (int i = expected.size() - 1; i >= 0; i--) {
+                String key = expected.get(i).getKey();
+                if (key.compareTo(a) >= 0 && key.compareTo(b) < 0) {
+                    expected.remove(i);
+                    count++;
+                }
+            }
+            assertEquals(count, sl.removeRange(a, b));
+            assertContents(expected, sl);
+        }
+        assertEquals(expected.size(), sl.removeRange("", "l"));
+        assertContents(new ArrayList<>(), sl);
+        sl.insert(new KVPair<>("z", new Rectangle(1, 1, 1, 1)));
+        assertEquals(1, sl.search("z").size());
+
+        Exception thrown = null;
+        try {
+            sl.removeRange("b", "a");
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test case checking that removeValuesIf removes the matching pairs in
+     * one pass and keeps the rest of the list intact
+     */
+    @Test
+    public void testRemoveValuesIf() {
+        Random random = new Random(53);
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.5, 32, 3));
+        ArrayList<KVPair<String, Rectangle>> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sl.insert(new KVPair<>("k" + (100 + random.nextInt(200)),
+                new Rectangle(random.nextInt(100), 0, 1, 1)));
+        }
+        for (KVPair<String, Rectangle> pair : sl) {
+            expected.add(pair);
+        }
+        SkipList<String, Rectangle>.Snapshot before = sl.snapshot();
+        for (int bound : new int[] { 90, 50, 10, 100 }) {
+            ArrayList<KVPair<String, Rectangle>> gone = new ArrayList<>();
+            for (int i = 0; i < expected.size(); i++) {
+                if (expected.get(i).getValue().getxCoordinate() >= bound) {
+                    gone.add(expected.remove(i--));
+                }
+            }
+            assertEquals(gone, sl.removeValuesIf(rect -> rect
+                .getxCoordinate() >= bound));
+            assertContents(expected, sl);
+        }
+        assertEquals(500, before.size());
+        int seen = 0;
+        for (KVPair<String, Rectangle> pair : before) {
+            assertNotNull(pair);
+            seen++;
+        }
+        assertEquals(500, seen);
+        before.close();
+        assertTrue(sl.removeValuesIf(rect -> true).size() > 0);
+        assertEquals(0, sl.size());
+        assertNull(sl.firstEntry());
+    }
+
+
+    /**
+     * test case checking that removeValuesIf leaves the list unchanged when
+     * the filter throws, and passes null values to the filter
+     */
+    @Test
+    public void testRemoveValuesIfFilterThrows() {
+        sl = new SkipList<String, Rectangle>(LevelPolicy.seeded(0.5, 32, 9));
+        for (int i = 0; i < 40; i++) {
+            sl.insert(new KVPair<>("k" + (100 + i), new Rectangle(i, 0, 1,
+                1)));
+        }
+        sl.insert(new KVPair<>("k120", null));
+        ArrayList<KVPair<String, Rectangle>> expected = new ArrayList<>();
+        for (KVPair<String, Rectangle> pair : sl) {
+            expected.add(pair);
+        }
+        Exception thrown = null;
+        try {
+            // removes the first pairs, then fails on the null value
+            sl.removeValuesIf(rect -> rect.getxCoordinate() < 10);
+        }
+        catch (NullPointerException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertContents(expected, sl);
+
+        ArrayList<KVPair<String, Rectangle>> removed = sl.removeValuesIf(
+            rect -> rect == null || rect.getxCoordinate() < 10);
+        assertEquals(11, removed.size());
+        assertNull(removed.get(10).getValue());
+        expected.subList(0, 10).clear();
+        expected.remove(10);
+        assertContents(expected, sl);
+    }
+
+    /**
+     * Checks that a list holds exactly the given pairs: in iteration order,
+     * by position, backwards, by search and in the level histogram.
+     *
+     * @param expected
+     *            the pairs in list order
+     * @param list
+     *            the list to check
+     */
+    private void assertContents(
+        List<KVPair<String, Rectangle>> expected,
+        SkipList<String, Rectangle> list) {
+        assertEquals(expected.size(), list.size());
+        Iterator<KVPair<String, Rectangle>> iter = list.iterator();
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), iter.next());
+            assertSame(expected.get(i), list.get(i));
+        }
+        assertFalse(iter.hasNext());
+        Iterator<KVPair<String, Rectangle>> back = list.descendingIterator();
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            assertSame(expected.get(i), back.next());
+        }
+        assertFalse(back.hasNext());
+        for (int i = 0; i < expected.size(); i++) {
+            String key = expected.get(i).getKey();
+            if (i == 0 || !expected.get(i - 1).getKey().equals(key)) {
+                assertEquals(i, list.rankOf(key));
+                assertSame(expected.get(i), list.search(key).get(0));
+            }
+        }
+        assertEquals(expected.size(), list.stats().getNodesAtLevel(1));
+    }
+
 }
@@ -0,0 +1,351 @@
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import student.TestableRandom;
+
+/**
+ * This class implements a SkipList specialised for String keys. Every node
+ * caches the first 8 characters of its key packed into a long, one byte per
+ * character with the first character in the highest byte, so comparing two
+ * prefixes as unsigned longs orders them like String.compareTo. Traversals
+ * compare the cached prefix with the prefix of the search key and only call
+ * compareTo when the prefixes tie, which for names that differ in their first
+ * 8 characters means one primitive comparison per step and no dereference of
+ * the key.
+ *
+ * Names accepted by CommandProcessor are Latin-1, one byte per character. A
+ * character above 0xFF still works: it is packed as 0xFF and every byte after
+ * it as 0xFF too, so such keys tie on the prefix and fall back to compareTo.
+ * Keys shorter than 8 characters are padded with zero bytes.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <V>
+ *            Value
+ */
+public class StringSkipList<V> implements SkipListADT<String, V> {
+    // the highest level a node (and the head) can have
+    private static final int MAX_LEVEL = 31;
+
+    private StringNode head; // First element (Sentinel Node)
+    private int headLevel; // the highest level currently in use
+    private int size; // number of entries in the Skip List
+    private StringNode[] update; // reusable predecessor array
+    private Random rng;
+
+    /**
+     * Initializes an empty list whose head spans every level.
+     */
+    @SuppressWarnings("unchecked")
+    public StringSkipList() {
+        head = new StringNode(null, MAX_LEVEL);
+        update = (StringNode[])Array.newInstance(
+            StringNode.class, MAX_LEVEL + 1);
+        rng = new TestableRandom();
+    }
+
+
+    /**
+     * returns a random level (using geometric distribution), minimum of 1 and
+     * at most MAX_LEVEL
+     *
+     * @return int the randomly generated level
+     */
+    public int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && rng.nextBoolean()) {
+            level++;
+        }
+        return level;
+    }
+
+
+    /**
+     * Packs the first 8 characters of a key into a long so that comparing
+     * packed keys as unsigned longs agrees with String.compareTo whenever the
+     * packed values differ.
+     *
+     * @param key
+     *            the key to pack
+     * @return the packed prefix
+     */
+    public static long prefixOf(String key) {
+        long prefix = 0;
+        int length = Math.min(key.length(), 8);
+        int i = 0;
+        for (; i < length; i++) {
+            char c = key.charAt(i);
+            if (c > 0xFF) {
+                // the rest of the prefix cannot be trusted, so make every key
+                // that agrees up to here tie with this one
+                for (; i < 8; i++) {
+                    prefix = (prefix << 8) | 0xFF;
+                }
+                return prefix;
+            }
+            prefix = (prefix << 8) | c;
+        }
+        return prefix << (8 * (8 - i));
+    }
+
+
+    /**
+     * Compares a node key with a search key, using the cached prefixes first.
+     *
+     * @param node
+     *            the node whose key is compared
+     * @param prefix
+     *            the packed prefix of the search key
+     * @param key
+     *            the search key
+     * @return a negative number, zero or a positive number as the node key is
+     *         smaller than, equal to or greater than the search key
+     */
+    private int compare(StringNode node, long prefix, String key) {
+        if (node.prefix != prefix) {
+            return Long.compareUnsigned(node.prefix, prefix);
+        }
+        return node.key.compareTo(key);
+    }
+
+
+    /**
+     * Descends the levels and fills update with the last node whose key is
+     * smaller than the given key on every level.
+     *
+     * @param prefix
+     *            the packed prefix of the key
+     * @param key
+     *            the key to look for
+     * @return the first node with a key greater than or equal to the key, or
+     *         null
+     */
+    private StringNode find(long prefix, String key) {
+        StringNode curr = head;
+        for (int level = headLevel; level >= 0; level--) {
+            while (curr.forward[level] != null && compare(curr.forward[level],
+                prefix, key) < 0) {
+                curr = curr.forward[level];
+            }
+            update[level] = curr;
+        }
+        return curr.forward[0];
+    }
+
+
+    /**
+     * Searches for the KVPairs with the given key.
+     *
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key, newest first
+     */
+    @Override
+    public ArrayList<KVPair<String, V>> search(String key) {
+        ArrayList<KVPair<String, V>> output = new ArrayList<>();
+        long prefix = prefixOf(key);
+        StringNode curr = find(prefix, key);
+        while (curr != null && compare(curr, prefix, key) == 0) {
+            output.add(curr.pair);
+            curr = curr.forward[0];
+        }
+        return output;
+    }
+
+
+    /**
+     * @return the number of KVPairs in the list
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Inserts the KVPair before any pairs with an equal key, so duplicates
+     * are found newest first.
+     *
+     * @param it
+     *            the KVPair to be inserted
+     */
+    @Override
+    public void insert(KVPair<String, V> it) {
+        long prefix = prefixOf(it.getKey());
+        find(prefix, it.getKey());
+        int randLevel = randomLevel();
+        for (int level = headLevel + 1; level <= randLevel; level++) {
+            update[level] = head;
+        }
+        headLevel = Math.max(headLevel, randLevel);
+        StringNode node = new StringNode(it, randLevel);
+        for (int level = 0; level <= randLevel; level++) {
+            node.forward[level] = update[level].forward[level];
+            update[level].forward[level] = node;
+        }
+        size++;
+    }
+
+
+    /**
+     * Removes the newest KVPair with the given key.
+     *
+     * @param key
+     *            of the KVPair to be removed
+     * @return the removed pair if the key was present and null if not
+     */
+    @Override
+    public KVPair<String, V> remove(String key) {
+        if (key == null) {
+            return null;
+        }
+        long prefix = prefixOf(key);
+        StringNode node = find(prefix, key);
+        if (node == null || compare(node, prefix, key) != 0) {
+            return null;
+        }
+        unlink(node);
+        return node.pair;
+    }
+
+
+    /**
+     * Removes the first KVPair in list order holding the specified value.
+     * The pairs are scanned on level 0, and the predecessors of the pair are
+     * then found by key, stepping over the duplicates in front of it.
+     *
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair if the value was present and null if not
+     */
+    @Override
+    public KVPair<String, V> removeByValue(V val) {
+        if (val == null) {
+            return null;
+        }
+        StringNode node = head.forward[0];
+        while (node != null && !val.equals(node.pair.getValue())) {
+            node = node.forward[0];
+        }
+        if (node == null) {
+            return null;
+        }
+        StringNode curr = find(node.prefix, node.key);
+        while (curr != node) {
+            for (int level = 0; level <= curr.level; level++) {
+                update[level] = curr;
+            }
+            curr = curr.forward[0];
+        }
+        unlink(node);
+        return node.pair;
+    }
+
+
+    /**
+     * Unlinks a node whose predecessors are in update and lowers the head
+     * level if its top levels are now empty.
+     *
+     * @param node
+     *            the node to be removed
+     */
+    private void unlink(StringNode node) {
+        for (int level = 0; level <= node.level; level++) {
+            update[level].forward[level] = node.forward[level];
+        }
+        while (headLevel > 0 && head.forward[headLevel] == null) {
+            headLevel--;
+        }
+        size--;
+    }
+
+
+    /**
+     * Prints out the list in a human readable format to the console.
+     */
+    @Override
+    public void dump() {
+        System.out.println("SkipList dump:");
+        System.out.println("Node with depth " + Math.max(1, headLevel)
+            + ", value null");
+        StringNode node = head.forward[0];
+        while (node != null) {
+            System.out.println("node with depth " + node.level + " value "
+                + node.key + " " + node.pair.getValue());
+            node = node.forward[0];
+        }
+        System.out.println("SkipList size is: " + size);
+    }
+
+    /**
+     * This class implements a node of the StringSkipList, caching the packed
+     * prefix of its key next to the forward pointers.
+     */
+    private class StringNode {
+
+        // the packed first 8 characters of the key
+        private final long prefix;
+        // the key, read only when prefixes tie
+        private final String key;
+        // the KVPair to hold
+        private final KVPair<String, V> pair;
+        // An array of pointers to subsequent nodes
+        private final StringNode[] forward;
+        // the level of the node
+        private final int level;
+
+        /**
+         * Initializes a node holding a pair, or the head if pair is null.
+         *
+         * @param pair
+         *            the KVPair to hold
+         * @param level
+         *            the level of the node
+         */
+        @SuppressWarnings("unchecked")
+        public StringNode(KVPair<String, V> pair, int level) {
+            this.pair = pair;
+            this.key = (pair == null) ? null : pair.getKey();
+            this.prefix = (pair == null) ? 0 : prefixOf(key);
+            this.level = level;
+            forward = (StringNode[])Array.newInstance(
+                StringNode.class, level + 1);
+        }
+    }
+
+
+    private class StringSkipListIterator
+        implements Iterator<KVPair<String, V>> {
+        private StringNode node;
+
+        public StringSkipListIterator() {
+            node = head.forward[0];
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return node != null;
+        }
+
+
+        @Override
+        public KVPair<String, V> next() {
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            KVPair<String, V> elem = node.pair;
+            node = node.forward[0];
+            return elem;
+        }
+    }
+
+    @Override
+    public Iterator<KVPair<String, V>> iterator() {
+        return new StringSkipListIterator();
+    }
+
+}
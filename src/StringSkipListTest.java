@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class tests the methods of StringSkipList class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class StringSkipListTest extends SkipListADTTestCase {
+    /**
+     * The skip list instance used for testing.
+     */
+    private StringSkipList<Rectangle> sl;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        sl = new StringSkipList<Rectangle>();
+    }
+
+
+    @Override
+    protected SkipListADT<String, Rectangle> createList() {
+        return new StringSkipList<Rectangle>();
+    }
+
+
+    /**
+     * Mostly picks keys that share their first 8 characters and differ only
+     * after them, so that the packed prefixes tie and compareTo decides,
+     * mixed with the 8 character prefix itself and with short keys that
+     * differ in their prefix.
+     *
+     * @param random
+     *            the source of the random operations
+     * @return the key
+     */
+    @Override
+    protected String randomKey(Random random) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return "n" + random.nextInt(20);
+            case 1:
+                return "rectangl";
+            default:
+                return "rectangl" + random.nextInt(30);
+        }
+    }
+
+
+    /**
+     * Tests that packed prefixes never contradict String.compareTo, also for
+     * short keys, long keys with a shared prefix and characters above 0xFF
+     */
+    public void testPrefixOrder() {
+        String[] keys = { "", "a", "a_", "ab", "abcdefgh", "abcdefghi",
+            "abcdefgz", "Z9", "\u00FF", "\u00FFz", "\u0100",
+            "\u0100a", "\u00FF\u0100", "a\u0000", "zzzzzzzzzz" };
+        for (String a : keys) {
+            for (String b : keys) {
+                assertPrefixAgrees(a, b);
+            }
+        }
+        Random random = new Random(29);
+        for (int i = 0; i < 20000; i++) {
+            assertPrefixAgrees(randomString(random), randomString(random));
+        }
+    }
+
+
+    /**
+     * Checks that the prefixes of two keys, if they differ, are ordered like
+     * the keys.
+     *
+     * @param a
+     *            one key
+     * @param b
+     *            the other key
+     */
+    private void assertPrefixAgrees(String a, String b) {
+        int byPrefix = Long.compareUnsigned(StringSkipList.prefixOf(a),
+            StringSkipList.prefixOf(b));
+        if (byPrefix != 0) {
+            assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(
+                byPrefix));
+        }
+    }
+
+
+    /**
+     * @param random
+     *            the random numbers to use
+     * @return a key of up to 11 characters, mostly from a small alphabet
+     */
+    private String randomString(Random random) {
+        StringBuilder key = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                key.append((char)(0xF0 + random.nextInt(32)));
+            }
+            else {
+                key.append((char)('a' + random.nextInt(3)));
+            }
+        }
+        return key.toString();
+    }
+
+
+    /**
+     * Tests insert and search, including duplicates which are returned newest
+     * first and keys sharing their first 8 characters
+     */
+    public void testInsertAndSearch() {
+        Rectangle r1 = new Rectangle(0, 0, 5, 5);
+        Rectangle r2 = new Rectangle(10, 10, 5, 5);
+        Rectangle r3 = new Rectangle(20, 20, 5, 5);
+        sl.insert(new KVPair<>("rectangle1", r1));
+        sl.insert(new KVPair<>("rectangle", r2));
+        sl.insert(new KVPair<>("rectangle1", r3));
+        assertEquals(3, sl.size());
+
+        ArrayList<KVPair<String, Rectangle>> results = sl.search(
+            "rectangle1");
+        assertEquals(2, results.size());
+        assertEquals(r3, results.get(0).getValue());
+        assertEquals(r1, results.get(1).getValue());
+        assertEquals(r2, sl.search("rectangle").get(0).getValue());
+        assertTrue(sl.search("rectangl").isEmpty());
+        assertTrue(sl.search("rectangle2").isEmpty());
+    }
+
+}
@@ -0,0 +1,522 @@
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import student.TestableRandom;
+
+/**
+ * This class implements an unrolled SkipList: every node is a block holding
+ * a small sorted array of KVPairs, and the towers are built over the blocks
+ * instead of over single pairs. With 32 pairs per block there are about 32
+ * times fewer nodes to step over, a search ends with a binary search inside
+ * one array, and iteration walks arrays instead of chasing one pointer per
+ * pair.
+ *
+ * A block is ordered by the key of its first pair. Duplicates are kept
+ * newest first, exactly like SkipList, and a run of duplicates may continue
+ * from one block into the next. A full block is split in two halves before
+ * a pair is added to it, and a block that falls below half the capacity
+ * absorbs its successor when together they fill at most three quarters of
+ * a block, which leaves room for a few inserts before the next split.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ * @param <K>
+ *            Key
+ * @param <V>
+ *            Value
+ */
+public class UnrolledSkipList<K extends Comparable<? super K>, V>
+    implements SkipListADT<K, V> {
+    // the highest level a block (and the head) can have
+    private static final int MAX_LEVEL = 31;
+    // the number of pairs a block holds unless told otherwise
+    public static final int DEFAULT_CAPACITY = 32;
+    // the smallest block capacity that still splits into useful halves
+    public static final int MIN_CAPACITY = 4;
+
+    private Block head; // First element (Sentinel Node)
+    private int headLevel; // the highest level currently in use
+    private int size; // number of pairs in all blocks
+    private int blockCount; // number of blocks
+    private final int capacity; // the most pairs a block holds
+    private Block[] update; // reusable predecessor array
+    private Random rng;
+
+    /**
+     * Initializes an empty list with blocks of DEFAULT_CAPACITY pairs.
+     */
+    public UnrolledSkipList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     * Initializes an empty list with blocks of the given capacity.
+     *
+     * @param capacity
+     *            the most pairs a block holds
+     * @throws IllegalArgumentException
+     *             if capacity is below MIN_CAPACITY
+     */
+    @SuppressWarnings("unchecked")
+    public UnrolledSkipList(int capacity) {
+        if (capacity < MIN_CAPACITY) {
+            throw new IllegalArgumentException("Block capacity must be at "
+                + "least " + MIN_CAPACITY + ": " + capacity);
+        }
+        this.capacity = capacity;
+        head = new Block(MAX_LEVEL, 0);
+        update = (Block[])Array.newInstance(Block.class, MAX_LEVEL + 1);
+        rng = new TestableRandom();
+    }
+
+
+    /**
+     * returns a random level (using geometric distribution), minimum of 1 and
+     * at most MAX_LEVEL
+     *
+     * @return int the randomly generated level
+     */
+    public int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && rng.nextBoolean()) {
+            level++;
+        }
+        return level;
+    }
+
+
+    /**
+     * Descends the levels and fills update with the last block whose first
+     * key is smaller than the given key on every level. The first pair with
+     * the key, if there is one, is in that block or at the start of the next.
+     *
+     * @param key
+     *            the key to look for
+     * @return the last block on level 0 whose first key is smaller, or head
+     */
+    private Block find(K key) {
+        Block curr = head;
+        for (int level = headLevel; level >= 0; level--) {
+            while (curr.forward[level] != null && curr.forward[level]
+                .firstKey().compareTo(key) < 0) {
+                curr = curr.forward[level];
+            }
+            update[level] = curr;
+        }
+        return curr;
+    }
+
+
+    /**
+     * Fills update with the predecessors of a block on every level. The
+     * descent stops in front of the blocks with the same first key, and the
+     * walk over those on level 0 lifts update past each one.
+     *
+     * @param block
+     *            a block in the list
+     */
+    private void findPredecessors(Block block) {
+        Block curr = find(block.firstKey()).forward[0];
+        while (curr != block) {
+            for (int level = 0; level <= curr.level; level++) {
+                update[level] = curr;
+            }
+            curr = curr.forward[0];
+        }
+    }
+
+
+    /**
+     * Searches for the KVPairs with the given key.
+     *
+     * @param key
+     *            key to be searched for
+     * @return ArrayList of KVPairs that match the search key, newest first
+     */
+    @Override
+    public ArrayList<KVPair<K, V>> search(K key) {
+        ArrayList<KVPair<K, V>> output = new ArrayList<>();
+        Block block = find(key);
+        int index = (block == head) ? 0 : block.lowerBound(key);
+        while (true) {
+            if (index == block.count) {
+                block = block.forward[0];
+                index = 0;
+                if (block == null) {
+                    break;
+                }
+            }
+            if (block.pairs[index].getKey().compareTo(key) != 0) {
+                break;
+            }
+            output.add(block.pairs[index++]);
+        }
+        return output;
+    }
+
+
+    /**
+     * @return the number of KVPairs in the list
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @return the number of blocks, which is the number of nodes
+     */
+    public int blockCount() {
+        return blockCount;
+    }
+
+
+    /**
+     * Inserts the KVPair in front of any pairs with an equal key, so
+     * duplicates are found newest first. The pair goes into the last block
+     * whose first key is smaller, or into the first block if there is none,
+     * and that block is split first if it is full.
+     *
+     * @param it
+     *            the KVPair to be inserted
+     */
+    @Override
+    public void insert(KVPair<K, V> it) {
+        Block block = find(it.getKey());
+        int index;
+        if (block == head) {
+            block = head.forward[0];
+            index = 0;
+            if (block == null) {
+                block = new Block(randomLevel(), capacity);
+                link(block, head);
+            }
+        }
+        else {
+            index = block.lowerBound(it.getKey());
+        }
+        if (block.count == capacity) {
+            Block upper = split(block);
+            if (index > block.count) {
+                index -= block.count;
+                block = upper;
+            }
+        }
+        block.insertAt(index, it);
+        size++;
+    }
+
+
+    /**
+     * Moves the upper half of a full block into a new block linked right
+     * after it. Above the level of the block, update must hold its
+     * predecessors.
+     *
+     * @param block
+     *            the block to split
+     * @return the new block
+     */
+    private Block split(Block block) {
+        Block upper = new Block(randomLevel(), capacity);
+        int half = block.count / 2;
+        upper.count = block.count - half;
+        System.arraycopy(block.pairs, half, upper.pairs, 0, upper.count);
+        for (int i = half; i < block.count; i++) {
+            block.pairs[i] = null;
+        }
+        block.count = half;
+        link(upper, block);
+        return upper;
+    }
+
+
+    /**
+     * Links a new block right after another one. On the levels of the other
+     * block the new one follows it directly; above them it follows the
+     * predecessor in update, or head above the current head level.
+     *
+     * @param block
+     *            the new block
+     * @param after
+     *            the block (or head) it comes after on level 0
+     */
+    private void link(Block block, Block after) {
+        for (int level = headLevel + 1; level <= block.level; level++) {
+            update[level] = head;
+        }
+        headLevel = Math.max(headLevel, block.level);
+        for (int level = 0; level <= block.level; level++) {
+            Block pred = (after.level >= level) ? after : update[level];
+            block.forward[level] = pred.forward[level];
+            pred.forward[level] = block;
+        }
+        blockCount++;
+    }
+
+
+    /**
+     * Removes the newest KVPair with the given key.
+     *
+     * @param key
+     *            of the KVPair to be removed
+     * @return the removed pair if the key was present and null if not
+     */
+    @Override
+    public KVPair<K, V> remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        Block block = find(key);
+        int index = (block == head) ? 0 : block.lowerBound(key);
+        if (index == block.count) {
+            block = block.forward[0];
+            index = 0;
+        }
+        if (block == null || block.pairs[index].getKey().compareTo(
+            key) != 0) {
+            return null;
+        }
+        return removeAt(block, index);
+    }
+
+
+    /**
+     * Removes the first KVPair in list order holding the specified value.
+     *
+     * @param val
+     *            the value of the KVPair to be removed
+     * @return the removed pair if the value was present and null if not
+     */
+    @Override
+    public KVPair<K, V> removeByValue(V val) {
+        if (val == null) {
+            return null;
+        }
+        Block block = head.forward[0];
+        while (block != null) {
+            for (int i = 0; i < block.count; i++) {
+                if (val.equals(block.pairs[i].getValue())) {
+                    return removeAt(block, i);
+                }
+            }
+            block = block.forward[0];
+        }
+        return null;
+    }
+
+
+    /**
+     * Removes one pair from a block. An empty block is unlinked, and a block
+     * below half the capacity absorbs its successor if together they fill
+     * at most three quarters of a block.
+     *
+     * @param block
+     *            the block holding the pair
+     * @param index
+     *            the position of the pair in the block
+     * @return the removed pair
+     */
+    private KVPair<K, V> removeAt(Block block, int index) {
+        if (block.count == 1) {
+            findPredecessors(block);
+            unlink(block, null);
+            size--;
+            return block.removeAt(index);
+        }
+        KVPair<K, V> removed = block.removeAt(index);
+        size--;
+        if (block.count < capacity / 2 && block.forward[0] != null
+            && block.count + block.forward[0].count <= capacity * 3 / 4) {
+            Block next = block.forward[0];
+            System.arraycopy(next.pairs, 0, block.pairs, block.count,
+                next.count);
+            block.count += next.count;
+            findPredecessors(block);
+            unlink(next, block);
+        }
+        return removed;
+    }
+
+
+    /**
+     * Unlinks a block and lowers the head level if its top levels are now
+     * empty. On the levels of prev the block follows prev directly; above
+     * them its predecessors must be in update.
+     *
+     * @param block
+     *            the block to be removed
+     * @param prev
+     *            the block in front of it on level 0, or null if update
+     *            holds the predecessors on every level
+     */
+    private void unlink(Block block, Block prev) {
+        for (int level = 0; level <= block.level; level++) {
+            Block pred = (prev != null && prev.level >= level)
+                ? prev
+                : update[level];
+            pred.forward[level] = block.forward[level];
+        }
+        while (headLevel > 0 && head.forward[headLevel] == null) {
+            headLevel--;
+        }
+        blockCount--;
+    }
+
+
+    /**
+     * Prints out the list in a human readable format to the console, one line
+     * per KVPair.
+     */
+    @Override
+    public void dump() {
+        System.out.println("SkipList dump:");
+        System.out.println("Node with depth " + Math.max(1, headLevel)
+            + ", value null");
+        Block block = head.forward[0];
+        while (block != null) {
+            for (int i = 0; i < block.count; i++) {
+                System.out.println("node with depth " + block.level
+                    + " value " + block.pairs[i].getKey() + " "
+                    + block.pairs[i].getValue());
+            }
+            block = block.forward[0];
+        }
+        System.out.println("SkipList size is: " + size);
+    }
+
+    /**
+     * This class implements a node of the UnrolledSkipList holding a sorted
+     * run of pairs.
+     */
+    private class Block {
+
+        // the pairs of the block, sorted by key with duplicates newest first
+        private final KVPair<K, V>[] pairs;
+        // the number of pairs in the block
+        private int count;
+        // An array of pointers to subsequent blocks
+        private final Block[] forward;
+        // the level of the block
+        private final int level;
+
+        /**
+         * Initializes an empty block.
+         *
+         * @param level
+         *            the level of the block
+         * @param capacity
+         *            the most pairs it holds
+         */
+        @SuppressWarnings("unchecked")
+        public Block(int level, int capacity) {
+            this.level = level;
+            forward = (Block[])Array.newInstance(Block.class, level + 1);
+            pairs = (KVPair<K, V>[])Array.newInstance(KVPair.class, capacity);
+        }
+
+
+        /**
+         * @return the key of the first pair, which orders the block
+         */
+        public K firstKey() {
+            return pairs[0].getKey();
+        }
+
+
+        /**
+         * Binary searches for the first pair whose key is not smaller than
+         * the given key.
+         *
+         * @param key
+         *            the key to look for
+         * @return its position, or count if every key is smaller
+         */
+        public int lowerBound(K key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (pairs[mid].getKey().compareTo(key) < 0) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+
+        /**
+         * Inserts a pair at a position, shifting the later ones up. The
+         * block must not be full.
+         *
+         * @param index
+         *            the position of the pair
+         * @param pair
+         *            the pair to insert
+         */
+        public void insertAt(int index, KVPair<K, V> pair) {
+            System.arraycopy(pairs, index, pairs, index + 1, count - index);
+            pairs[index] = pair;
+            count++;
+        }
+
+
+        /**
+         * Removes the pair at a position, keeping the others in order.
+         *
+         * @param index
+         *            the position of the pair
+         * @return the removed pair
+         */
+        public KVPair<K, V> removeAt(int index) {
+            KVPair<K, V> removed = pairs[index];
+            System.arraycopy(pairs, index + 1, pairs, index, count - index
+                - 1);
+            pairs[--count] = null;
+            return removed;
+        }
+    }
+
+
+    private class UnrolledSkipListIterator implements Iterator<KVPair<K, V>> {
+        private Block block;
+        private int index;
+
+        public UnrolledSkipListIterator() {
+            block = head.forward[0];
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return block != null;
+        }
+
+
+        @Override
+        public KVPair<K, V> next() {
+            if (block == null) {
+                throw new NoSuchElementException();
+            }
+            KVPair<K, V> elem = block.pairs[index++];
+            if (index == block.count) {
+                block = block.forward[0];
+                index = 0;
+            }
+            return elem;
+        }
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new UnrolledSkipListIterator();
+    }
+
+}
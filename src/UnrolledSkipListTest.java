@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class tests the methods of UnrolledSkipList class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class UnrolledSkipListTest extends SkipListADTTestCase {
+    /**
+     * The skip list instance used for testing, with small blocks so that
+     * splits and merges happen often.
+     */
+    private UnrolledSkipList<String, Rectangle> sl;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     */
+    public void setUp() {
+        sl = new UnrolledSkipList<String, Rectangle>(4);
+    }
+
+
+    @Override
+    protected SkipListADT<String, Rectangle> createList() {
+        return new UnrolledSkipList<String, Rectangle>(4);
+    }
+
+
+    /**
+     * Tests that a run of duplicates spanning several blocks is returned
+     * newest first and removed newest first
+     */
+    public void testDuplicatesAcrossBlocks() {
+        sl.insert(new KVPair<>("a", new Rectangle(0, 0, 1, 1)));
+        sl.insert(new KVPair<>("z", new Rectangle(0, 0, 1, 1)));
+        ArrayList<Rectangle> inserted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Rectangle rect = new Rectangle(i, i, 1, 1);
+            inserted.add(0, rect);
+            sl.insert(new KVPair<>("m", rect));
+        }
+        assertEquals(12, sl.size());
+        assertTrue(sl.blockCount() >= 3);
+
+        ArrayList<KVPair<String, Rectangle>> results = sl.search("m");
+        assertEquals(10, results.size());
+        for (int i = 0; i < 10; i++) {
+            assertSame(inserted.get(i), results.get(i).getValue());
+        }
+        assertTrue(sl.search("b").isEmpty());
+        assertTrue(sl.search("0").isEmpty());
+        assertTrue(sl.search("zz").isEmpty());
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(inserted.get(i), sl.remove("m").getValue());
+        }
+        assertNull(sl.remove("m"));
+        assertNull(sl.remove(null));
+        assertEquals(2, sl.size());
+        assertEquals(1, sl.blockCount());
+    }
+
+
+    /**
+     * Tests that emptied blocks are unlinked and sparse neighbours merged
+     */
+    public void testSplitAndMerge() {
+        sl = new UnrolledSkipList<String, Rectangle>(8);
+        for (int i = 0; i < 64; i++) {
+            sl.insert(new KVPair<>("k" + (100 + i), new Rectangle(i, 0, 1,
+                1)));
+        }
+        assertEquals(64, sl.size());
+        int blocks = sl.blockCount();
+        assertTrue(blocks >= 8);
+        assertTrue(blocks <= 16);
+
+        for (int i = 0; i < 64; i += 2) {
+            assertNotNull(sl.remove("k" + (100 + i)));
+        }
+        assertEquals(32, sl.size());
+        assertTrue(sl.blockCount() < blocks);
+        while (sl.size() > 0) {
+            assertNotNull(sl.removeByValue(sl.iterator().next().getValue()));
+        }
+        assertEquals(0, sl.blockCount());
+        assertFalse(sl.iterator().hasNext());
+        assertTrue(sl.search("k101").isEmpty());
+    }
+
+
+    /**
+     * Tests that a long random mix of operations gives the same results and
+     * contents as SkipList, for small and default block sizes
+     */
+    @Override
+    public void testMatchesSkipList() {
+        for (int capacity : new int[] { 4, 5,
+            UnrolledSkipList.DEFAULT_CAPACITY }) {
+            assertMatchesSkipList(new UnrolledSkipList<String, Rectangle>(
+                capacity), new Random(13 + capacity), 4000);
+        }
+    }
+
+
+    /**
+     * Tests that a pair inserted into a full block lands at the right place
+     * for every position, including both sides of the split point
+     */
+    public void testSplitAtEveryPosition() {
+        for (int position = 0; position <= 8; position++) {
+            sl = new UnrolledSkipList<String, Rectangle>(8);
+            SkipList<String, Rectangle> expected = new SkipList<>();
+            for (int i = 0; i < 8; i++) {
+                insertBoth(expected, "k" + (100 + 2 * i));
+            }
+            assertEquals(1, sl.blockCount());
+            insertBoth(expected, "k" + (99 + 2 * position));
+            assertEquals(2, sl.blockCount());
+            assertSamePairs(expected, sl);
+            assertSamePairs(expected.search("k" + (99 + 2 * position)), sl
+                .search("k" + (99 + 2 * position)));
+        }
+    }
+
+
+    /**
+     * Tests that a block below half the capacity absorbs its successor
+     * exactly when together they fill at most three quarters of a block
+     */
+    public void testMergeAtThreshold() {
+        sl = new UnrolledSkipList<String, Rectangle>(8);
+        SkipList<String, Rectangle> expected = new SkipList<>();
+        // the ninth pair splits the block into 4 and 5 pairs
+        for (int i = 0; i < 9; i++) {
+            insertBoth(expected, "k" + (100 + i));
+        }
+        assertEquals(2, sl.blockCount());
+        assertSamePair(expected.remove("k108"), sl.remove("k108"));
+        // 3 + 4 pairs is above three quarters of 8
+        assertSamePair(expected.remove("k100"), sl.remove("k100"));
+        assertEquals(2, sl.blockCount());
+        // 2 + 4 pairs is exactly three quarters of 8
+        assertSamePair(expected.remove("k101"), sl.remove("k101"));
+        assertEquals(1, sl.blockCount());
+        assertSamePairs(expected, sl);
+        assertSamePairs(expected.search("k105"), sl.search("k105"));
+    }
+
+
+    /**
+     * Inserts a new pair with the given key into sl and into a SkipList.
+     *
+     * @param expected
+     *            the SkipList
+     * @param key
+     *            the key of the pair
+     */
+    private void insertBoth(SkipList<String, Rectangle> expected,
+        String key) {
+        KVPair<String, Rectangle> pair = new KVPair<>(key, new Rectangle(0, 0,
+            1, 1));
+        expected.insert(pair);
+        sl.insert(pair);
+    }
+
+
+    /**
+     * Tests that block capacities below the minimum are rejected
+     */
+    public void testCapacityTooSmall() {
+        Exception thrown = null;
+        try {
+            new UnrolledSkipList<String, Rectangle>(3);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertEquals(0, new UnrolledSkipList<String, Rectangle>().size());
+    }
+
+
+    /**
+     * Tests that a Database runs on top of the list
+     */
+    public void testBehindDatabase() {
+        Database db = new Database(sl);
+        for (int i = 0; i < 10; i++) {
+            db.insert(new KVPair<>("r" + i, new Rectangle(i, i, 2, 2)));
+        }
+        db.remove("r3");
+        db.remove(5, 5, 2, 2);
+        db.search("r7");
+        String output = systemOut().getHistory();
+        assertTrue(output.contains("Rectangle removed: (r3, 3, 3, 2, 2)"));
+        assertTrue(output.contains("Rectangle removed: (r5, 5, 5, 2, 2)"));
+        assertTrue(output.contains("(r7, 7, 7, 2, 2)"));
+        assertEquals(8, sl.size());
+    }
+
+
+    /**
+     * Tests that removeregion works on top of the list through the default
+     * removeValuesIf
+     */
+    public void testRemoveRegionBehindDatabase() {
+        Database db = new Database(sl);
+        for (int i = 0; i < 10; i++) {
+            db.insert(new KVPair<>("r" + i, new Rectangle(i, i, 2, 2)));
+        }
+        db.removeregion(0, 0, 3, 3);
+        String output = systemOut().getHistory();
+        assertTrue(output.contains("Rectangle removed: (r0, 0, 0, 2, 2)"));
+        assertTrue(output.contains("Rectangle removed: (r1, 1, 1, 2, 2)"));
+        assertTrue(output.contains("Rectangle removed: (r2, 2, 2, 2, 2)"));
+        assertEquals(7, sl.size());
+        assertTrue(sl.search("r1").isEmpty());
+        assertEquals(1, sl.search("r3").size());
+    }
+
+}
@@ -0,0 +1,668 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements an append-only write-ahead log of the changes made to
+ * a Database: inserts, both kinds of remove and region removes. Every record
+ * is framed by its length and a CRC32 of its contents, so recovery stops at
+ * the first record that was only partly written.
+ *
+ * Records are collected in a buffer and written to a FileChannel that is
+ * grown in PREALLOCATE byte steps of zeros, so forcing the data to disk does
+ * not also have to update the file size. Forcing uses group commit: one
+ * thread at a time writes everything appended so far and forces it, while
+ * the others keep appending; a thread whose records were covered by that
+ * force returns without forcing again, so many changes share one force. The
+ * Durability decides when commit forces.
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class WriteAheadLog implements AutoCloseable {
+    // the number of bytes the file is grown by at a time
+    public static final int PREALLOCATE = 1 << 20;
+    // the initial size of the record buffer
+    private static final int BUFFER_SIZE = 1 << 16;
+    // the length of the header in front of every record: length and CRC
+    private static final int HEADER = 8;
+    // the longest record that recovery accepts
+    private static final int MAX_RECORD = 1 << 20;
+
+    private static final byte INSERT = 1;
+    private static final byte REMOVE_NAME = 2;
+    private static final byte REMOVE_RECTANGLE = 3;
+    private static final byte REMOVE_REGION = 4;
+
+    /**
+     * When commit makes the records durable.
+     */
+    public enum Durability {
+        /** every commit forces the records to disk before it returns */
+        EVERY_OP,
+        /** a background thread forces the records every few milliseconds */
+        INTERVAL,
+        /** commit hands the records to the operating system only */
+        OS_BUFFERED
+    }
+
+    /**
+     * Receives the records of a log in the order they were written.
+     */
+    public interface Handler {
+        /**
+         * @param pair
+         *            a KVPair that was inserted
+         */
+        public void insert(KVPair<String, Rectangle> pair);
+
+
+        /**
+         * @param name
+         *            the name that was removed
+         */
+        public void remove(String name);
+
+
+        /**
+         * @param rect
+         *            the rectangle that was removed
+         */
+        public void remove(Rectangle rect);
+
+
+        /**
+         * @param region
+         *            the region whose rectangles were removed
+         */
+        public void removeRegion(Rectangle region);
+    }
+
+    private final FileChannel channel; // the log file
+    private final Durability durability; // when commit forces
+    // forces the log every interval, or null unless Durability.INTERVAL
+    private final ScheduledExecutorService timer;
+
+    // guards buffer, appended, written and allocated
+    private final Object appendLock = new Object();
+    // the records that were not written to the channel yet
+    private ByteBuffer buffer;
+    // the log position after the last appended record
+    private long appended;
+    // the log position up to which the records are in the channel
+    private long written;
+    // the size of the file, zero filled after written
+    private long allocated;
+
+    // held by the thread that is forcing
+    private final Object syncLock = new Object();
+    // the log position up to which the records are forced
+    private volatile long durable;
+    // the number of forces, for checking that commits are grouped
+    private volatile long forces;
+    // the number of commits that found their records forced by another one
+    private final LongAdder sharedCommits = new LongAdder();
+    // the first failure to write the log; once set, nothing more is accepted
+    private volatile IOException failure;
+    // true once close was called
+    private boolean closed;
+
+    /**
+     * Opens a log for appending, creating the file if it does not exist. The
+     * records already in it are kept; anything after the last complete
+     * record is overwritten with zeros.
+     *
+     * @param path
+     *            the log file
+     * @param durability
+     *            when commit forces the records to disk
+     * @param intervalMillis
+     *            the milliseconds between forces for Durability.INTERVAL
+     * @throws IOException
+     *             if the file cannot be opened or read
+     * @throws IllegalArgumentException
+     *             if the interval is not positive for Durability.INTERVAL
+     */
+    public WriteAheadLog(Path path, Durability durability, long intervalMillis)
+        throws IOException {
+        if (durability == Durability.INTERVAL && intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: "
+                + intervalMillis);
+        }
+        this.durability = durability;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = scan(channel, null);
+        allocated = channel.size();
+        appended = end;
+        written = end;
+        durable = end;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        // a torn record after the end must not be mistaken for a new one
+        zeroFill(end, allocated);
+        if (durability == Durability.INTERVAL) {
+            timer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "write-ahead-log");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(this::syncInBackground,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        else {
+            timer = null;
+        }
+    }
+
+
+    /**
+     * Reads the records of a log and hands them to a handler, stopping at the
+     * end of the log or at the first record that is incomplete or damaged.
+     *
+     * @param path
+     *            the log file; a missing file is an empty log
+     * @param handler
+     *            receives the records in order
+     * @return the number of records read
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static int replay(Path path, Handler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(path,
+            StandardOpenOption.READ)) {
+            int[] count = new int[1];
+            scan(in, new Handler() {
+                @Override
+                public void insert(KVPair<String, Rectangle> pair) {
+                    count[0]++;
+                    handler.insert(pair);
+                }
+
+
+                @Override
+                public void remove(String name) {
+                    count[0]++;
+                    handler.remove(name);
+                }
+
+
+                @Override
+                public void remove(Rectangle rect) {
+                    count[0]++;
+                    handler.remove(rect);
+                }
+
+
+                @Override
+                public void removeRegion(Rectangle region) {
+                    count[0]++;
+                    handler.removeRegion(region);
+                }
+            });
+            return count[0];
+        }
+    }
+
+
+    /**
+     * Reads the records from the start of a channel.
+     *
+     * @param in
+     *            the channel of the log file
+     * @param handler
+     *            receives the records, or null to only find the end
+     * @return the position after the last complete record
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long scan(FileChannel in, Handler handler)
+        throws IOException {
+        in.position(0);
+        InputStream stream = Channels.newInputStream(in);
+        DataInputStream data = new DataInputStream(
+            new BufferedInputStream(stream, BUFFER_SIZE));
+        long end = 0;
+        CRC32 crc = new CRC32();
+        try {
+            while (true) {
+                int length = data.readInt();
+                int checksum = data.readInt();
+                if (length <= 0 || length > MAX_RECORD) {
+                    return end;
+                }
+                byte[] record = new byte[length];
+                data.readFully(record);
+                crc.reset();
+                crc.update(record, 0, length);
+                if ((int)crc.getValue() != checksum) {
+                    return end;
+                }
+                if (handler != null) {
+                    dispatch(ByteBuffer.wrap(record), handler);
+                }
+                end += HEADER + length;
+            }
+        }
+        catch (EOFException e) {
+            return end;
+        }
+    }
+
+
+    /**
+     * Decodes one record and calls the matching method of the handler.
+     *
+     * @param record
+     *            the type byte and contents of the record
+     * @param handler
+     *            receives the record
+     */
+    private static void dispatch(ByteBuffer record, Handler handler) {
+        byte type = record.get();
+        if (type == INSERT) {
+            String name = getName(record);
+            handler.insert(new KVPair<>(name, getRectangle(record)));
+        }
+        else if (type == REMOVE_NAME) {
+            handler.remove(getName(record));
+        }
+        else if (type == REMOVE_RECTANGLE) {
+            handler.remove(getRectangle(record));
+        }
+        else if (type == REMOVE_REGION) {
+            handler.removeRegion(getRectangle(record));
+        }
+    }
+
+
+    /**
+     * @param record
+     *            a record positioned at a name
+     * @return the name
+     */
+    private static String getName(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * @param record
+     *            a record positioned at a rectangle
+     * @return the rectangle
+     */
+    private static Rectangle getRectangle(ByteBuffer record) {
+        return new Rectangle(record.getInt(), record.getInt(), record
+            .getInt(), record.getInt());
+    }
+
+
+    /**
+     * Appends an insert.
+     *
+     * @param pair
+     *            the KVPair that was inserted
+     * @throws UncheckedIOException
+     *             if the log cannot be written
+     */
+    public void logInsert(KVPair<String, Rectangle> pair) {
+        append(INSERT, pair.getKey(), pair.getValue());
+    }
+
+
+    /**
+     * Appends a remove by name.
+     *
+     * @param name
+     *            the name that was removed
+     * @throws UncheckedIOException
+     *             if the log cannot be written
+     */
+    public void logRemove(String name) {
+        append(REMOVE_NAME, name, null);
+    }
+
+
+    /**
+     * Appends a remove by coordinates.
+     *
+     * @param rect
+     *            the rectangle that was removed
+     * @throws UncheckedIOException
+     *             if the log cannot be written
+     */
+    public void logRemove(Rectangle rect) {
+        append(REMOVE_RECTANGLE, null, rect);
+    }
+
+
+    /**
+     * Appends a remove of every rectangle intersecting a region.
+     *
+     * @param region
+     *            the region
+     * @throws UncheckedIOException
+     *             if the log cannot be written
+     */
+    public void logRemoveRegion(Rectangle region) {
+        append(REMOVE_REGION, null, region);
+    }
+
+
+    /**
+     * Encodes a record into the buffer, first writing the buffer to the
+     * channel if the record does not fit.
+     *
+     * @param type
+     *            the type of the record
+     * @param name
+     *            the name in the record, or null
+     * @param rect
+     *            the rectangle in the record, or null
+     */
+    private void append(byte type, String name, Rectangle rect) {
+        byte[] bytes = (name == null)
+            ? null
+            : name.getBytes(StandardCharsets.UTF_8);
+        if (bytes != null && bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Name too long for the log");
+        }
+        int length = 1 + ((bytes == null) ? 0 : 2 + bytes.length)
+            + ((rect == null) ? 0 : 16);
+        synchronized (appendLock) {
+            checkOpen();
+            try {
+                if (buffer.remaining() < HEADER + length) {
+                    writeBuffer();
+                    if (buffer.capacity() < HEADER + length) {
+                        buffer = ByteBuffer.allocate(HEADER + length);
+                    }
+                }
+            }
+            catch (IOException e) {
+                throw fail(e);
+            }
+            int start = buffer.position();
+            buffer.putInt(length);
+            buffer.putInt(0);
+            buffer.put(type);
+            if (bytes != null) {
+                buffer.putShort((short)bytes.length);
+                buffer.put(bytes);
+            }
+            if (rect != null) {
+                buffer.putInt(rect.getxCoordinate());
+                buffer.putInt(rect.getyCoordinate());
+                buffer.putInt(rect.getWidth());
+                buffer.putInt(rect.getHeight());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), start + HEADER, length);
+            buffer.putInt(start + 4, (int)crc.getValue());
+            appended += HEADER + length;
+        }
+    }
+
+
+    /**
+     * Writes the buffered records to the channel, growing the file by zero
+     * filled PREALLOCATE steps when they do not fit. The caller must hold
+     * appendLock.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        if (written + buffer.remaining() > allocated) {
+            long size = allocated;
+            while (written + buffer.remaining() > size) {
+                size += PREALLOCATE;
+            }
+            zeroFill(allocated, size);
+            allocated = size;
+        }
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, written);
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     * Writes zeros to a part of the file.
+     *
+     * @param from
+     *            the first position to zero
+     * @param to
+     *            the position after the last one
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private void zeroFill(long from, long to) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate((int)Math.min(BUFFER_SIZE, Math
+            .max(0, to - from)));
+        long position = from;
+        while (position < to) {
+            zeros.clear();
+            zeros.limit((int)Math.min(zeros.capacity(), to - position));
+            position += channel.write(zeros, position);
+        }
+    }
+
+
+    /**
+     * Ends a change that may consist of several records. With
+     * Durability.EVERY_OP the records appended so far are forced to disk
+     * before this returns, sharing the force with other threads; with
+     * OS_BUFFERED they are written to the file without forcing; with
+     * INTERVAL they are left to the background thread.
+     *
+     * @throws UncheckedIOException
+     *             if the log cannot be written, now or by an earlier commit
+     *             or the background thread
+     */
+    public void commit() {
+        try {
+            if (durability == Durability.EVERY_OP) {
+                long upTo;
+                synchronized (appendLock) {
+                    upTo = appended;
+                }
+                if (!sync(upTo)) {
+                    sharedCommits.increment();
+                }
+            }
+            else if (durability == Durability.OS_BUFFERED) {
+                synchronized (appendLock) {
+                    checkOpen();
+                    writeBuffer();
+                }
+            }
+        }
+        catch (IOException e) {
+            throw fail(e);
+        }
+    }
+
+
+    /**
+     * Keeps the first failure to write the log. The buffer and the file may
+     * then hold records that are not durable, and appending after them could
+     * make a change durable that depends on one that is not, so every later
+     * append and commit fails too.
+     *
+     * @param e
+     *            the failure
+     * @return the exception to throw
+     */
+    private UncheckedIOException fail(IOException e) {
+        synchronized (appendLock) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        return new UncheckedIOException(e);
+    }
+
+
+    /**
+     * Makes the records up to a log position durable. If another thread has
+     * already forced past the position while this one waited, nothing is
+     * left to do; otherwise this thread writes everything appended so far,
+     * including records of other threads, and forces it once.
+     *
+     * @param upTo
+     *            the log position that has to be durable
+     * @return true if this thread forced, false if it was already done
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private boolean sync(long upTo) throws IOException {
+        synchronized (syncLock) {
+            if (durable >= upTo) {
+                return false;
+            }
+            long end;
+            synchronized (appendLock) {
+                checkOpen();
+                writeBuffer();
+                end = written;
+            }
+            channel.force(false);
+            forces++;
+            durable = end;
+            return true;
+        }
+    }
+
+
+    /**
+     * Forces everything appended so far, on the background thread. A failure
+     * is kept for the next commit to report.
+     */
+    private void syncInBackground() {
+        try {
+            long upTo;
+            synchronized (appendLock) {
+                if (closed) {
+                    return;
+                }
+                upTo = appended;
+            }
+            sync(upTo);
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+
+    /**
+     * @throws IllegalStateException
+     *             if the log is closed
+     * @throws UncheckedIOException
+     *             if writing the log failed before
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The log is closed");
+        }
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException(failed);
+        }
+    }
+
+
+    /**
+     * @return the number of times the log was forced to disk
+     */
+    public long getForces() {
+        return forces;
+    }
+
+
+    /**
+     * @return the number of commits that returned without forcing, because
+     *         a force by another thread had already covered their records
+     */
+    public long getSharedCommits() {
+        return sharedCommits.sum();
+    }
+
+
+    /**
+     * @return the number of bytes of records forced to disk
+     */
+    public long getDurableSize() {
+        return durable;
+    }
+
+
+    /**
+     * @return the number of bytes of records appended to the log
+     */
+    public long getSize() {
+        synchronized (appendLock) {
+            return appended;
+        }
+    }
+
+
+    /**
+     * Forces every record appended so far, whatever the durability, stops
+     * the background thread and closes the file. The file keeps its zero
+     * filled preallocated tail, which recovery reads as the end of the log.
+     * A log whose writing failed is only closed.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (timer != null) {
+            timer.shutdown();
+        }
+        synchronized (syncLock) {
+            try {
+                synchronized (appendLock) {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    if (failure != null) {
+                        return;
+                    }
+                    writeBuffer();
+                }
+                channel.force(false);
+                forces++;
+                durable = written;
+            }
+            finally {
+                channel.close();
+            }
+        }
+    }
+}
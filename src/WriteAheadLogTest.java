@@ -0,0 +1,410 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import student.TestCase;
+
+/**
+ * This class tests the methods of WriteAheadLog class
+ *
+ * @author Harleen Kaur
+ *
+ * @version 2024-01-22
+ */
+public class WriteAheadLogTest extends TestCase {
+    /**
+     * The log file used for testing.
+     */
+    private Path path;
+
+    /**
+     * Sets up the test fixture.
+     * This method is called before each test case.
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public void setUp() throws IOException {
+        path = Files.createTempFile("wal", ".log");
+    }
+
+
+    /**
+     * Deletes the log file.
+     *
+     * @throws IOException
+     *             if the file cannot be deleted
+     */
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+
+    /**
+     * Lists the contents of a database through regionsearch.
+     *
+     * @param db
+     *            the database
+     * @return the printed rectangles
+     */
+    private String contents(Database db) {
+        systemOut().clearHistory();
+        db.regionsearch(0, 0, 1024, 1024);
+        return systemOut().getHistory();
+    }
+
+
+    /**
+     * Tests that a database recovered from its log has the same rectangles
+     * as the database that wrote it
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public void testRecoverMatchesDatabase() throws IOException {
+        Database db = Database.recover(path, WriteAheadLog.Durability.EVERY_OP,
+            0);
+        CommandProcessor cmdProc = new CommandProcessor(db, true);
+        for (int i = 0; i < 20; i++) {
+            cmdProc.processor("insert r" + (i % 7) + " " + (10 * i) + " " + i
+                + " 5 5");
+        }
+        cmdProc.processor("insert bad -1 0 5 5");
+        cmdProc.processor("remove r3");
+        cmdProc.processor("remove r9");
+        cmdProc.processor("remove 50 5 5 5");
+        cmdProc.processor("insert r3 300 300 2 2");
+        cmdProc.processor("removeregion 100 0 40 40");
+        cmdProc.processor("insert z 0 0 1 1");
+        cmdProc.flush();
+        String expected = contents(db);
+        db.closeLog();
+
+        Database recovered = Database.recover(path,
+            WriteAheadLog.Durability.EVERY_OP, 0);
+        assertEquals(expected, contents(recovered));
+        assertFalse(expected.contains("bad"));
+        assertFalse(expected.contains("r5 50, 5, 5, 5"));
+        assertTrue(expected.contains("r3 300, 300, 2, 2"));
+        assertFalse(expected.contains("110, 11"));
+
+        // the recovered database keeps appending to the same log
+        recovered.insert(new KVPair<>("late", new Rectangle(1, 1, 1, 1)));
+        recovered.closeLog();
+        Database again = Database.recover(path,
+            WriteAheadLog.Durability.OS_BUFFERED, 0);
+        assertTrue(contents(again).contains("late 1, 1, 1, 1"));
+        again.closeLog();
+    }
+
+
+    /**
+     * Tests that recovery keeps the newest of equal names first both in a
+     * run bulk loaded into an empty list and in a run merged into a list
+     * that is not empty
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public void testRecoverRuns() throws IOException {
+        Database db = Database.recover(path, WriteAheadLog.Durability.EVERY_OP,
+            0);
+        CommandProcessor cmdProc = new CommandProcessor(db, true);
+        cmdProc.processor("insert a 1 1 1 1");
+        cmdProc.processor("insert b 2 2 2 2");
+        cmdProc.processor("insert a 3 3 3 3");
+        cmdProc.processor("remove a");
+        cmdProc.processor("remove a");
+        cmdProc.processor("remove b");
+        // the list is empty again, so this run is bulk loaded too
+        cmdProc.processor("insert c 4 4 4 4");
+        cmdProc.processor("insert a 5 5 5 5");
+        cmdProc.processor("insert c 6 6 6 6");
+        cmdProc.processor("remove 5 5 5 5");
+        // this run is merged into c, c
+        cmdProc.processor("insert c 7 7 7 7");
+        cmdProc.processor("insert b 8 8 8 8");
+        cmdProc.flush();
+        String expected = contents(db);
+        assertTrue(expected.indexOf("c 7, 7, 7, 7") < expected.indexOf(
+            "c 6, 6, 6, 6"));
+        assertTrue(expected.indexOf("c 6, 6, 6, 6") < expected.indexOf(
+            "c 4, 4, 4, 4"));
+        db.closeLog();
+
+        Database recovered = Database.recover(path,
+            WriteAheadLog.Durability.EVERY_OP, 0);
+        assertEquals(expected, contents(recovered));
+        systemOut().clearHistory();
+        recovered.search("c");
+        assertTrue(systemOut().getHistory().contains("c 7, 7, 7, 7"));
+        recovered.closeLog();
+    }
+
+
+    /**
+     * Tests that a run of insert commands costs the log one force when the
+     * command processor batches inserts, against one force per insert when
+     * it does not, so batching multiplies the durable insert rate by the
+     * run length
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public void testBatchedCommandsForceOnce() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(path,
+            WriteAheadLog.Durability.EVERY_OP, 0);
+        CommandProcessor cmdProc = new CommandProcessor(new Database(
+            new SkipList<>(), log), true);
+        for (int i = 0; i < 100; i++) {
+            cmdProc.processor("insert r" + i + " " + i + " 0 5 5");
+        }
+        cmdProc.processor("remove r5");
+        cmdProc.flush();
+        assertEquals(2, log.getForces());
+        log.close();
+        assertEquals(101, WriteAheadLog.replay(path, new Recorder()));
+
+        Path single = Files.createTempFile("wal", ".log");
+        try {
+            log = new WriteAheadLog(single, WriteAheadLog.Durability.EVERY_OP,
+                0);
+            cmdProc = new CommandProcessor(new Database(new SkipList<>(), log),
+                false);
+            for (int i = 0; i < 100; i++) {
+                cmdProc.processor("insert r" + i + " " + i + " 0 5 5");
+            }
+            cmdProc.processor("remove r5");
+            assertEquals(101, log.getForces());
+            log.close();
+        }
+        finally {
+            Files.deleteIfExists(single);
+        }
+    }
+
+
+    /**
+     * Tests that a damaged last record ends the log, and that new records are
+     * written over it
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public void testTornTail() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(path,
+            WriteAheadLog.Durability.EVERY_OP, 0);
+        log.logInsert(new KVPair<>("a", new Rectangle(1, 2, 3, 4)));
+        log.logRemove("a");
+        log.logRemove(new Rectangle(5, 6, 7, 8));
+        log.commit();
+        long size = log.getSize();
+        log.close();
+        assertEquals(0, Files.size(path) % WriteAheadLog.PREALLOCATE);
+        assertEquals(3, WriteAheadLog.replay(path, new Recorder()));
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(),
+            "rw")) {
+            file.seek(size - 1);
+            int last = file.read();
+            file.seek(size - 1);
+            file.write(last ^ 1);
+        }
+        Recorder recorder = new Recorder();
+        assertEquals(2, WriteAheadLog.replay(path, recorder));
+        assertEquals("[insert a 1, 2, 3, 4, remove a]", recorder.records
+            .toString());
+
+        log = new WriteAheadLog(path, WriteAheadLog.Durability.EVERY_OP, 0);
+        log.logRemoveRegion(new Rectangle(0, 0, 9, 9));
+        log.close();
+        recorder = new Recorder();
+        assertEquals(3, WriteAheadLog.replay(path, recorder));
+        assertEquals("[insert a 1, 2, 3, 4, remove a, region 0, 0, 9, 9]",
+            recorder.records.toString());
+        assertEquals(0, WriteAheadLog.replay(path.resolveSibling(path
+            .getFileName() + ".missing"), recorder));
+    }
+
+
+    /**
+     * Tests that a batch of inserts costs one force, that a commit whose
+     * record was forced by another thread does not force again, and that
+     * concurrent commits lose no records
+     *
+     * @throws Exception
+     *             if the log cannot be written
+     */
+    public void testGroupCommit() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(path,
+            WriteAheadLog.Durability.EVERY_OP, 0);
+        Database db = new Database(new SkipList<>(), log);
+        List<KVPair<String, Rectangle>> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new KVPair<>("b" + i, new Rectangle(i, i, 1, 1)));
+        }
+        db.insertAll(batch);
+        assertEquals(1, log.getForces());
+
+        log.logRemove("b1");
+        Thread other = new Thread(() -> {
+            log.logRemove("b2");
+            log.commit();
+        });
+        other.start();
+        other.join();
+        assertEquals(2, log.getForces());
+        log.commit();
+        assertEquals(2, log.getForces());
+        assertEquals(1, log.getSharedCommits());
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    log.logInsert(new KVPair<>("t" + id, new Rectangle(i, 0,
+                        1, 1)));
+                    log.commit();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // every commit either forced or found its record forced already
+        assertEquals(803, log.getForces() + log.getSharedCommits());
+        log.close();
+        assertEquals(902, WriteAheadLog.replay(path, new Recorder()));
+    }
+
+
+    /**
+     * Tests that the interval and OS buffered modes write the records without
+     * a force per commit
+     *
+     * @throws Exception
+     *             if the log cannot be written
+     */
+    public void testDurabilityModes() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(path,
+            WriteAheadLog.Durability.OS_BUFFERED, 0);
+        log.logInsert(new KVPair<>("a", new Rectangle(1, 1, 1, 1)));
+        log.commit();
+        assertEquals(0, log.getForces());
+        assertEquals(1, WriteAheadLog.replay(path, new Recorder()));
+        log.close();
+
+        log = new WriteAheadLog(path, WriteAheadLog.Durability.INTERVAL, 5);
+        for (int i = 0; i < 50; i++) {
+            log.logRemove("a");
+            log.commit();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (log.getDurableSize() < log.getSize() && System
+            .currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(log.getSize(), log.getDurableSize());
+        assertEquals(0, log.getSharedCommits());
+        assertEquals(51, WriteAheadLog.replay(path, new Recorder()));
+        log.close();
+
+        Exception thrown = null;
+        try {
+            log.logRemove("a");
+        }
+        catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            new WriteAheadLog(path, WriteAheadLog.Durability.INTERVAL, 0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * Tests that a change whose log write fails is not made, that the log
+     * then refuses every later change, and that recovery gives the state
+     * the database was left in
+     *
+     * @throws IOException
+     *             if the log cannot be opened
+     */
+    public void testFailedLog() throws IOException {
+        Database db = Database.recover(path, WriteAheadLog.Durability.EVERY_OP,
+            0);
+        db.insert(new KVPair<>("a", new Rectangle(1, 1, 1, 1)));
+        // an interrupt closes the file channel at the next write
+        Thread.currentThread().interrupt();
+        Exception thrown = null;
+        try {
+            db.insert(new KVPair<>("b", new Rectangle(2, 2, 2, 2)));
+        }
+        catch (UncheckedIOException e) {
+            thrown = e;
+        }
+        Thread.interrupted();
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            db.remove("a");
+        }
+        catch (UncheckedIOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        String expected = contents(db);
+        assertTrue(expected.contains("a 1, 1, 1, 1"));
+        assertFalse(expected.contains("b 2, 2, 2, 2"));
+        db.closeLog();
+
+        Database recovered = Database.recover(path,
+            WriteAheadLog.Durability.EVERY_OP, 0);
+        assertEquals(expected, contents(recovered));
+        recovered.closeLog();
+    }
+
+
+    /**
+     * Collects the records of a log as strings.
+     */
+    private static class Recorder implements WriteAheadLog.Handler {
+        // the records in order
+        private List<String> records = new ArrayList<>();
+
+        @Override
+        public void insert(KVPair<String, Rectangle> pair) {
+            records.add("insert " + pair.getKey() + " " + pair.getValue());
+        }
+
+
+        @Override
+        public void remove(String name) {
+            records.add("remove " + name);
+        }
+
+
+        @Override
+        public void remove(Rectangle rect) {
+            records.add("remove " + rect);
+        }
+
+
+        @Override
+        public void removeRegion(Rectangle region) {
+            records.add("region " + region);
+        }
+    }
+
+}